@@ -1,24 +1,52 @@
 package akkamon.api;
 
+import akkamon.api.binary.BinaryProtocol;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServlet;
 import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class App {
 
+    private static final Logger log = LoggerFactory.getLogger(App.class);
+
     public static MessagingEngine messagingEngine;
 
     public static void main(String[] args) {
-        Server server = startServer(8080);
+        try {
+            Server server = start(8080);
+            log.info("Started server, listening on http://localhost:8080/");
+            log.info("Press CTRL+C to exit.");
+            server.join();
+        }
+        catch (Throwable t) {
+            log.error("Server stopped", t);
+        }
+
+    }
+
+    /**
+     * Starts the messaging engine and a started Jetty server listening on the port, the load test
+     * runs the server this way inside its own JVM.
+     */
+    public static Server start(int port) throws Exception {
+        Config serverConfig = ConfigFactory.load().getConfig("akkamon.api.server");
+        Server server = startServer(port, serverConfig);
         ServletContextHandler context = createStatefulContext(server);
 
         messagingEngine = new MessagingEngine();
 
-
+        // Prometheus scrapes the mailboxes, ticks, sessions and battles here
+        context.addServlet(new ServletHolder(new MetricsServlet(messagingEngine.metrics())), "/metrics");
 
         // websocket behaviour
         // Configure specific websocket behavior
@@ -26,24 +54,22 @@ public class App {
         {
             // Configure default max size
             wsContainer.setMaxTextMessageSize(65535);
-
-            // Add websockets
-            wsContainer.addMapping("/", EventSocket.class);
+            wsContainer.setIdleTimeout(serverConfig.getDuration("idle-timeout"));
+
+            // Add websockets, clients that offer the binary subprotocol get binary movement and heartbeats
+            wsContainer.addMapping("/", (request, response) -> {
+                if (messagingEngine.binaryProtocolEnabled()
+                        && request.getSubProtocols().contains(BinaryProtocol.SUBPROTOCOL)) {
+                    response.setAcceptedSubProtocol(BinaryProtocol.SUBPROTOCOL);
+                }
+                return new EventSocket();
+            });
         });
 
         // registerServlets(context);
 
-        try {
-            server.start();
-            System.out.println("Started server.");
-            System.out.println("Listening on http://localhost:8080/");
-            System.out.println("Press CTRL+C to exit.");
-            server.join();
-        }
-        catch (Throwable t) {
-            t.printStackTrace(System.err);
-        }
-
+        server.start();
+        return server;
     }
 
     private static ServletContextHandler createStatefulContext(Server server) {
@@ -54,10 +80,24 @@ public class App {
         return context;
     }
 
-    private static Server startServer(int port) {
-        Server server = new Server();
-        ServerConnector connector = new ServerConnector(server);
+    private static Server startServer(int port, Config config) {
+        QueuedThreadPool threadPool = new QueuedThreadPool(config.getInt("max-threads"), config.getInt("min-threads"));
+        threadPool.setName("jetty");
+        if (config.getBoolean("virtual-threads")) {
+            if (VirtualThreads.areSupported()) {
+                // selectors and acceptors stay on the pool, what they hand off to block on runs on virtual threads
+                threadPool.setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+                log.info("Running websocket I/O on virtual threads");
+            } else {
+                log.warn("akkamon.api.server.virtual-threads is on, but this JVM has no virtual threads, running on platform threads");
+            }
+        }
+
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, config.getInt("acceptors"), config.getInt("selectors"));
         connector.setPort(port);
+        connector.setAcceptQueueSize(config.getInt("accept-queue-size"));
+        connector.setIdleTimeout(config.getDuration("idle-timeout").toMillis());
         server.addConnector(connector);
         return server;
     }
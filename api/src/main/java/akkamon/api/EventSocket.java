@@ -1,23 +1,62 @@
 package akkamon.api;
 
+import akka.actor.typed.ActorRef;
 import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.Trainer;
 import akkamon.domain.AkkamonSession;
+import akkamon.domain.RequestIds;
+import akkamon.api.binary.BinaryHeartBeatEncoder;
+import akkamon.api.binary.BinaryProtocol;
+import akkamon.api.binary.BinarySession;
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.api.outbound.OutboundQueue;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
 
 
-public class EventSocket extends WebSocketAdapter implements AkkamonSession {
+public class EventSocket extends WebSocketAdapter implements AkkamonSession, BinarySession {
+    private static final Logger log = LoggerFactory.getLogger(EventSocket.class);
     private final CountDownLatch closureLatch = new CountDownLatch(1);
-    private AkkamonNexus.TrainerID trainerID;
+    // set from the actor system once registration completes, read by Jetty threads
+    private volatile AkkamonNexus.TrainerID trainerID;
+    private volatile ActorRef<Trainer.Command> trainerRef;
+    private volatile OutboundQueue outbound;
+    // only set when the client negotiated the binary subprotocol
+    private volatile BinaryHeartBeatEncoder binaryHeartBeats;
+    private final RequestIds.Sequence requestIds = App.messagingEngine.newRequestIdSequence();
+    private final String sessionId = App.messagingEngine.newSessionId();
 
     @Override
     public void onWebSocketConnect(Session sess)
     {
         super.onWebSocketConnect(sess);
-        System.out.println("Socket Connected: " + sess);
+        if (BinaryProtocol.SUBPROTOCOL.equals(sess.getUpgradeResponse().getAcceptedSubProtocol())) {
+            binaryHeartBeats = new BinaryHeartBeatEncoder();
+        }
+        outbound = new OutboundQueue(App.messagingEngine.outboundSettings(), new OutboundQueue.Transport() {
+            @Override
+            public void write(String message, WriteCallback callback) {
+                getRemote().sendString(message, callback);
+            }
+
+            @Override
+            public void write(ByteBuffer frame, WriteCallback callback) {
+                getRemote().sendBytes(frame, callback);
+            }
+
+            @Override
+            public void close(String reason) {
+                getSession().close(StatusCode.TRY_AGAIN_LATER, reason);
+            }
+        });
+        log.debug("Session {} connected from {}", sessionId, sess.getRemoteAddress());
     }
 
     @Override
@@ -28,11 +67,18 @@ public class EventSocket extends WebSocketAdapter implements AkkamonSession {
 
     }
 
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len)
+    {
+        super.onWebSocketBinary(payload, offset, len);
+        App.messagingEngine.incoming(this, ByteBuffer.wrap(payload, offset, len));
+    }
+
     @Override
     public void onWebSocketClose(int statusCode, String reason)
     {
         super.onWebSocketClose(statusCode, reason);
-        System.out.println("Socket Closed: [" + statusCode + "] " + reason);
+        log.debug("Session {} closed: [{}] {}", sessionId, statusCode, reason);
         closureLatch.countDown();
         App.messagingEngine.trainerDisconnected(this);
     }
@@ -41,22 +87,67 @@ public class EventSocket extends WebSocketAdapter implements AkkamonSession {
     public void onWebSocketError(Throwable cause)
     {
         super.onWebSocketError(cause);
-        cause.printStackTrace(System.err);
+        log.warn("Session {} failed", sessionId, cause);
     }
 
     public void awaitClosure() throws InterruptedException
     {
-        System.out.println("Awaiting closure from remote");
+        log.debug("Session {} awaiting closure from remote", sessionId);
         closureLatch.await();
     }
 
     @Override
     public void send(String event) {
-        try {
-            getRemote().sendString(event);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        OutboundQueue outbound = this.outbound;
+        if (outbound != null) outbound.offer(event, false);
+    }
+
+    @Override
+    public void sendHeartBeat(String event) {
+        OutboundQueue outbound = this.outbound;
+        if (outbound != null) outbound.offer(event, true);
+    }
+
+    @Override
+    public boolean binaryFrames() {
+        return binaryHeartBeats != null;
+    }
+
+    @Override
+    public void sendHeartBeat(HeartBeatEvent heartBeat) {
+        OutboundQueue outbound = this.outbound;
+        if (outbound != null) outbound.offer(binaryHeartBeats.encode(heartBeat), true);
+    }
+
+    @Override
+    public void sendHeartBeat(BinaryHeartBeatEncoder.KeyFrame keyFrame) {
+        OutboundQueue outbound = this.outbound;
+        if (outbound != null) outbound.offer(binaryHeartBeats.encode(keyFrame), true);
+    }
+
+    public int outboundQueueDepth() {
+        OutboundQueue outbound = this.outbound;
+        return outbound == null ? 0 : outbound.depth();
+    }
+
+    public long droppedHeartBeats() {
+        OutboundQueue outbound = this.outbound;
+        return outbound == null ? 0 : outbound.dropped();
+    }
+
+    public long outboundBytes() {
+        OutboundQueue outbound = this.outbound;
+        return outbound == null ? 0 : outbound.written();
+    }
+
+    @Override
+    public long nextRequestId() {
+        return requestIds.next();
+    }
+
+    @Override
+    public String sessionId() {
+        return sessionId;
     }
 
     @Override
@@ -68,4 +159,14 @@ public class EventSocket extends WebSocketAdapter implements AkkamonSession {
     public AkkamonNexus.TrainerID gettrainerID() {
         return this.trainerID;
     }
+
+    @Override
+    public void setTrainerRef(ActorRef<Trainer.Command> trainerRef) {
+        this.trainerRef = trainerRef;
+    }
+
+    @Override
+    public ActorRef<Trainer.Command> getTrainerRef() {
+        return this.trainerRef;
+    }
 }
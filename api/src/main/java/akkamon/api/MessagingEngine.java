@@ -2,88 +2,279 @@ package akkamon.api;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Scheduler;
+import akka.actor.typed.SpawnProtocol;
+import akkamon.api.binary.BinaryHeartBeatEncoder;
+import akkamon.api.binary.BinaryProtocol;
+import akkamon.api.binary.BinarySession;
+import akkamon.api.heartbeat.HeartBeatBaseline;
+import akkamon.api.heartbeat.HeartBeatMode;
+import akkamon.api.heartbeat.MovementQueueToJson;
+import akkamon.api.inbound.MovementCoalescer;
 import akkamon.api.models.*;
 import akkamon.api.models.battle.BattleInitEvent;
+import akkamon.api.models.incoming.MovementEventDecoder;
 import akkamon.api.models.outgoing.HeartBeatEvent;
 import akkamon.api.models.outgoing.InteractionStartEvent;
 import akkamon.api.models.outgoing.OutgoingInteractionRequest;
+import akkamon.api.outbound.OutboundQueue;
 import akkamon.domain.AkkamonMessageEngine;
 import akkamon.domain.actors.AkkamonBattle;
 import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.NexusShards;
+import akkamon.domain.actors.Trainer;
 import akkamon.domain.AkkamonSession;
+import akkamon.domain.RequestIds;
 import akkamon.domain.actors.tasks.interactions.InteractionHandshaker;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
 import akkamon.domain.model.akkamon.Mon;
 import akkamon.domain.model.battle.requests.JsonToMove;
+import akkamon.domain.logging.LogMarkers;
+import akkamon.domain.metrics.AkkamonMetrics;
+import akkamon.domain.metrics.MetricsWriter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.ExecutionContextExecutor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MessagingEngine implements AkkamonMessageEngine {
 
+    private static final Logger log = LoggerFactory.getLogger(MessagingEngine.class);
+
     // nexus: a connection or series of connections linking two or more things.
-    private ActorRef<AkkamonNexus.Command> nexus;
+    // Scenes are spread over several nexus shards, a request goes to the shard owning its scene.
+    private final NexusShards nexus;
+
+    private final SessionRegistry sessions = new SessionRegistry();
+
+    private final HeartBeatMode heartBeatMode;
+    private final int keyFrameInterval;
+    private final int maxUnacknowledgedHeartBeats;
+
+    private final OutboundQueue.Settings outboundSettings;
+    private final boolean binaryProtocolEnabled;
+
+    // zero sends every movement event to the trainer as it comes in, see MovementCoalescer
+    private final Duration movementWindow;
+    private final Scheduler scheduler;
+    private final ExecutionContextExecutor flushExecutor;
+
+    private final RequestIds requestIds;
+
+    private final int nodeId;
+    // clustered, several nodes register trainers in the same scene, so names carry the node
+    private final boolean clustered;
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    // Jetty calls incoming from its own pool, every thread gets its own scratch decoder
+    private final ThreadLocal<MovementEventDecoder> movementEventDecoder =
+            ThreadLocal.withInitial(MovementEventDecoder::new);
 
-    private Map<String, Set<AkkamonSession>> sceneIdToAkkamonSessions = new HashMap<>();
-    private Map<AkkamonNexus.TrainerID, AkkamonSession> trainerIDToAkkamonSessions = new HashMap<>();
-    private Map<String, ActorRef<InteractionHandshaker.Command>> pendingInteractioRequestToHandshaker = new HashMap<>();
+    private final Gson gson = createGson();
 
-    private final Gson gson = new GsonBuilder()
-            .registerTypeAdapter(Mon.Move.class, new JsonToMove())
-            .create();
+    private final AkkamonMetrics metrics;
+    // filled in once by the constructor, only read afterwards
+    private final Map<EventType, LongAdder> inboundEvents = new EnumMap<>(EventType.class);
+    private final LongAdder movementBatches;
 
     public MessagingEngine() {
-        this.nexus = ActorSystem.create(AkkamonNexus.create(this), "akkamon-system");
+        ActorSystem<SpawnProtocol.Command> system = NexusShards.createSystem("akkamon-system", ConfigFactory.load());
+
+        Config heartBeatConfig = system.settings().config().getConfig("akkamon.api.heartbeat");
+        this.heartBeatMode = HeartBeatMode.valueOf(heartBeatConfig.getString("mode").toUpperCase(Locale.ROOT));
+        this.keyFrameInterval = heartBeatConfig.getInt("key-frame-interval");
+        this.maxUnacknowledgedHeartBeats = heartBeatConfig.getInt("max-unacknowledged");
+        this.outboundSettings = OutboundQueue.Settings.fromConfig(
+                system.settings().config().getConfig("akkamon.api.outbound"));
+        this.binaryProtocolEnabled = system.settings().config().getBoolean("akkamon.api.binary-protocol");
+        this.movementWindow = system.settings().config().getDuration("akkamon.api.inbound.movement-window");
+        this.scheduler = system.scheduler();
+        this.flushExecutor = system.executionContext();
+        this.nodeId = system.settings().config().getInt("akkamon.domain.node-id");
+        this.clustered = system.settings().config().getBoolean("akkamon.domain.cluster.enabled");
+        this.requestIds = new RequestIds(nodeId);
+
+        this.metrics = AkkamonMetrics.get(system);
+        for (EventType type : EventType.values()) {
+            inboundEvents.put(type, metrics.counter("akkamon_inbound_events_total",
+                    "Events received from clients", "type", type.name()));
+        }
+        this.movementBatches = metrics.counter("akkamon_inbound_movement_batches_total",
+                "Batches the movement events of sessions were coalesced into");
+        metrics.addCollector(this::writeSessionMetrics);
 
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
-        executor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                heartBeat();
-            }
-        }, 0, 200, TimeUnit.MILLISECONDS);
+        // scenes tick by themselves, see SceneMovementAggregator, and push their heartbeats to the nexus
+        this.nexus = NexusShards.spawn(system, this);
+    }
 
+    // the json every session speaks, the benchmarks serialize heartbeats with it too
+    static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Mon.Move.class, new JsonToMove())
+                .registerTypeAdapter(AkkamonNexus.MovementQueue.class, new MovementQueueToJson())
+                .create();
     }
 
-    private void heartBeat() {
-        for (AkkamonSession session : trainerIDToAkkamonSessions.values()) {
-            session.send(
-                    gson.toJson(
-                            new HeartBeatEvent(null)
-                    )
-            );
+    public AkkamonMetrics metrics() {
+        return metrics;
+    }
+
+    private void writeSessionMetrics(MetricsWriter out) {
+        List<EventSocket> sockets = new ArrayList<>();
+        for (AkkamonSession session : sessions.sessions()) {
+            // sockets are put in the registry when they ask to register, before their trainer exists
+            if (session instanceof EventSocket && session.gettrainerID() != null) sockets.add((EventSocket) session);
         }
-        nexus.tell(new AkkamonNexus.RequestHeartBeat(
-                UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
-                nexus
-                ));
+        out.gauge("akkamon_sessions", "Sessions with a registered trainer", sockets.size());
+        for (EventSocket socket : sockets) {
+            out.counter("akkamon_session_outbound_bytes_total", "Bytes written to the client of a session",
+                    socket.outboundBytes(), sessionLabels(socket));
+        }
+        for (EventSocket socket : sockets) {
+            out.gauge("akkamon_session_outbound_queue_depth", "Messages waiting to be written to the client of a session",
+                    socket.outboundQueueDepth(), sessionLabels(socket));
+        }
+        for (EventSocket socket : sockets) {
+            out.counter("akkamon_session_dropped_heartbeats_total", "Heartbeats a session dropped because its client fell behind",
+                    socket.droppedHeartBeats(), sessionLabels(socket));
+        }
+    }
+
+    private static String[] sessionLabels(AkkamonSession session) {
+        AkkamonNexus.TrainerID trainerID = session.gettrainerID();
+        return new String[]{"session", session.sessionId(), "trainer", trainerID == null ? "" : trainerID.id};
+    }
+
+    private void countInbound(EventType type) {
+        if (type != null) inboundEvents.get(type).increment();
+    }
+
+    public OutboundQueue.Settings outboundSettings() {
+        return outboundSettings;
+    }
+
+    public RequestIds.Sequence newRequestIdSequence() {
+        return requestIds.newSequence();
+    }
+
+    public String newSessionId() {
+        return nodeId + "-" + sessionIds.incrementAndGet();
+    }
+
+    public boolean binaryProtocolEnabled() {
+        return binaryProtocolEnabled;
     }
 
     @Override
-    public void broadCastHeartBeatToScene(String sceneId, Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> trainerPositions) {
-
-        Set<AkkamonSession> sceneSessions = sceneIdToAkkamonSessions.get(sceneId);
-        // System.out.println(sceneSessions);
-        // System.out.println(sceneIdToAkkamonSessions.keySet());
-        if (sceneSessions != null) {
-            for (AkkamonSession session : sceneSessions) {
-                Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> withoutSelf = new HashMap<>(trainerPositions);
-                withoutSelf.remove(session.gettrainerID());
-
-                HeartBeatEvent heartBeat = new HeartBeatEvent(
-                        withoutSelf
-                );
+    public void broadCastHeartBeatToScene(AkkamonNexus.RespondHeartBeatQuery heartBeat) {
 
-                String heartBeatMessage = gson.toJson(heartBeat);
-                // System.out.println("Sending to " + session.gettrainerID());
-                // System.out.println(heartBeatMessage);
-                session.send(
-                        heartBeatMessage
-                );
-            }
+        Set<AkkamonSession> sceneSessions = sessions.sceneSessions(heartBeat.sceneId);
+        if (sceneSessions.isEmpty()) {
+            return;
+        }
+
+        switch (heartBeatMode) {
+            case FULL:
+                if (heartBeat.trainerInterests == null) {
+                    // The scene snapshot is encoded once and the same message is shared by every session,
+                    // clients skip their own trainerID when applying the remote movement queues.
+                    HeartBeatEvent sceneHeartBeat =
+                            new HeartBeatEvent(heartBeat.trainerMovementQueues, heartBeat.trainerTilePositions);
+                    sceneHeartBeat.tickIntervalMillis = heartBeat.tickIntervalMillis;
+                    String heartBeatMessage = null;
+                    BinaryHeartBeatEncoder.KeyFrame keyFrame = null;
+                    for (AkkamonSession session : sceneSessions) {
+                        if (isBinary(session)) {
+                            if (keyFrame == null) keyFrame = BinaryHeartBeatEncoder.encodeKeyFrame(sceneHeartBeat);
+                            ((BinarySession) session).sendHeartBeat(keyFrame);
+                        } else {
+                            if (heartBeatMessage == null) heartBeatMessage = gson.toJson(sceneHeartBeat);
+                            session.sendHeartBeat(
+                                    heartBeatMessage
+                            );
+                        }
+                    }
+                } else {
+                    for (AkkamonSession session : sceneSessions) {
+                        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> visible =
+                                visibleTo(session.gettrainerID(), heartBeat);
+                        sendHeartBeat(session, heartBeat, new HeartBeatEvent(
+                                visible,
+                                tilePositionsOf(visible, heartBeat)
+                        ));
+                    }
+                }
+                break;
+            case DELTA:
+                for (AkkamonSession session : sceneSessions) {
+                    HeartBeatBaseline baseline = sessions.heartBeatBaseline(
+                            session,
+                            () -> new HeartBeatBaseline(keyFrameInterval, maxUnacknowledgedHeartBeats)
+                    );
+                    sendHeartBeat(session, heartBeat, baseline.next(
+                            visibleTo(session.gettrainerID(), heartBeat),
+                            heartBeat.trainerTilePositions,
+                            session.gettrainerID()
+                    ));
+                }
+                break;
+        }
+    }
+
+    private void sendHeartBeat(AkkamonSession session, AkkamonNexus.RespondHeartBeatQuery tick, HeartBeatEvent heartBeat) {
+        heartBeat.tickIntervalMillis = tick.tickIntervalMillis;
+        if (isBinary(session)) {
+            ((BinarySession) session).sendHeartBeat(heartBeat);
+        } else {
+            session.sendHeartBeat(gson.toJson(heartBeat));
+        }
+    }
+
+    private boolean isBinary(AkkamonSession session) {
+        return session instanceof BinarySession && ((BinarySession) session).binaryFrames();
+    }
+
+    private Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> visibleTo(
+            AkkamonNexus.TrainerID trainerID,
+            AkkamonNexus.RespondHeartBeatQuery heartBeat) {
+        Set<AkkamonNexus.TrainerID> interests = heartBeat.trainerInterests == null ? null : heartBeat.trainerInterests.get(trainerID);
+        if (interests == null) {
+            return heartBeat.trainerMovementQueues;
+        }
+
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> visible = new HashMap<>(interests.size());
+        for (AkkamonNexus.TrainerID interest : interests) {
+            AkkamonNexus.MovementQueueReading reading = heartBeat.trainerMovementQueues.get(interest);
+            if (reading != null) visible.put(interest, reading);
         }
+        return visible;
+    }
+
+    // positions only for the trainers the session sees, the others are no business of its client
+    private Map<AkkamonNexus.TrainerID, TilePos> tilePositionsOf(
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> visible,
+            AkkamonNexus.RespondHeartBeatQuery heartBeat) {
+        if (visible == heartBeat.trainerMovementQueues) {
+            return heartBeat.trainerTilePositions;
+        }
+
+        Map<AkkamonNexus.TrainerID, TilePos> visibleTilePositions = new HashMap<>(visible.size());
+        for (AkkamonNexus.TrainerID trainerID : visible.keySet()) {
+            TilePos tilePos = heartBeat.trainerTilePositions.get(trainerID);
+            if (tilePos != null) visibleTilePositions.put(trainerID, tilePos);
+        }
+        return visibleTilePositions;
     }
 
     @Override
@@ -94,12 +285,12 @@ public class MessagingEngine implements AkkamonMessageEngine {
             String requestName,
             ActorRef<InteractionHandshaker.Command> handshaker) {
 
-        System.out.println("Sending interaction request " + requestName);
-        this.pendingInteractioRequestToHandshaker.put(requestName, handshaker);
+        log.debug("Sending interaction request {} of {} to {}", requestName, trainerID, trainerIDs);
+        sessions.putHandshaker(requestName, handshaker);
         trainerIDs.add(trainerID);
 
         for (AkkamonNexus.TrainerID id : trainerIDs) {
-            AkkamonSession session = trainerIDToAkkamonSessions.get(id);
+            AkkamonSession session = sessions.trainerSession(id);
             if (session != null) {
                 session.send(gson.toJson(new OutgoingInteractionRequest(
                         type,
@@ -114,27 +305,37 @@ public class MessagingEngine implements AkkamonMessageEngine {
 
 
     @Override
-    public void registerTrainerSessionToSceneAndtrainerIDMaps(AkkamonNexus.TrainerID trainerID, AkkamonSession session) {
-        System.out.println("Registering session to scene " + trainerID.scene);
-
-        Set<AkkamonSession> sceneIdMapping = sceneIdToAkkamonSessions.get(trainerID.scene);
-        // AkkamonSession trainerIDMapping = trainerIDToAkkamonSessions.get(session.gettrainerID());
-
-        if (sceneIdMapping != null) {
-            sceneIdMapping.add(session);
-        } else {
-            sceneIdMapping = new HashSet<>();
-            sceneIdMapping.add(session);
-            sceneIdToAkkamonSessions.put(trainerID.scene,
-                    sceneIdMapping
-            );
-            System.out.println(sceneIdToAkkamonSessions.keySet());
+    public void registerTrainerSessionToSceneAndtrainerIDMaps(AkkamonNexus.TrainerID trainerID, String sessionId, ActorRef<Trainer.Command> trainer) {
+        AkkamonSession session = sessions.session(sessionId);
+        if (session != null) {
+            // trainerDisconnected removes the session under the same lock, a closed one isn't added back
+            synchronized (session) {
+                if (sessions.session(sessionId) == session) {
+                    // from here on the session talks to its trainer directly, movement doesn't pass through the nexus.
+                    // tellTrainer reads both under this lock, the id goes first like in transferTrainerSession
+                    session.settrainerID(trainerID);
+                    session.setTrainerRef(trainer);
+
+                    sessions.addToScene(trainerID.scene, session);
+                    sessions.putTrainerSession(trainerID, session);
+                } else {
+                    session = null;
+                }
+            }
+        }
+        if (session == null) {
+            // the socket closed while the registration was underway, nobody else sends its trainer offline
+            ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(trainerID.scene);
+            shard.tell(new AkkamonNexus.RequestTrainerOffline(
+                    requestIds.newSequence().next(),
+                    trainerID,
+                    sessionId,
+                    shard
+            ));
+            return;
         }
 
-        trainerIDToAkkamonSessions.put(session.gettrainerID(), session);
-        System.out.println(trainerIDToAkkamonSessions);
-
-        System.out.println("Sending trainerID: " + session.gettrainerID());
+        log.debug("Registered session {} as {}", sessionId, trainerID);
         // TODO what if registration goes wrong ...
         session.send(
                 gson.toJson(new TrainerRegistrationReplyEvent(session.gettrainerID()))
@@ -142,56 +343,83 @@ public class MessagingEngine implements AkkamonMessageEngine {
     }
 
     @Override
-    public void removeTrainerSessionFromScene(AkkamonNexus.TrainerID trainerID, AkkamonSession session) {
-        this.sceneIdToAkkamonSessions.get(trainerID.scene).remove(session);
+    public void transferTrainerSession(AkkamonNexus.TrainerID from,
+                                       AkkamonNexus.TrainerID to,
+                                       TilePos tilePos,
+                                       ActorRef<Trainer.Command> previous,
+                                       ActorRef<Trainer.Command> trainer) {
+        AkkamonSession session = sessions.trainerSession(from);
+        if (session != null) {
+            // commands read the trainer ref under the same lock, see tellTrainer
+            synchronized (session) {
+                sessions.moveTrainerSession(from, to, session);
+                session.settrainerID(to);
+                session.setTrainerRef(trainer);
+            }
+            session.send(gson.toJson(new SceneTransferEvent(to, tilePos)));
+        }
+        // a session that closed meanwhile sent its trainer offline, the hand-off carries that over too
+        previous.tell(new Trainer.SessionSwitched(trainer));
     }
 
     @Override
-    public void trainerDisconnected(AkkamonSession session) {
-        String sceneId = null;
-        for (Map.Entry<String, Set<AkkamonSession>> entry : this.sceneIdToAkkamonSessions.entrySet()) {
-            if (entry.getValue().contains(session)) sceneId = entry.getKey();
+    public void removeTrainerSessionFromScene(AkkamonNexus.TrainerID trainerID, String sessionId) {
+        AkkamonSession session = sessions.session(sessionId);
+        if (session != null) {
+            sessions.removeFromScene(trainerID.scene, session);
         }
+    }
 
-        nexus.tell(new AkkamonNexus.RequestTrainerOffline(
-                UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
-                session.gettrainerID(),
-                sceneId,
-                session,
-                nexus
-                ));
+    @Override
+    public void trainerDisconnected(AkkamonSession session) {
+        synchronized (session) {
+            if (session.gettrainerID() == null) {
+                // the socket closed before its registration completed
+                sessions.removeSession(session.sessionId());
+                return;
+            }
+            ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(session.gettrainerID().scene);
+            shard.tell(new AkkamonNexus.RequestTrainerOffline(
+                    session.nextRequestId(),
+                    session.gettrainerID(),
+                    session.sessionId(),
+                    shard
+                    ));
+        }
     }
 
     @Override
     public void removeInteractionHandshaker(String requestName) {
-        this.pendingInteractioRequestToHandshaker.remove(requestName);
+        sessions.removeHandshaker(requestName);
     }
 
     @Override
     public void broadCastInteractionStart(String requestName, String interactionType, Set<AkkamonNexus.TrainerID> waitingToStartInteraction) {
         for (AkkamonNexus.TrainerID trainerID : waitingToStartInteraction) {
 
-            AkkamonSession session = trainerIDToAkkamonSessions.get(trainerID);
-            session.send(gson.toJson(
-                    new InteractionStartEvent(
-                            requestName,
-                            interactionType
-                    )
-            ));
+            AkkamonSession session = sessions.trainerSession(trainerID);
+            if (session != null) {
+                session.send(gson.toJson(
+                        new InteractionStartEvent(
+                                requestName,
+                                interactionType
+                        )
+                ));
+            }
         }
 
     }
 
     @Override
     public void broadCastHandshakeFail(String requestName, Set<AkkamonNexus.TrainerID> waitingToStartInteraction) {
-        System.out.println("Handshake fail not implemented yet!");
+        log.warn("Handshake {} failed, telling {} isn't implemented yet", requestName, waitingToStartInteraction);
     }
 
     @Override
     public void broadCastBattleStart(AkkamonBattle.BattleCreatedResponse response) {
-        System.out.println("Sending battle start event!!");
+        log.debug("Sending battle start to {}", response.participants);
         for (AkkamonNexus.TrainerID trainerID : response.participants) {
-            AkkamonSession session = trainerIDToAkkamonSessions.get(trainerID);
+            AkkamonSession session = sessions.trainerSession(trainerID);
             Set<AkkamonNexus.TrainerID> withoutself = new HashSet<>(response.participants);
             withoutself.remove(trainerID);
             if (session != null) {
@@ -208,78 +436,71 @@ public class MessagingEngine implements AkkamonMessageEngine {
     }
 
     @Override
-    public void removeTrainerSessionFromHeartBeat(AkkamonNexus.TrainerID trainerID, AkkamonSession session) {
-        trainerIDToAkkamonSessions.remove(trainerID);
+    public void removeTrainerSessionFromHeartBeat(AkkamonNexus.TrainerID trainerID, String sessionId) {
+        AkkamonSession session = sessions.removeSession(sessionId);
+        if (session != null) {
+            sessions.removeTrainerSession(trainerID, session);
+        }
     }
 
     void incoming(AkkamonSession session, String message) {
-        // System.out.println(message);
+        MovementEventDecoder.Decoded movement = movementEventDecoder.get().decode(message, session.gettrainerID());
+        if (movement != null) {
+            incomingMovement(session, movement);
+            return;
+        }
+
         Event event = gson.fromJson(message, Event.class);
         if (event == null) {
-            System.out.println("Received non-supported message DTO.");
+            log.warn(LogMarkers.SAMPLED, "Received non-supported message from session {}", session.sessionId());
             return;
         }
+        countInbound(event.type);
         // TODO use session trainerID
         String sceneId = "DemoScene";
 
 
         switch (event.type) {
             case INTERACTION_REPLY:
-                System.out.println("received interaction reply!");
-                System.out.println(message);
+                log.debug("Received interaction reply {}", message);
                 sendToHandshaker(event.requestName, event.trainerID, event.value);
                 break;
             case INTERACTION_REQUEST:
-                System.out.println("received interaction request");
-                System.out.println(event.interaction);
-                nexus.tell(new AkkamonNexus.RequestInteraction(
-                        UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
+                log.debug("Received interaction request {}", event.interaction);
+                ActorRef<AkkamonNexus.Command> interactionShard = nexus.shardFor(event.trainerID.scene);
+                interactionShard.tell(new AkkamonNexus.RequestInteraction(
+                        session.nextRequestId(),
                         event.interaction.type,
                         event.trainerID,
                         event.interaction.receivingtrainerIDs,
-                        nexus
+                        interactionShard
                 ));
                 break;
             case START_MOVING:
-                nexus.tell(new AkkamonNexus.RequestStartMoving(
-                        UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
-                        event.trainerID,
-                        event.direction,
-                        nexus
-                ));
+                startMoving(session, event.trainerID, event.direction);
                 break;
             case NEW_TILE_POS:
-                nexus.tell(
-                        new AkkamonNexus.RequestNewTilePos(
-                                UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
-                                event.trainerID,
-                                event.tilePos,
-                                nexus
-                        )
-                );
+                newTilePos(session, event.trainerID, event.tilePos);
                 break;
             case STOP_MOVING:
-                nexus.tell(
-                        new AkkamonNexus.RequestStopMoving(
-                            UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE,
-                            event.trainerID,
-                            event.direction,
-                            nexus
-                        )
-                );
+                stopMoving(session, event.trainerID, event.direction);
                 break;
             case TRAINER_REGISTRATION_REQUEST:
                 // Here we make the trainerID and the scene is hard coded!
-                String trainerName = String.valueOf(sceneIdToAkkamonSessions.get(sceneId) == null ? 1 : sceneIdToAkkamonSessions.get(sceneId).size() + 1);
-                nexus.tell(new AkkamonNexus.RequestTrainerRegistration(
+                String trainerName = sessions.nextTrainerName();
+                if (clustered) trainerName = nodeId + "-" + trainerName;
+                sessions.putSession(session);
+                ActorRef<AkkamonNexus.Command> registrationShard = nexus.shardFor(sceneId);
+                registrationShard.tell(new AkkamonNexus.RequestTrainerRegistration(
                         trainerName,
                         sceneId,
-                        session,
-                        nexus
+                        session.sessionId(),
+                        registrationShard
                 ));
                 break;
             case BATTLE_ACTION_REQUEST:
-                nexus.tell(
+                if (event.trainerID == null) break;
+                tellTrainer(session, event.trainerID, nexus.shardFor(event.trainerID.scene),
                         new AkkamonBattle.RequestAction(
                                 event.trainerID,
                                 event.body
@@ -287,14 +508,180 @@ public class MessagingEngine implements AkkamonMessageEngine {
                 );
                 break;
             case HEART_BEAT:
-                //System.out.println("My <3 beats!");
+                acknowledgeHeartBeat(session, event.sequence, event.requestKeyFrame);
                 break;
         }
 
     }
 
+    private void incomingMovement(AkkamonSession session, MovementEventDecoder.Decoded movement) {
+        countInbound(movement.type);
+        switch (movement.type) {
+            case START_MOVING:
+                startMoving(session, movement.trainerID(), movement.direction);
+                break;
+            case NEW_TILE_POS:
+                newTilePos(session, movement.trainerID(), movement.hasTilePos ? new TilePos(movement.x, movement.y) : null);
+                break;
+            case STOP_MOVING:
+                stopMoving(session, movement.trainerID(), movement.direction);
+                break;
+            case HEART_BEAT:
+                acknowledgeHeartBeat(session, movement.sequence, movement.requestKeyFrame);
+                break;
+        }
+    }
+
+    void incoming(AkkamonSession session, ByteBuffer frame) {
+        AkkamonNexus.TrainerID trainerID = session.gettrainerID();
+        if (trainerID == null || !frame.hasRemaining()) {
+            return;
+        }
+
+        try {
+            switch (frame.get()) {
+                case BinaryProtocol.START_MOVING:
+                    countInbound(EventType.START_MOVING);
+                    startMoving(session, trainerID, BinaryProtocol.direction(frame.get()));
+                    break;
+                case BinaryProtocol.STOP_MOVING:
+                    countInbound(EventType.STOP_MOVING);
+                    stopMoving(session, trainerID, BinaryProtocol.direction(frame.get()));
+                    break;
+                case BinaryProtocol.NEW_TILE_POS:
+                    countInbound(EventType.NEW_TILE_POS);
+                    int x = BinaryProtocol.readZigZag(frame);
+                    int y = BinaryProtocol.readZigZag(frame);
+                    newTilePos(session, trainerID, new TilePos(x, y));
+                    break;
+                case BinaryProtocol.HEART_BEAT:
+                    countInbound(EventType.HEART_BEAT);
+                    int flags = frame.get();
+                    acknowledgeHeartBeat(
+                            session,
+                            BinaryProtocol.readVarLong(frame),
+                            (flags & BinaryProtocol.FLAG_REQUEST_KEY_FRAME) != 0
+                    );
+                    break;
+                default:
+                    log.warn(LogMarkers.SAMPLED, "Received non-supported binary frame from session {}", session.sessionId());
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            log.warn(LogMarkers.SAMPLED, "Received malformed binary frame from session {}", session.sessionId());
+        }
+    }
+
+    private void startMoving(AkkamonSession session, AkkamonNexus.TrainerID trainerID, Direction direction) {
+        if (trainerID == null) return;
+        MovementCoalescer coalescer = movementCoalescer(session, trainerID);
+        if (coalescer != null) {
+            if (coalescer.startMoving(direction)) scheduleMovementFlush(session, coalescer);
+            return;
+        }
+        ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(trainerID.scene);
+        tellTrainer(session, trainerID, shard, new AkkamonNexus.RequestStartMoving(
+                session.nextRequestId(),
+                trainerID,
+                direction,
+                shard
+        ));
+    }
+
+    private void newTilePos(AkkamonSession session, AkkamonNexus.TrainerID trainerID, TilePos tilePos) {
+        if (trainerID == null) return;
+        MovementCoalescer coalescer = movementCoalescer(session, trainerID);
+        if (coalescer != null) {
+            if (coalescer.newTilePos(tilePos)) scheduleMovementFlush(session, coalescer);
+            return;
+        }
+        ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(trainerID.scene);
+        tellTrainer(session, trainerID, shard,
+                new AkkamonNexus.RequestNewTilePos(
+                        session.nextRequestId(),
+                        trainerID,
+                        tilePos,
+                        shard
+                )
+        );
+    }
+
+    private void stopMoving(AkkamonSession session, AkkamonNexus.TrainerID trainerID, Direction direction) {
+        if (trainerID == null) return;
+        MovementCoalescer coalescer = movementCoalescer(session, trainerID);
+        if (coalescer != null) {
+            if (coalescer.stopMoving()) scheduleMovementFlush(session, coalescer);
+            return;
+        }
+        ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(trainerID.scene);
+        tellTrainer(session, trainerID, shard,
+                new AkkamonNexus.RequestStopMoving(
+                    session.nextRequestId(),
+                    trainerID,
+                    direction,
+                    shard
+                )
+        );
+    }
+
+    /**
+     * The coalescer of the session, for movement of its own registered trainer while coalescing is on.
+     * Anything else is sent on its own.
+     */
+    private MovementCoalescer movementCoalescer(AkkamonSession session, AkkamonNexus.TrainerID trainerID) {
+        if (movementWindow.isZero()) return null;
+        AkkamonNexus.TrainerID own = session.gettrainerID();
+        if (own == null || !own.id.equals(trainerID.id)) return null;
+        return sessions.movementCoalescer(session);
+    }
+
+    private void scheduleMovementFlush(AkkamonSession session, MovementCoalescer coalescer) {
+        scheduler.scheduleOnce(movementWindow, () -> flushMovement(session, coalescer), flushExecutor);
+    }
+
+    private void flushMovement(AkkamonSession session, MovementCoalescer coalescer) {
+        // holding the coalescer keeps the batches of a session in order
+        synchronized (coalescer) {
+            if (coalescer.isEmpty()) return;
+            AkkamonNexus.TrainerID trainerID = session.gettrainerID();
+            ActorRef<AkkamonNexus.Command> shard = nexus.shardFor(trainerID.scene);
+            tellTrainer(session, trainerID, shard, coalescer.drain(session.nextRequestId(), trainerID, shard));
+            movementBatches.increment();
+        }
+    }
+
+    /**
+     * Commands for the session's own trainer go straight to its actor. Until registration completes,
+     * or for any other trainer, the nexus shard owning the trainer's scene routes them.
+     *
+     * The trainer ref is read and told under the session's lock, once a scene transfer switched the
+     * session every later command goes to the new trainer, see Trainer.
+     */
+    private <T extends AkkamonNexus.Command & Trainer.Command> void tellTrainer(
+            AkkamonSession session,
+            AkkamonNexus.TrainerID trainerID,
+            ActorRef<AkkamonNexus.Command> shard,
+            T command) {
+        synchronized (session) {
+            ActorRef<Trainer.Command> trainer = session.getTrainerRef();
+            AkkamonNexus.TrainerID registered = session.gettrainerID();
+            // the client may still use the id of the scene its trainer just left, names are unique over scenes
+            if (trainer != null && registered != null && trainerID.id.equals(registered.id)) {
+                trainer.tell(command);
+                return;
+            }
+        }
+        shard.tell(command);
+    }
+
+    private void acknowledgeHeartBeat(AkkamonSession session, long sequence, boolean requestKeyFrame) {
+        HeartBeatBaseline baseline = sessions.heartBeatBaseline(session);
+        if (baseline != null) {
+            baseline.acknowledge(sequence, requestKeyFrame);
+        }
+    }
+
     private void sendToHandshaker(String requestName, AkkamonNexus.TrainerID trainerID, boolean value) {
-        ActorRef<InteractionHandshaker.Command> handshaker = pendingInteractioRequestToHandshaker.get(requestName);
+        ActorRef<InteractionHandshaker.Command> handshaker = sessions.handshaker(requestName);
         if (handshaker != null) {
             handshaker.tell(
                     new InteractionHandshaker.InteractionReply(requestName, trainerID, value)
@@ -0,0 +1,28 @@
+package akkamon.api;
+
+import akkamon.domain.metrics.AkkamonMetrics;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Serves the metrics of the actor system and the sessions in the Prometheus text format.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private final AkkamonMetrics metrics;
+
+    public MetricsServlet(AkkamonMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(metrics.scrape());
+    }
+}
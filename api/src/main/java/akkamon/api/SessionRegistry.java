@@ -0,0 +1,132 @@
+package akkamon.api;
+
+import akka.actor.typed.ActorRef;
+import akkamon.api.heartbeat.HeartBeatBaseline;
+import akkamon.api.inbound.MovementCoalescer;
+import akkamon.domain.AkkamonSession;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.interactions.InteractionHandshaker;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of the live sessions. It is written to from actor threads (registration, trainers
+ * going offline), read by the heartbeat and touched by the Jetty threads handling incoming messages.
+ *
+ * All lookups go through ConcurrentHashMaps, which only lock the bin that is being updated. Scene
+ * membership is copy-on-write: registering or removing a session swaps in a new immutable set, so a
+ * heartbeat iterates a stable snapshot without locking while registrations continue.
+ */
+public class SessionRegistry {
+
+    // actors only know sessions by id, see AkkamonSession.sessionId
+    private final ConcurrentMap<String, AkkamonSession> sessionIdToAkkamonSession = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<AkkamonSession>> sceneIdToAkkamonSessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AkkamonNexus.TrainerID, AkkamonSession> trainerIDToAkkamonSessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ActorRef<InteractionHandshaker.Command>> pendingInteractionRequestToHandshaker = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AkkamonSession, HeartBeatBaseline> sessionToHeartBeatBaseline = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AkkamonSession, MovementCoalescer> sessionToMovementCoalescer = new ConcurrentHashMap<>();
+    private final AtomicInteger registrationCount = new AtomicInteger();
+
+    public void putSession(AkkamonSession session) {
+        sessionIdToAkkamonSession.put(session.sessionId(), session);
+    }
+
+    public AkkamonSession session(String sessionId) {
+        return sessionIdToAkkamonSession.get(sessionId);
+    }
+
+    public Collection<AkkamonSession> sessions() {
+        return sessionIdToAkkamonSession.values();
+    }
+
+    public AkkamonSession removeSession(String sessionId) {
+        return sessionIdToAkkamonSession.remove(sessionId);
+    }
+
+    public void addToScene(String sceneId, AkkamonSession session) {
+        sceneIdToAkkamonSessions.compute(sceneId, (id, sessions) -> {
+            Set<AkkamonSession> updated = sessions == null ? new HashSet<>() : new HashSet<>(sessions);
+            updated.add(session);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    public void removeFromScene(String sceneId, AkkamonSession session) {
+        sceneIdToAkkamonSessions.computeIfPresent(sceneId, (id, sessions) -> {
+            if (!sessions.contains(session)) return sessions;
+            Set<AkkamonSession> updated = new HashSet<>(sessions);
+            updated.remove(session);
+            return updated.isEmpty() ? null : Collections.unmodifiableSet(updated);
+        });
+    }
+
+    /**
+     * @return an immutable snapshot of the sessions in the scene, empty when there are none.
+     */
+    public Set<AkkamonSession> sceneSessions(String sceneId) {
+        return sceneIdToAkkamonSessions.getOrDefault(sceneId, Collections.emptySet());
+    }
+
+    public void putTrainerSession(AkkamonNexus.TrainerID trainerID, AkkamonSession session) {
+        trainerIDToAkkamonSessions.put(trainerID, session);
+    }
+
+    public void removeTrainerSession(AkkamonNexus.TrainerID trainerID, AkkamonSession session) {
+        if (trainerID != null) {
+            trainerIDToAkkamonSessions.remove(trainerID, session);
+        }
+        sessionToHeartBeatBaseline.remove(session);
+        sessionToMovementCoalescer.remove(session);
+    }
+
+    /**
+     * Moves the session of a trainer that changed scenes. The heartbeat baseline belongs to the scene it
+     * leaves and is dropped.
+     */
+    public synchronized void moveTrainerSession(AkkamonNexus.TrainerID from, AkkamonNexus.TrainerID to, AkkamonSession session) {
+        removeFromScene(from.scene, session);
+        addToScene(to.scene, session);
+        trainerIDToAkkamonSessions.remove(from, session);
+        trainerIDToAkkamonSessions.put(to, session);
+        sessionToHeartBeatBaseline.remove(session);
+    }
+
+    public AkkamonSession trainerSession(AkkamonNexus.TrainerID trainerID) {
+        return trainerIDToAkkamonSessions.get(trainerID);
+    }
+
+    // trainers keep their name when they move to another scene, so names are unique over all scenes
+    public String nextTrainerName() {
+        return String.valueOf(registrationCount.incrementAndGet());
+    }
+
+    public void putHandshaker(String requestName, ActorRef<InteractionHandshaker.Command> handshaker) {
+        pendingInteractionRequestToHandshaker.put(requestName, handshaker);
+    }
+
+    public ActorRef<InteractionHandshaker.Command> handshaker(String requestName) {
+        return pendingInteractionRequestToHandshaker.get(requestName);
+    }
+
+    public void removeHandshaker(String requestName) {
+        pendingInteractionRequestToHandshaker.remove(requestName);
+    }
+
+    public HeartBeatBaseline heartBeatBaseline(AkkamonSession session, Supplier<HeartBeatBaseline> create) {
+        return sessionToHeartBeatBaseline.computeIfAbsent(session, s -> create.get());
+    }
+
+    public HeartBeatBaseline heartBeatBaseline(AkkamonSession session) {
+        return sessionToHeartBeatBaseline.get(session);
+    }
+
+    // a session keeps its coalescer when it changes scenes, the movement it holds is sent to the new trainer
+    public MovementCoalescer movementCoalescer(AkkamonSession session) {
+        return sessionToMovementCoalescer.computeIfAbsent(session, s -> new MovementCoalescer());
+    }
+}
@@ -0,0 +1,167 @@
+package akkamon.api.binary;
+
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Encodes the heartbeats of one connection. Trainers are sent as small indices; the full trainer key
+ * is only sent the first time an index is used. Every key frame starts a fresh dictionary, so a
+ * client that lost a frame recovers along with the key frame it asks for.
+ *
+ * That also makes a key frame the same for every connection, so a scene's key frame is encoded once
+ * with encodeKeyFrame and the connections share its dictionary until a delta changes theirs.
+ */
+public class BinaryHeartBeatEncoder {
+
+    /**
+     * A key frame encoded once for every connection in a scene.
+     */
+    public static class KeyFrame {
+        private final ByteBuffer frame;
+        private final Map<AkkamonNexus.TrainerID, Integer> trainerIndices;
+        private final Map<String, AkkamonNexus.TrainerID> trainersByKey;
+        private final int nextIndex;
+
+        private KeyFrame(ByteBuffer frame,
+                         Map<AkkamonNexus.TrainerID, Integer> trainerIndices,
+                         Map<String, AkkamonNexus.TrainerID> trainersByKey,
+                         int nextIndex) {
+            this.frame = frame;
+            this.trainerIndices = trainerIndices;
+            this.trainersByKey = trainersByKey;
+            this.nextIndex = nextIndex;
+        }
+    }
+
+    public static KeyFrame encodeKeyFrame(HeartBeatEvent heartBeat) {
+        if (!heartBeat.keyFrame) {
+            throw new IllegalArgumentException("Heartbeat " + heartBeat.sequence + " is a delta, only key frames are the same for every connection");
+        }
+        BinaryHeartBeatEncoder encoder = new BinaryHeartBeatEncoder();
+        ByteBuffer frame = encoder.encode(heartBeat);
+        return new KeyFrame(frame, encoder.trainerIndices, encoder.trainersByKey, encoder.nextIndex);
+    }
+
+    private Map<AkkamonNexus.TrainerID, Integer> trainerIndices = new HashMap<>();
+    // removals name trainers by their key, the one they were introduced with
+    private Map<String, AkkamonNexus.TrainerID> trainersByKey = new HashMap<>();
+    private int nextIndex = 0;
+    // the dictionary is a shared key frame's, copied before it changes
+    private boolean shared = false;
+
+    /**
+     * The shared key frame for this connection, which starts from its dictionary.
+     */
+    public synchronized ByteBuffer encode(KeyFrame keyFrame) {
+        trainerIndices = keyFrame.trainerIndices;
+        trainersByKey = keyFrame.trainersByKey;
+        nextIndex = keyFrame.nextIndex;
+        shared = true;
+        return keyFrame.frame.duplicate();
+    }
+
+    public synchronized ByteBuffer encode(HeartBeatEvent heartBeat) {
+        if (heartBeat.keyFrame) {
+            trainerIndices = new HashMap<>();
+            trainersByKey = new HashMap<>();
+            nextIndex = 0;
+            shared = false;
+        }
+
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> queues =
+                heartBeat.remoteMovementQueues == null ? Collections.emptyMap() : heartBeat.remoteMovementQueues;
+        Map<AkkamonNexus.TrainerID, TilePos> tilePositions =
+                heartBeat.remoteTilePositions == null ? Collections.emptyMap() : heartBeat.remoteTilePositions;
+
+        BinaryProtocol.FrameWriter frame = new BinaryProtocol.FrameWriter(16 + queues.size() * 8);
+        int flags = (heartBeat.keyFrame ? BinaryProtocol.FLAG_KEY_FRAME : 0)
+                | (heartBeat.tickIntervalMillis > 0 ? BinaryProtocol.FLAG_TICK_INTERVAL : 0);
+        frame.writeByte(BinaryProtocol.HEART_BEAT)
+                .writeByte(flags)
+                .writeVarLong(heartBeat.sequence);
+        if (heartBeat.tickIntervalMillis > 0) {
+            frame.writeVarLong(heartBeat.tickIntervalMillis);
+        }
+
+        List<AkkamonNexus.TrainerID> introduced = new ArrayList<>();
+        for (AkkamonNexus.TrainerID trainerID : queues.keySet()) {
+            if (!trainerIndices.containsKey(trainerID)) {
+                ownDictionary();
+                trainerIndices.put(trainerID, nextIndex++);
+                introduced.add(trainerID);
+            }
+        }
+        frame.writeVarLong(introduced.size());
+        for (AkkamonNexus.TrainerID trainerID : introduced) {
+            String trainerKey = trainerID.toString();
+            trainersByKey.put(trainerKey, trainerID);
+            byte[] key = trainerKey.getBytes(StandardCharsets.UTF_8);
+            frame.writeVarLong(trainerIndices.get(trainerID))
+                    .writeVarLong(key.length)
+                    .writeBytes(key);
+        }
+
+        frame.writeVarLong(queues.size());
+        for (Map.Entry<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> entry : queues.entrySet()) {
+            writeEntry(frame, trainerIndices.get(entry.getKey()), entry.getValue(), tilePositions.get(entry.getKey()));
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        if (heartBeat.removedRemoteTrainers != null) {
+            for (String key : heartBeat.removedRemoteTrainers) {
+                Integer index = removeIndexOf(key);
+                // already reported in an earlier frame
+                if (index != null) removed.add(index);
+            }
+        }
+        frame.writeVarLong(removed.size());
+        for (int index : removed) {
+            frame.writeVarLong(index);
+        }
+
+        return frame.toByteBuffer();
+    }
+
+    private static void writeEntry(BinaryProtocol.FrameWriter frame,
+                                   int index,
+                                   AkkamonNexus.MovementQueueReading reading,
+                                   TilePos tilePos) {
+        AkkamonNexus.MovementQueue moves = reading instanceof AkkamonNexus.MovementQueue
+                ? (AkkamonNexus.MovementQueue) reading
+                : AkkamonNexus.MovementQueue.IDLE;
+
+        frame.writeVarLong(index)
+                .writeVarLong(((long) moves.size << 1) | (tilePos != null ? 1 : 0));
+        if (tilePos != null) {
+            frame.writeZigZag(tilePos.x).writeZigZag(tilePos.y);
+        }
+        int packed = 0;
+        for (int i = 0; i < moves.size; i++) {
+            packed |= BinaryProtocol.directionCode(moves.get(i)) << ((i & 3) * 2);
+            if ((i & 3) == 3) {
+                frame.writeByte(packed);
+                packed = 0;
+            }
+        }
+        if ((moves.size & 3) != 0) frame.writeByte(packed);
+    }
+
+    private void ownDictionary() {
+        if (!shared) return;
+        trainerIndices = new HashMap<>(trainerIndices);
+        trainersByKey = new HashMap<>(trainersByKey);
+        shared = false;
+    }
+
+    private Integer removeIndexOf(String key) {
+        if (!trainersByKey.containsKey(key)) return null;
+        ownDictionary();
+        AkkamonNexus.TrainerID trainerID = trainersByKey.remove(key);
+        return trainerID == null ? null : trainerIndices.remove(trainerID);
+    }
+}
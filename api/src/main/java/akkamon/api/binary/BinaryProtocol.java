@@ -0,0 +1,132 @@
+package akkamon.api.binary;
+
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact framing for the high-frequency messages, negotiated with the websocket subprotocol.
+ * Everything else keeps going over JSON text frames.
+ *
+ * Client to server, the trainer is the one registered on the session:
+ *   START_MOVING  [op][direction]
+ *   STOP_MOVING   [op][direction]
+ *   NEW_TILE_POS  [op][zigzag x][zigzag y]
+ *   HEART_BEAT    [op][flags: 1 = request key frame][sequence]
+ *
+ * Server to client:
+ *   HEART_BEAT    [op][flags: 1 = key frame, 2 = tick interval][sequence][tick interval ms]?
+ *                 [count]{[index][length][utf-8 trainer key]}   trainers introduced in this frame
+ *                 [count]{[index][moves << 1 | has tile][zigzag x][zigzag y]?[2-bit moves, 4 per byte]}
+ *                 [count]{[index]}                              trainers that left
+ *
+ * Numbers are unsigned LEB128 varints, signed ones are zigzag encoded first. Directions are
+ * UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3; NONE is never sent, an idle trainer has no moves.
+ */
+public final class BinaryProtocol {
+
+    public static final String SUBPROTOCOL = "akkamon.binary.v1";
+
+    public static final byte START_MOVING = 0x01;
+    public static final byte STOP_MOVING = 0x02;
+    public static final byte NEW_TILE_POS = 0x03;
+    public static final byte HEART_BEAT = 0x04;
+
+    public static final int FLAG_KEY_FRAME = 1;
+    public static final int FLAG_TICK_INTERVAL = 2;
+    public static final int FLAG_REQUEST_KEY_FRAME = 1;
+
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+
+    private BinaryProtocol() {
+    }
+
+    public static int directionCode(Direction direction) {
+        switch (direction) {
+            case UP: return 0;
+            case DOWN: return 1;
+            case LEFT: return 2;
+            case RIGHT: return 3;
+            default: throw new IllegalArgumentException("Direction " + direction + " has no code");
+        }
+    }
+
+    public static Direction direction(int code) {
+        return DIRECTIONS[code & 0b11];
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (shift > 63) throw new IllegalArgumentException("Malformed varint");
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("Varint out of range");
+        return (int) value;
+    }
+
+    public static int readZigZag(ByteBuffer in) {
+        long encoded = readVarLong(in);
+        if (encoded > 0xffffffffL) throw new IllegalArgumentException("Varint out of range");
+        int value = (int) encoded;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable frame buffer, so an encoder doesn't need to size a frame up front.
+     */
+    public static class FrameWriter {
+        private byte[] bytes;
+        private int size = 0;
+
+        public FrameWriter(int initialCapacity) {
+            this.bytes = new byte[Math.max(initialCapacity, 16)];
+        }
+
+        public FrameWriter writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+            return this;
+        }
+
+        public FrameWriter writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        public FrameWriter writeZigZag(int value) {
+            return writeVarLong(((value << 1) ^ (value >> 31)) & 0xffffffffL);
+        }
+
+        public FrameWriter writeBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+            return this;
+        }
+
+        public ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(Arrays.copyOf(bytes, size));
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
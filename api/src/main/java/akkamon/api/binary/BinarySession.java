@@ -0,0 +1,15 @@
+package akkamon.api.binary;
+
+import akkamon.api.models.outgoing.HeartBeatEvent;
+
+/**
+ * A session that may have negotiated binary framing for heartbeats.
+ */
+public interface BinarySession {
+    boolean binaryFrames();
+
+    void sendHeartBeat(HeartBeatEvent heartBeat);
+
+    // a key frame encoded once for the whole scene
+    void sendHeartBeat(BinaryHeartBeatEncoder.KeyFrame keyFrame);
+}
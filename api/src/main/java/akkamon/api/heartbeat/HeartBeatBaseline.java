@@ -0,0 +1,128 @@
+package akkamon.api.heartbeat;
+
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+import java.util.*;
+
+/**
+ * Remembers which scene snapshot a session has acknowledged, so the next heartbeat only has to
+ * contain the trainers that moved, joined or left since then.
+ *
+ * Snapshots are the immutable maps produced once per scene per tick, so they are shared between
+ * the baselines of every session in the scene instead of being copied.
+ */
+public class HeartBeatBaseline {
+
+    private final int keyFrameInterval;
+    private final int maxUnacknowledged;
+
+    private long sequence = 0;
+    private Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> acknowledged = null;
+    private final SortedMap<Long, Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading>> inFlight = new TreeMap<>();
+    private int sinceKeyFrame = 0;
+    private boolean keyFrameRequested = false;
+
+    public HeartBeatBaseline(int keyFrameInterval, int maxUnacknowledged) {
+        this.keyFrameInterval = keyFrameInterval;
+        this.maxUnacknowledged = maxUnacknowledged;
+    }
+
+    public synchronized HeartBeatEvent next(
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> snapshot,
+            Map<AkkamonNexus.TrainerID, TilePos> tilePositions,
+            AkkamonNexus.TrainerID self) {
+
+        sequence++;
+
+        if (needsKeyFrame()) {
+            inFlight.clear();
+            inFlight.put(sequence, snapshot);
+            keyFrameRequested = false;
+            sinceKeyFrame = 0;
+
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> withoutSelf = new HashMap<>(snapshot);
+            withoutSelf.remove(self);
+            return new HeartBeatEvent(sequence, true, withoutSelf, tilePositionsOf(withoutSelf, tilePositions), null);
+        }
+
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> changed = new HashMap<>();
+        for (Map.Entry<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> entry : snapshot.entrySet()) {
+            if (entry.getKey().equals(self)) continue;
+            if (!isIdle(entry.getValue()) || !knownSince(entry.getKey())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // the client may also know trainers that only appeared in heartbeats it did not acknowledge yet
+        Set<AkkamonNexus.TrainerID> removed = new HashSet<>();
+        collectRemoved(acknowledged, snapshot, self, removed);
+        for (Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> unacknowledged : inFlight.values()) {
+            collectRemoved(unacknowledged, snapshot, self, removed);
+        }
+        List<String> removedRemoteTrainers = new ArrayList<>(removed.size());
+        for (AkkamonNexus.TrainerID trainerID : removed) {
+            removedRemoteTrainers.add(trainerID.toString());
+        }
+
+        inFlight.put(sequence, snapshot);
+        sinceKeyFrame++;
+        return new HeartBeatEvent(sequence, false, changed, tilePositionsOf(changed, tilePositions), removedRemoteTrainers);
+    }
+
+    public synchronized void acknowledge(long acknowledgedSequence, boolean requestKeyFrame) {
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> snapshot = inFlight.get(acknowledgedSequence);
+        if (snapshot != null) {
+            acknowledged = snapshot;
+            inFlight.headMap(acknowledgedSequence + 1).clear();
+        }
+        if (requestKeyFrame) {
+            keyFrameRequested = true;
+        }
+    }
+
+    // a trainer missing from a heartbeat the client did not acknowledge yet may have been removed
+    // by it, the client only still has it if it is in every snapshot since the acknowledged one
+    private boolean knownSince(AkkamonNexus.TrainerID trainerID) {
+        if (!acknowledged.containsKey(trainerID)) return false;
+        for (Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> unacknowledged : inFlight.values()) {
+            if (!unacknowledged.containsKey(trainerID)) return false;
+        }
+        return true;
+    }
+
+    private boolean needsKeyFrame() {
+        return acknowledged == null
+                || keyFrameRequested
+                || sinceKeyFrame >= keyFrameInterval
+                || inFlight.size() >= maxUnacknowledged;
+    }
+
+    private static void collectRemoved(
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> known,
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> snapshot,
+            AkkamonNexus.TrainerID self,
+            Set<AkkamonNexus.TrainerID> removed) {
+        for (AkkamonNexus.TrainerID trainerID : known.keySet()) {
+            if (!trainerID.equals(self) && !snapshot.containsKey(trainerID)) {
+                removed.add(trainerID);
+            }
+        }
+    }
+
+    private static Map<AkkamonNexus.TrainerID, TilePos> tilePositionsOf(
+            Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> included,
+            Map<AkkamonNexus.TrainerID, TilePos> tilePositions) {
+        Map<AkkamonNexus.TrainerID, TilePos> includedTilePositions = new HashMap<>();
+        for (AkkamonNexus.TrainerID trainerID : included.keySet()) {
+            TilePos tilePos = tilePositions.get(trainerID);
+            if (tilePos != null) includedTilePositions.put(trainerID, tilePos);
+        }
+        return includedTilePositions;
+    }
+
+    static boolean isIdle(AkkamonNexus.MovementQueueReading reading) {
+        return !(reading instanceof AkkamonNexus.MovementQueue) || ((AkkamonNexus.MovementQueue) reading).size == 0;
+    }
+}
@@ -0,0 +1,8 @@
+package akkamon.api.heartbeat;
+
+public enum HeartBeatMode {
+    // every heartbeat carries the complete scene, encoded once and shared by all sessions
+    FULL,
+    // every session receives the changes against the last heartbeat it acknowledged
+    DELTA
+}
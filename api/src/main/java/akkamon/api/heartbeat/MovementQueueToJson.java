@@ -0,0 +1,24 @@
+package akkamon.api.heartbeat;
+
+import akkamon.domain.actors.AkkamonNexus;
+import com.google.gson.*;
+
+import java.lang.reflect.Type;
+
+// clients read movement queues as {"value": [directions]}, the packed bits stay on the server
+public class MovementQueueToJson implements JsonSerializer<AkkamonNexus.MovementQueue> {
+
+    @Override
+    public JsonElement serialize(AkkamonNexus.MovementQueue src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonArray value = new JsonArray();
+        if (src.size == 0) {
+            value.add("NONE");
+        }
+        for (int i = 0; i < src.size; i++) {
+            value.add(src.get(i).name());
+        }
+        JsonObject queue = new JsonObject();
+        queue.add("value", value);
+        return queue;
+    }
+}
@@ -0,0 +1,88 @@
+package akkamon.api.inbound;
+
+import akka.actor.typed.ActorRef;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Collects the movement a session's client sends within one window, so its trainer gets a single
+ * RequestMovementBatch instead of a command for every start, stop and tile.
+ *
+ * Tiles taken in the same direction add up to one leg, a start and stop with no tile in between
+ * only leave the direction they end in, and tiles while standing still are dropped like the
+ * trainer would. Until the window sees a start or stop it doesn't know which way the trainer is
+ * moving, its tiles go in a leg without a direction and the trainer keeps its own.
+ */
+public class MovementCoalescer {
+
+    // null until the window starts or stops moving
+    private Direction direction = null;
+    private TilePos tilePos = null;
+    private Direction[] directions = new Direction[4];
+    private int[] steps = new int[4];
+    private int legs = 0;
+
+    /**
+     * The add methods return true when the event opened the window, its flush has to be scheduled.
+     */
+    public synchronized boolean startMoving(Direction direction) {
+        boolean opened = isEmpty();
+        this.direction = direction;
+        return opened;
+    }
+
+    public synchronized boolean stopMoving() {
+        boolean opened = isEmpty();
+        this.direction = Direction.NONE;
+        return opened;
+    }
+
+    public synchronized boolean newTilePos(TilePos tilePos) {
+        if (direction == Direction.NONE) return false;
+        boolean opened = isEmpty();
+        if (this.tilePos == null) this.tilePos = tilePos;
+        if (legs > 0 && Objects.equals(directions[legs - 1], direction)) {
+            steps[legs - 1]++;
+        } else {
+            if (legs == directions.length) {
+                directions = Arrays.copyOf(directions, legs * 2);
+                steps = Arrays.copyOf(steps, legs * 2);
+            }
+            directions[legs] = direction;
+            steps[legs] = 1;
+            legs++;
+        }
+        return opened;
+    }
+
+    public synchronized boolean isEmpty() {
+        return legs == 0 && direction == null;
+    }
+
+    /**
+     * The window's movement as one command and a fresh window, null when nothing came in.
+     */
+    public synchronized AkkamonNexus.RequestMovementBatch drain(long requestId,
+                                                                AkkamonNexus.TrainerID trainerID,
+                                                                ActorRef<AkkamonNexus.Command> replyTo) {
+        if (isEmpty()) return null;
+        AkkamonNexus.RequestMovementBatch batch = new AkkamonNexus.RequestMovementBatch(
+                requestId,
+                trainerID,
+                tilePos,
+                Arrays.copyOf(directions, legs),
+                Arrays.copyOf(steps, legs),
+                direction,
+                false,
+                replyTo
+        );
+        direction = null;
+        tilePos = null;
+        legs = 0;
+        return batch;
+    }
+}
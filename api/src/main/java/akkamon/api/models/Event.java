@@ -14,6 +14,8 @@ public class Event {
     public String requestName;
     public boolean value;
     public BattleRequestBody body;
+    public long sequence;
+    public boolean requestKeyFrame;
 
     @Override
     public String toString() {
@@ -26,6 +28,8 @@ public class Event {
                 ", requestName='" + requestName + '\'' +
                 ", value=" + value +
                 ", body=" + body +
+                ", sequence=" + sequence +
+                ", requestKeyFrame=" + requestKeyFrame +
                 '}';
     }
 }
@@ -39,4 +39,7 @@ public enum EventType {
     @SerializedName("BattleActionRequest")
     BATTLE_ACTION_REQUEST,
 
+    @SerializedName("SceneTransferEvent")
+    SCENE_TRANSFER,
+
 }
@@ -0,0 +1,14 @@
+package akkamon.api.models;
+
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+public class SceneTransferEvent extends Event {
+
+    public SceneTransferEvent(AkkamonNexus.TrainerID trainerID, TilePos tilePos) {
+        this.type = EventType.SCENE_TRANSFER;
+
+        this.trainerID = trainerID;
+        this.tilePos = tilePos;
+    }
+}
@@ -0,0 +1,289 @@
+package akkamon.api.models.incoming;
+
+import akkamon.api.models.EventType;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+
+/**
+ * Decodes the high-rate events (StartMoving, StopMoving, NewTilePos and HeartBeat) in a single pass
+ * over the text frame, without reflection and without building an Event.
+ *
+ * The decoder gives up on anything it doesn't expect, like other event types, unknown fields, escaped
+ * strings or fractional numbers, and the caller falls back to Gson for those. Fields may come in any
+ * order; the browser puts type last. A decoder keeps its state between calls and is not thread-safe,
+ * use one per thread.
+ */
+public class MovementEventDecoder {
+
+    /**
+     * Scratch result, overwritten by the next decode.
+     */
+    public static class Decoded {
+        public EventType type;
+        public Direction direction;
+        public boolean hasTilePos;
+        public int x;
+        public int y;
+        public long sequence;
+        public boolean requestKeyFrame;
+
+        private boolean hasTrainerID;
+        private AkkamonNexus.TrainerID knownTrainerID;
+        private String id;
+        private String scene;
+
+        /**
+         * @return the trainer the event is about, the session's own instance when it matches.
+         */
+        public AkkamonNexus.TrainerID trainerID() {
+            if (!hasTrainerID) return null;
+            if (knownTrainerID != null) return knownTrainerID;
+            return new AkkamonNexus.TrainerID(id, scene);
+        }
+
+        private void reset() {
+            type = null;
+            direction = null;
+            hasTilePos = false;
+            x = 0;
+            y = 0;
+            sequence = 0;
+            requestKeyFrame = false;
+            hasTrainerID = false;
+            knownTrainerID = null;
+            id = null;
+            scene = null;
+        }
+    }
+
+    private static final class Unsupported extends Exception {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    private final Decoded decoded = new Decoded();
+    private String in;
+    private int pos;
+
+    /**
+     * @param sessionTrainerID trainer registered on the session, reused instead of allocating a new id
+     * @return the decoded event, or null when the message needs full decoding
+     */
+    public Decoded decode(String message, AkkamonNexus.TrainerID sessionTrainerID) {
+        in = message;
+        pos = 0;
+        decoded.reset();
+        try {
+            readEvent(sessionTrainerID);
+            return decoded.type == null ? null : decoded;
+        } catch (Unsupported | IndexOutOfBoundsException e) {
+            return null;
+        } finally {
+            in = null;
+        }
+    }
+
+    private void readEvent(AkkamonNexus.TrainerID sessionTrainerID) throws Unsupported {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        do {
+            int keyStart = readStringBounds();
+            int keyEnd = pos - 1;
+            expect(':');
+            if (value(keyStart, keyEnd, "type")) {
+                readType();
+            } else if (value(keyStart, keyEnd, "trainerID")) {
+                readTrainerID(sessionTrainerID);
+            } else if (value(keyStart, keyEnd, "direction")) {
+                if (!readNull()) decoded.direction = readDirection();
+            } else if (value(keyStart, keyEnd, "tilePos")) {
+                if (!readNull()) readTilePos();
+            } else if (value(keyStart, keyEnd, "sequence")) {
+                if (!readNull()) decoded.sequence = readLong();
+            } else if (value(keyStart, keyEnd, "requestKeyFrame")) {
+                if (!readNull()) decoded.requestKeyFrame = readBoolean();
+            } else {
+                throw UNSUPPORTED;
+            }
+        } while (nextMember());
+    }
+
+    private void readType() throws Unsupported {
+        int start = readStringBounds();
+        int end = pos - 1;
+        if (value(start, end, "StartMoving")) {
+            decoded.type = EventType.START_MOVING;
+        } else if (value(start, end, "StopMoving")) {
+            decoded.type = EventType.STOP_MOVING;
+        } else if (value(start, end, "NewTilePos")) {
+            decoded.type = EventType.NEW_TILE_POS;
+        } else if (value(start, end, "HeartBeat")) {
+            decoded.type = EventType.HEART_BEAT;
+        } else {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private Direction readDirection() throws Unsupported {
+        int start = readStringBounds();
+        int end = pos - 1;
+        for (Direction direction : Direction.values()) {
+            if (value(start, end, direction.name())) return direction;
+        }
+        throw UNSUPPORTED;
+    }
+
+    private void readTrainerID(AkkamonNexus.TrainerID sessionTrainerID) throws Unsupported {
+        if (readNull()) return;
+        int idStart = -1, idEnd = -1, sceneStart = -1, sceneEnd = -1;
+        expect('{');
+        if (peek() == '}') throw UNSUPPORTED;
+        do {
+            int keyStart = readStringBounds();
+            int keyEnd = pos - 1;
+            expect(':');
+            if (value(keyStart, keyEnd, "id")) {
+                idStart = readStringBounds();
+                idEnd = pos - 1;
+            } else if (value(keyStart, keyEnd, "scene")) {
+                sceneStart = readStringBounds();
+                sceneEnd = pos - 1;
+            } else {
+                throw UNSUPPORTED;
+            }
+        } while (nextMember());
+        if (idStart < 0 || sceneStart < 0) throw UNSUPPORTED;
+
+        decoded.hasTrainerID = true;
+        if (sessionTrainerID != null
+                && value(idStart, idEnd, sessionTrainerID.id)
+                && value(sceneStart, sceneEnd, sessionTrainerID.scene)) {
+            decoded.knownTrainerID = sessionTrainerID;
+        } else {
+            decoded.id = in.substring(idStart, idEnd);
+            decoded.scene = in.substring(sceneStart, sceneEnd);
+        }
+    }
+
+    private void readTilePos() throws Unsupported {
+        boolean hasX = false, hasY = false;
+        expect('{');
+        if (peek() == '}') throw UNSUPPORTED;
+        do {
+            int keyStart = readStringBounds();
+            int keyEnd = pos - 1;
+            expect(':');
+            if (value(keyStart, keyEnd, "x")) {
+                decoded.x = readInt();
+                hasX = true;
+            } else if (value(keyStart, keyEnd, "y")) {
+                decoded.y = readInt();
+                hasY = true;
+            } else {
+                throw UNSUPPORTED;
+            }
+        } while (nextMember());
+        if (!hasX || !hasY) throw UNSUPPORTED;
+        decoded.hasTilePos = true;
+    }
+
+    /**
+     * Reads a string without escapes and leaves pos after the closing quote.
+     *
+     * @return the index of the first character of the string
+     */
+    private int readStringBounds() throws Unsupported {
+        expect('"');
+        int start = pos;
+        while (true) {
+            char c = in.charAt(pos++);
+            if (c == '"') return start;
+            if (c == '\\') throw UNSUPPORTED;
+        }
+    }
+
+    private long readLong() throws Unsupported {
+        skipWhitespace();
+        boolean negative = false;
+        if (in.charAt(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        int start = pos;
+        long value = 0;
+        while (pos < in.length() && in.charAt(pos) >= '0' && in.charAt(pos) <= '9') {
+            // 18 digits always fit in a long
+            if (pos - start >= 18) throw UNSUPPORTED;
+            value = value * 10 + (in.charAt(pos++) - '0');
+        }
+        if (pos == start) throw UNSUPPORTED;
+        if (pos < in.length() && (in.charAt(pos) == '.' || in.charAt(pos) == 'e' || in.charAt(pos) == 'E')) {
+            throw UNSUPPORTED;
+        }
+        return negative ? -value : value;
+    }
+
+    private int readInt() throws Unsupported {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw UNSUPPORTED;
+        return (int) value;
+    }
+
+    private boolean readBoolean() throws Unsupported {
+        skipWhitespace();
+        if (in.startsWith("true", pos)) {
+            pos += 4;
+            return true;
+        }
+        if (in.startsWith("false", pos)) {
+            pos += 5;
+            return false;
+        }
+        throw UNSUPPORTED;
+    }
+
+    private boolean readNull() {
+        skipWhitespace();
+        if (in.startsWith("null", pos)) {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean nextMember() throws Unsupported {
+        skipWhitespace();
+        char c = in.charAt(pos++);
+        if (c == ',') return true;
+        if (c == '}') return false;
+        throw UNSUPPORTED;
+    }
+
+    private void expect(char expected) throws Unsupported {
+        skipWhitespace();
+        if (in.charAt(pos++) != expected) throw UNSUPPORTED;
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return in.charAt(pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+            pos++;
+        }
+    }
+
+    private boolean value(int start, int end, String expected) {
+        return end - start == expected.length() && in.regionMatches(start, expected, 0, expected.length());
+    }
+}
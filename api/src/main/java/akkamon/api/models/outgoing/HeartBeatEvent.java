@@ -3,14 +3,37 @@ package akkamon.api.models.outgoing;
 import akkamon.api.models.Event;
 import akkamon.api.models.EventType;
 import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
 
+import java.util.List;
 import java.util.Map;
 
 public class HeartBeatEvent extends Event {
     public Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> remoteMovementQueues;
+    public Map<AkkamonNexus.TrainerID, TilePos> remoteTilePositions;
+    public boolean keyFrame;
+    public List<String> removedRemoteTrainers;
+    // how long until the next heartbeat of the scene, clients spread the moves over it
+    public long tickIntervalMillis;
 
-    public HeartBeatEvent(Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> remoteMovementQueues) {
+    public HeartBeatEvent(Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> remoteMovementQueues,
+                          Map<AkkamonNexus.TrainerID, TilePos> remoteTilePositions) {
         this.type = EventType.HEART_BEAT;
         this.remoteMovementQueues = remoteMovementQueues;
+        this.remoteTilePositions = remoteTilePositions;
+        this.keyFrame = true;
+    }
+
+    public HeartBeatEvent(long sequence,
+                          boolean keyFrame,
+                          Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> remoteMovementQueues,
+                          Map<AkkamonNexus.TrainerID, TilePos> remoteTilePositions,
+                          List<String> removedRemoteTrainers) {
+        this.type = EventType.HEART_BEAT;
+        this.sequence = sequence;
+        this.keyFrame = keyFrame;
+        this.remoteMovementQueues = remoteMovementQueues;
+        this.remoteTilePositions = remoteTilePositions;
+        this.removedRemoteTrainers = removedRemoteTrainers;
     }
 }
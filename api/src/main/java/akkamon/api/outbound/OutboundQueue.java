@@ -0,0 +1,214 @@
+package akkamon.api.outbound;
+
+import com.typesafe.config.Config;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of messages waiting to be written to one client.
+ *
+ * Senders never block: a message is queued and the queue is drained with asynchronous writes, one
+ * write in flight at a time. A client that reads slower than we write fills up its queue, and from
+ * then on the overflow policy decides what gives.
+ */
+public class OutboundQueue {
+
+    public interface Transport {
+        void write(String message, WriteCallback callback);
+
+        void write(ByteBuffer frame, WriteCallback callback);
+
+        void close(String reason);
+    }
+
+    public static class Settings {
+        public final int capacity;
+        public final OverflowPolicy overflowPolicy;
+
+        public Settings(int capacity, OverflowPolicy overflowPolicy) {
+            this.capacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getInt("capacity"),
+                    OverflowPolicy.fromConfig(config.getString("overflow-policy"))
+            );
+        }
+    }
+
+    private static class Outgoing {
+        final String message;
+        final ByteBuffer frame;
+        final boolean heartBeat;
+
+        Outgoing(String message, ByteBuffer frame, boolean heartBeat) {
+            this.message = message;
+            this.frame = frame;
+            this.heartBeat = heartBeat;
+        }
+    }
+
+    private final Settings settings;
+    private final Transport transport;
+
+    private final Deque<Outgoing> queue = new ArrayDeque<>();
+    private boolean writing = false;
+    private boolean closed = false;
+
+    private final LongAdder dropped = new LongAdder();
+    // text frames count the bytes of their UTF-8 encoding, which is what goes over the wire
+    private final LongAdder written = new LongAdder();
+
+    private final WriteCallback afterWrite = new WriteCallback() {
+        @Override
+        public void writeFailed(Throwable cause) {
+            close("Write failed: " + cause.getMessage());
+        }
+
+        @Override
+        public void writeSuccess() {
+            writeNext();
+        }
+    };
+
+    public OutboundQueue(Settings settings, Transport transport) {
+        this.settings = settings;
+        this.transport = transport;
+    }
+
+    public void offer(String message, boolean heartBeat) {
+        offer(new Outgoing(message, null, heartBeat));
+    }
+
+    public void offer(ByteBuffer frame, boolean heartBeat) {
+        offer(new Outgoing(null, frame, heartBeat));
+    }
+
+    private void offer(Outgoing outgoing) {
+        boolean heartBeat = outgoing.heartBeat;
+        Outgoing next;
+        synchronized (this) {
+            if (closed) return;
+
+            if (queue.size() >= settings.capacity && !makeRoom(heartBeat)) {
+                if (heartBeat && settings.overflowPolicy != OverflowPolicy.DISCONNECT) {
+                    dropped.increment();
+                    return;
+                }
+                closed = true;
+                queue.clear();
+                next = null;
+            } else {
+                queue.addLast(outgoing);
+                if (writing) return;
+                writing = true;
+                next = queue.pollFirst();
+            }
+        }
+
+        if (next == null) {
+            transport.close("Outbound queue overflow");
+        } else {
+            write(next);
+        }
+    }
+
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public void close(String reason) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+        }
+        transport.close(reason);
+    }
+
+    private void writeNext() {
+        // a write may complete synchronously and call us again, which is bounded by the capacity
+        Outgoing next;
+        synchronized (this) {
+            next = closed ? null : queue.pollFirst();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(next);
+    }
+
+    private void write(Outgoing outgoing) {
+        if (outgoing.frame != null) {
+            written.add(outgoing.frame.remaining());
+            transport.write(outgoing.frame, afterWrite);
+        } else {
+            written.add(utf8Length(outgoing.message));
+            transport.write(outgoing.message, afterWrite);
+        }
+    }
+
+    // counted instead of encoded, the transport encodes the message itself
+    static int utf8Length(String text) {
+        int bytes = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) continue;
+            // the two halves of a surrogate pair take 4 bytes together
+            if (c < 0x800 || Character.isSurrogate(c)) bytes += 1;
+            else bytes += 2;
+        }
+        return bytes;
+    }
+
+    private boolean makeRoom(boolean forHeartBeat) {
+        switch (settings.overflowPolicy) {
+            case COALESCE_HEARTBEATS:
+                // only once full: every delta heartbeat that doesn't reach the client costs it a key frame
+                return removeQueuedHeartBeats();
+            case DROP_OLDEST_HEARTBEAT:
+                Iterator<Outgoing> queued = queue.iterator();
+                while (queued.hasNext()) {
+                    if (queued.next().heartBeat) {
+                        queued.remove();
+                        dropped.increment();
+                        return true;
+                    }
+                }
+                // only other messages queued: drop the incoming heartbeat, or give up on the client
+                return false;
+            case DISCONNECT:
+            default:
+                return false;
+        }
+    }
+
+    private boolean removeQueuedHeartBeats() {
+        boolean removed = false;
+        Iterator<Outgoing> queued = queue.iterator();
+        while (queued.hasNext()) {
+            if (queued.next().heartBeat) {
+                queued.remove();
+                dropped.increment();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,14 @@
+package akkamon.api.outbound;
+
+public enum OverflowPolicy {
+    // make room by dropping the oldest queued heartbeat
+    DROP_OLDEST_HEARTBEAT,
+    // make room by dropping every queued heartbeat, the newest one replaces them
+    COALESCE_HEARTBEATS,
+    // close the connection of a client that can't keep up
+    DISCONNECT;
+
+    public static OverflowPolicy fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(java.util.Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,68 @@
+package akkamon.api;
+
+import akkamon.domain.AkkamonSession;
+import akkamon.domain.actors.AkkamonNexus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SessionRegistryTest {
+
+    @Test
+    void given_a_scene_snapshot_when_a_session_registers_then_the_snapshot_is_unchanged() {
+        SessionRegistry registry = new SessionRegistry();
+        AkkamonSession first = mock(AkkamonSession.class);
+        AkkamonSession second = mock(AkkamonSession.class);
+        registry.addToScene("DemoScene", first);
+
+        Set<AkkamonSession> snapshot = registry.sceneSessions("DemoScene");
+        registry.addToScene("DemoScene", second);
+
+        assertEquals(Collections.singleton(first), snapshot);
+        assertEquals(2, registry.sceneSessions("DemoScene").size());
+    }
+
+    @Test
+    void given_the_last_session_of_a_scene_when_it_is_removed_then_the_scene_is_empty() {
+        SessionRegistry registry = new SessionRegistry();
+        AkkamonSession session = mock(AkkamonSession.class);
+        registry.addToScene("DemoScene", session);
+
+        registry.removeFromScene("DemoScene", session);
+
+        assertTrue(registry.sceneSessions("DemoScene").isEmpty());
+    }
+
+    @Test
+    void given_a_trainer_left_when_a_new_trainer_registers_then_its_name_is_not_reused() {
+        SessionRegistry registry = new SessionRegistry();
+        AkkamonSession session = mock(AkkamonSession.class);
+        AkkamonNexus.TrainerID first = new AkkamonNexus.TrainerID(registry.nextTrainerName(), "DemoScene");
+        registry.putTrainerSession(first, session);
+
+        registry.removeTrainerSession(first, session);
+
+        assertNotEquals(first.id, registry.nextTrainerName());
+    }
+
+    @Test
+    void given_a_trainer_changed_scenes_when_its_session_moves_then_it_only_gets_the_new_scene() {
+        SessionRegistry registry = new SessionRegistry();
+        AkkamonSession session = mock(AkkamonSession.class);
+        AkkamonNexus.TrainerID outside = new AkkamonNexus.TrainerID("1", "DemoScene");
+        AkkamonNexus.TrainerID inside = new AkkamonNexus.TrainerID("1", "House");
+        registry.addToScene("DemoScene", session);
+        registry.putTrainerSession(outside, session);
+
+        registry.moveTrainerSession(outside, inside, session);
+
+        assertTrue(registry.sceneSessions("DemoScene").isEmpty());
+        assertEquals(Collections.singleton(session), registry.sceneSessions("House"));
+        assertNull(registry.trainerSession(outside));
+        assertSame(session, registry.trainerSession(inside));
+    }
+}
@@ -0,0 +1,153 @@
+package akkamon.api.binary;
+
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryHeartBeatEncoderTest {
+
+    private final AkkamonNexus.TrainerID other = new AkkamonNexus.TrainerID("2", "DemoScene");
+    private final AkkamonNexus.TrainerID joining = new AkkamonNexus.TrainerID("3", "DemoScene");
+
+    private static AkkamonNexus.MovementQueueReading moves(Direction... directions) {
+        return new AkkamonNexus.MovementQueue(Arrays.asList(directions));
+    }
+
+    private static String readKey(ByteBuffer frame) {
+        byte[] key = new byte[BinaryProtocol.readVarInt(frame)];
+        frame.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void given_key_frame_when_encoding_then_introduce_trainers_with_packed_moves_and_tile_pos() {
+        BinaryHeartBeatEncoder encoder = new BinaryHeartBeatEncoder();
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> queues = new HashMap<>();
+        queues.put(other, moves(Direction.UP, Direction.UP, Direction.LEFT, Direction.RIGHT, Direction.DOWN));
+
+        ByteBuffer frame = encoder.encode(new HeartBeatEvent(7, true, queues,
+                Collections.singletonMap(other, new TilePos(-1, 300)), null));
+
+        assertEquals(BinaryProtocol.HEART_BEAT, frame.get());
+        assertEquals(BinaryProtocol.FLAG_KEY_FRAME, frame.get());
+        assertEquals(7, BinaryProtocol.readVarLong(frame));
+
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+        assertEquals(other.toString(), readKey(frame));
+
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+        assertEquals(5 << 1 | 1, BinaryProtocol.readVarInt(frame));
+        assertEquals(-1, BinaryProtocol.readZigZag(frame));
+        assertEquals(300, BinaryProtocol.readZigZag(frame));
+        int firstFour = frame.get() & 0xff;
+        assertEquals(Direction.UP, BinaryProtocol.direction(firstFour));
+        assertEquals(Direction.LEFT, BinaryProtocol.direction(firstFour >> 4));
+        assertEquals(Direction.RIGHT, BinaryProtocol.direction(firstFour >> 6));
+        assertEquals(Direction.DOWN, BinaryProtocol.direction(frame.get()));
+
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    void given_known_trainer_when_encoding_delta_then_only_introduce_new_trainers_and_report_removals() {
+        BinaryHeartBeatEncoder encoder = new BinaryHeartBeatEncoder();
+        encoder.encode(new HeartBeatEvent(1, true,
+                Collections.singletonMap(other, moves(Direction.NONE)), Collections.emptyMap(), null));
+
+        ByteBuffer frame = encoder.encode(new HeartBeatEvent(2, false,
+                Collections.singletonMap(joining, moves(Direction.NONE)), Collections.emptyMap(),
+                Collections.singletonList(other.toString())));
+
+        frame.get();
+        assertEquals(0, frame.get());
+        assertEquals(2, BinaryProtocol.readVarLong(frame));
+
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(joining.toString(), readKey(frame));
+
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        // idle, without moves or tile position
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    void given_a_shared_key_frame_when_one_connection_encodes_a_delta_then_the_other_keeps_its_dictionary() {
+        BinaryHeartBeatEncoder.KeyFrame keyFrame = BinaryHeartBeatEncoder.encodeKeyFrame(new HeartBeatEvent(1, true,
+                Collections.singletonMap(other, moves(Direction.NONE)), Collections.emptyMap(), null));
+        BinaryHeartBeatEncoder first = new BinaryHeartBeatEncoder();
+        BinaryHeartBeatEncoder second = new BinaryHeartBeatEncoder();
+
+        ByteBuffer firstFrame = first.encode(keyFrame);
+        ByteBuffer secondFrame = second.encode(keyFrame);
+        firstFrame.position(firstFrame.limit());
+        assertEquals(BinaryProtocol.HEART_BEAT, secondFrame.get());
+
+        first.encode(new HeartBeatEvent(2, false,
+                Collections.singletonMap(joining, moves(Direction.NONE)), Collections.emptyMap(),
+                Collections.singletonList(other.toString())));
+        ByteBuffer frame = second.encode(new HeartBeatEvent(2, false,
+                Collections.singletonMap(joining, moves(Direction.NONE)), Collections.emptyMap(),
+                Collections.singletonList(other.toString())));
+
+        frame.get();
+        frame.get();
+        BinaryProtocol.readVarLong(frame);
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(joining.toString(), readKey(frame));
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+        // the second connection still knew other by index 0
+        assertEquals(1, BinaryProtocol.readVarInt(frame));
+        assertEquals(0, BinaryProtocol.readVarInt(frame));
+    }
+
+    @Test
+    void given_a_delta_when_encoding_a_shared_key_frame_then_refuse_it() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryHeartBeatEncoder.encodeKeyFrame(
+                new HeartBeatEvent(2, false, Collections.emptyMap(), Collections.emptyMap(), null)));
+    }
+
+    @Test
+    void given_large_sequence_when_encoding_then_varint_round_trips() {
+        ByteBuffer frame = new BinaryProtocol.FrameWriter(1)
+                .writeVarLong(Long.MAX_VALUE)
+                .writeZigZag(Integer.MIN_VALUE)
+                .toByteBuffer();
+
+        assertEquals(Long.MAX_VALUE, BinaryProtocol.readVarLong(frame));
+        assertEquals(Integer.MIN_VALUE, BinaryProtocol.readZigZag(frame));
+    }
+
+    @Test
+    void given_a_scene_tick_interval_when_encoding_then_send_it_after_the_sequence() {
+        BinaryHeartBeatEncoder encoder = new BinaryHeartBeatEncoder();
+        HeartBeatEvent heartBeat = new HeartBeatEvent(3, false, Collections.emptyMap(), Collections.emptyMap(), null);
+        heartBeat.tickIntervalMillis = 1000;
+
+        ByteBuffer frame = encoder.encode(heartBeat);
+
+        assertEquals(BinaryProtocol.HEART_BEAT, frame.get());
+        assertEquals(BinaryProtocol.FLAG_TICK_INTERVAL, frame.get());
+        assertEquals(3, BinaryProtocol.readVarLong(frame));
+        assertEquals(1000, BinaryProtocol.readVarLong(frame));
+    }
+}
@@ -0,0 +1,109 @@
+package akkamon.api.heartbeat;
+
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartBeatBaselineTest {
+
+    private final AkkamonNexus.TrainerID self = new AkkamonNexus.TrainerID("1", "DemoScene");
+    private final AkkamonNexus.TrainerID other = new AkkamonNexus.TrainerID("2", "DemoScene");
+    private final AkkamonNexus.TrainerID joining = new AkkamonNexus.TrainerID("3", "DemoScene");
+    private final Map<AkkamonNexus.TrainerID, TilePos> noTilePositions = Collections.emptyMap();
+
+    private static AkkamonNexus.MovementQueueReading moves(Direction... directions) {
+        return new AkkamonNexus.MovementQueue(Arrays.asList(directions));
+    }
+
+    private Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> idleScene() {
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> scene = new HashMap<>();
+        scene.put(self, moves(Direction.NONE));
+        scene.put(other, moves(Direction.NONE));
+        return scene;
+    }
+
+    @Test
+    void given_no_acknowledged_heartbeat_when_sending_then_send_key_frame_without_self() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+
+        HeartBeatEvent heartBeat = baseline.next(idleScene(), noTilePositions, self);
+
+        assertTrue(heartBeat.keyFrame);
+        assertEquals(Collections.singleton(other), heartBeat.remoteMovementQueues.keySet());
+    }
+
+    @Test
+    void given_an_acknowledged_key_frame_when_nobody_moves_then_send_empty_delta() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+        HeartBeatEvent keyFrame = baseline.next(idleScene(), noTilePositions, self);
+        baseline.acknowledge(keyFrame.sequence, false);
+
+        HeartBeatEvent delta = baseline.next(idleScene(), noTilePositions, self);
+
+        assertFalse(delta.keyFrame);
+        assertTrue(delta.remoteMovementQueues.isEmpty());
+        assertTrue(delta.removedRemoteTrainers.isEmpty());
+    }
+
+    @Test
+    void given_an_acknowledged_key_frame_when_trainers_move_join_and_leave_then_send_only_those() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+        HeartBeatEvent keyFrame = baseline.next(idleScene(), noTilePositions, self);
+        baseline.acknowledge(keyFrame.sequence, false);
+
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> scene = new HashMap<>();
+        scene.put(self, moves(Direction.UP));
+        scene.put(joining, moves(Direction.NONE));
+        HeartBeatEvent delta = baseline.next(scene, noTilePositions, self);
+
+        assertFalse(delta.keyFrame);
+        assertEquals(Collections.singleton(joining), delta.remoteMovementQueues.keySet());
+        assertEquals(Collections.singletonList(other.toString()), delta.removedRemoteTrainers);
+    }
+
+    @Test
+    void given_a_trainer_removed_in_an_unacknowledged_heartbeat_when_it_comes_back_idle_then_it_is_sent_again() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+        HeartBeatEvent keyFrame = baseline.next(idleScene(), noTilePositions, self);
+        baseline.acknowledge(keyFrame.sequence, false);
+
+        HeartBeatEvent left = baseline.next(Collections.singletonMap(self, moves(Direction.NONE)), noTilePositions, self);
+        assertEquals(Collections.singletonList(other.toString()), left.removedRemoteTrainers);
+
+        HeartBeatEvent back = baseline.next(idleScene(), noTilePositions, self);
+
+        assertFalse(back.keyFrame);
+        assertEquals(Collections.singleton(other), back.remoteMovementQueues.keySet());
+        assertTrue(back.removedRemoteTrainers.isEmpty());
+    }
+
+    @Test
+    void given_a_trainer_seen_only_in_an_unacknowledged_heartbeat_when_it_leaves_then_it_is_removed() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+        HeartBeatEvent keyFrame = baseline.next(idleScene(), noTilePositions, self);
+        baseline.acknowledge(keyFrame.sequence, false);
+
+        Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> withJoining = idleScene();
+        withJoining.put(joining, moves(Direction.LEFT));
+        baseline.next(withJoining, noTilePositions, self);
+
+        HeartBeatEvent delta = baseline.next(idleScene(), noTilePositions, self);
+
+        assertEquals(Collections.singletonList(joining.toString()), delta.removedRemoteTrainers);
+    }
+
+    @Test
+    void given_a_key_frame_request_when_sending_then_send_key_frame() {
+        HeartBeatBaseline baseline = new HeartBeatBaseline(50, 10);
+        HeartBeatEvent keyFrame = baseline.next(idleScene(), noTilePositions, self);
+        baseline.acknowledge(keyFrame.sequence, true);
+
+        assertTrue(baseline.next(idleScene(), noTilePositions, self).keyFrame);
+    }
+}
@@ -0,0 +1,86 @@
+package akkamon.api.inbound;
+
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementCoalescerTest {
+
+    private final AkkamonNexus.TrainerID self = new AkkamonNexus.TrainerID("1", "DemoScene");
+
+    @Test
+    void given_steps_in_one_direction_when_draining_then_they_add_up_to_one_leg() {
+        MovementCoalescer coalescer = new MovementCoalescer();
+
+        assertTrue(coalescer.startMoving(Direction.RIGHT));
+        assertFalse(coalescer.newTilePos(new TilePos(0, 0)));
+        coalescer.stopMoving();
+        coalescer.startMoving(Direction.RIGHT);
+        coalescer.newTilePos(new TilePos(1, 0));
+        coalescer.stopMoving();
+
+        AkkamonNexus.RequestMovementBatch batch = coalescer.drain(7L, self, null);
+        assertEquals(7L, batch.requestId);
+        assertEquals(new TilePos(0, 0), batch.tilePos);
+        assertArrayEquals(new Direction[]{Direction.RIGHT}, batch.directions);
+        assertArrayEquals(new int[]{2}, batch.steps);
+        assertEquals(Direction.NONE, batch.finalDirection);
+    }
+
+    @Test
+    void given_a_turn_when_draining_then_every_direction_gets_its_own_leg() {
+        MovementCoalescer coalescer = new MovementCoalescer();
+
+        coalescer.startMoving(Direction.RIGHT);
+        coalescer.newTilePos(new TilePos(0, 0));
+        coalescer.startMoving(Direction.UP);
+        coalescer.newTilePos(new TilePos(1, 0));
+        coalescer.newTilePos(new TilePos(1, -1));
+
+        AkkamonNexus.RequestMovementBatch batch = coalescer.drain(1L, self, null);
+        assertArrayEquals(new Direction[]{Direction.RIGHT, Direction.UP}, batch.directions);
+        assertArrayEquals(new int[]{1, 2}, batch.steps);
+        assertEquals(Direction.UP, batch.finalDirection);
+    }
+
+    @Test
+    void given_a_start_and_stop_without_a_tile_when_draining_then_only_the_stop_is_left() {
+        MovementCoalescer coalescer = new MovementCoalescer();
+
+        coalescer.startMoving(Direction.LEFT);
+        coalescer.stopMoving();
+        coalescer.newTilePos(new TilePos(3, 3));
+
+        AkkamonNexus.RequestMovementBatch batch = coalescer.drain(1L, self, null);
+        assertEquals(0, batch.directions.length);
+        assertEquals(Direction.NONE, batch.finalDirection);
+    }
+
+    @Test
+    void given_tiles_without_a_start_when_draining_then_the_trainer_keeps_its_direction() {
+        MovementCoalescer coalescer = new MovementCoalescer();
+
+        assertTrue(coalescer.newTilePos(new TilePos(0, 0)));
+        coalescer.newTilePos(new TilePos(0, 1));
+
+        AkkamonNexus.RequestMovementBatch batch = coalescer.drain(1L, self, null);
+        assertArrayEquals(new Direction[]{null}, batch.directions);
+        assertArrayEquals(new int[]{2}, batch.steps);
+        assertNull(batch.finalDirection);
+    }
+
+    @Test
+    void given_a_drained_window_then_the_next_event_opens_a_new_one() {
+        MovementCoalescer coalescer = new MovementCoalescer();
+        assertNull(coalescer.drain(1L, self, null));
+
+        coalescer.startMoving(Direction.DOWN);
+        coalescer.drain(1L, self, null);
+
+        assertTrue(coalescer.isEmpty());
+        assertTrue(coalescer.stopMoving());
+    }
+}
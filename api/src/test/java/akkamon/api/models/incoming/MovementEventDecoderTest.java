@@ -0,0 +1,62 @@
+package akkamon.api.models.incoming;
+
+import akkamon.api.models.EventType;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementEventDecoderTest {
+
+    private final MovementEventDecoder decoder = new MovementEventDecoder();
+    private final AkkamonNexus.TrainerID self = new AkkamonNexus.TrainerID("1", "DemoScene");
+
+    @Test
+    void given_start_moving_with_type_last_when_decoding_then_reuse_the_session_trainer_id() {
+        MovementEventDecoder.Decoded decoded = decoder.decode(
+                "{\"trainerID\":{\"id\":\"1\",\"scene\":\"DemoScene\"},\"direction\":\"LEFT\",\"type\":\"StartMoving\"}",
+                self
+        );
+
+        assertEquals(EventType.START_MOVING, decoded.type);
+        assertEquals(Direction.LEFT, decoded.direction);
+        assertSame(self, decoded.trainerID());
+    }
+
+    @Test
+    void given_new_tile_pos_of_another_trainer_when_decoding_then_read_trainer_id_and_tile_pos() {
+        MovementEventDecoder.Decoded decoded = decoder.decode(
+                "{ \"type\": \"NewTilePos\", \"trainerID\": { \"scene\": \"DemoScene\", \"id\": \"2\" }, \"tilePos\": { \"x\": -3, \"y\": 12 } }",
+                self
+        );
+
+        assertEquals(EventType.NEW_TILE_POS, decoded.type);
+        assertEquals(new AkkamonNexus.TrainerID("2", "DemoScene"), decoded.trainerID());
+        assertTrue(decoded.hasTilePos);
+        assertEquals(-3, decoded.x);
+        assertEquals(12, decoded.y);
+    }
+
+    @Test
+    void given_heart_beat_reply_when_decoding_then_read_acknowledgement() {
+        MovementEventDecoder.Decoded decoded = decoder.decode(
+                "{\"type\":\"HeartBeat\",\"sequence\":4294967297,\"requestKeyFrame\":true}",
+                self
+        );
+
+        assertEquals(EventType.HEART_BEAT, decoded.type);
+        assertEquals(4294967297L, decoded.sequence);
+        assertTrue(decoded.requestKeyFrame);
+    }
+
+    @Test
+    void given_other_or_unusual_events_when_decoding_then_leave_them_to_gson() {
+        assertNull(decoder.decode("{\"type\":\"TrainerRegistrationRequestEvent\"}", self));
+        assertNull(decoder.decode("{\"type\":\"InteractionReplyEvent\",\"requestName\":\"a\",\"value\":true}", self));
+        assertNull(decoder.decode("{\"type\":\"StartMoving\",\"direction\":\"L\\u0045FT\"}", self));
+        assertNull(decoder.decode("{\"type\":\"NewTilePos\",\"tilePos\":{\"x\":1.5,\"y\":2}}", self));
+        assertNull(decoder.decode("{\"type\":\"StartMoving\"", self));
+        assertNull(decoder.decode("{\"direction\":\"UP\"}", self));
+    }
+}
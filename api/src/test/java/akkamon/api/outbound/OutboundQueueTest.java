@@ -0,0 +1,146 @@
+package akkamon.api.outbound;
+
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+
+    // completes writes only when told to, like a client that stopped reading
+    private static class StalledTransport implements OutboundQueue.Transport {
+        final List<String> written = new ArrayList<>();
+        WriteCallback pending;
+        String closedWith;
+
+        @Override
+        public void write(String message, WriteCallback callback) {
+            written.add(message);
+            pending = callback;
+        }
+
+        @Override
+        public void write(ByteBuffer frame, WriteCallback callback) {
+            write(StandardCharsets.UTF_8.decode(frame).toString(), callback);
+        }
+
+        @Override
+        public void close(String reason) {
+            closedWith = reason;
+        }
+
+        void completeAll() {
+            while (pending != null) {
+                WriteCallback callback = pending;
+                pending = null;
+                callback.writeSuccess();
+            }
+        }
+    }
+
+    @Test
+    void given_one_write_in_flight_when_offering_then_queue_the_rest_in_order() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(8, OverflowPolicy.DISCONNECT), transport);
+
+        queue.offer("a", false);
+        queue.offer("b", false);
+        queue.offer("c", true);
+
+        assertEquals(List.of("a"), transport.written);
+        assertEquals(2, queue.depth());
+
+        transport.completeAll();
+
+        assertEquals(List.of("a", "b", "c"), transport.written);
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    void given_full_queue_when_dropping_oldest_heartbeat_then_keep_other_messages() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(2, OverflowPolicy.DROP_OLDEST_HEARTBEAT), transport);
+
+        queue.offer("in-flight", false);
+        queue.offer("hb-1", true);
+        queue.offer("battle", false);
+        queue.offer("hb-2", true);
+        transport.completeAll();
+
+        assertEquals(List.of("in-flight", "battle", "hb-2"), transport.written);
+        assertEquals(1, queue.dropped());
+        assertNull(transport.closedWith);
+    }
+
+    @Test
+    void given_full_queue_when_coalescing_then_only_send_the_latest() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(2, OverflowPolicy.COALESCE_HEARTBEATS), transport);
+
+        queue.offer("in-flight", false);
+        queue.offer("hb-1", true);
+        queue.offer("hb-2", true);
+        queue.offer("hb-3", true);
+        transport.completeAll();
+
+        assertEquals(List.of("in-flight", "hb-3"), transport.written);
+        assertEquals(2, queue.dropped());
+    }
+
+    @Test
+    void given_a_slow_client_below_capacity_when_coalescing_then_every_delta_is_sent() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(8, OverflowPolicy.COALESCE_HEARTBEATS), transport);
+
+        queue.offer("delta-1", true);
+        queue.offer("delta-2", true);
+        queue.offer("delta-3", true);
+        transport.completeAll();
+
+        assertEquals(List.of("delta-1", "delta-2", "delta-3"), transport.written);
+        assertEquals(0, queue.dropped());
+    }
+
+    @Test
+    void given_full_queue_when_policy_is_disconnect_then_close_and_stop_sending() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(1, OverflowPolicy.DISCONNECT), transport);
+
+        queue.offer("in-flight", false);
+        queue.offer("queued", false);
+        queue.offer("overflow", true);
+        transport.completeAll();
+
+        assertNotNull(transport.closedWith);
+        assertEquals(List.of("in-flight"), transport.written);
+    }
+
+    @Test
+    void given_text_and_binary_frames_when_written_then_count_what_went_out() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(8, OverflowPolicy.DISCONNECT), transport);
+
+        queue.offer("abc", false);
+        queue.offer(ByteBuffer.wrap(new byte[]{1, 2}), true);
+        assertEquals(3, queue.written());
+
+        transport.completeAll();
+        assertEquals(5, queue.written());
+    }
+
+    @Test
+    void given_text_outside_ascii_when_written_then_count_its_utf8_bytes() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Settings(8, OverflowPolicy.DISCONNECT), transport);
+
+        queue.offer("{\"name\":\"Pok\u00e9 \u20ac\ud83d\ude00\"}", false);
+
+        // 2 bytes for the accent, 3 for the euro sign and 4 for the emoji
+        assertEquals(24, queue.written());
+    }
+}
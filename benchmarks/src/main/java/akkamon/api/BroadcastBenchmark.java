@@ -0,0 +1,163 @@
+package akkamon.api;
+
+import akka.actor.typed.ActorRef;
+import akkamon.api.binary.BinaryHeartBeatEncoder;
+import akkamon.api.binary.BinarySession;
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.benchmarks.SceneFixture;
+import akkamon.domain.AkkamonSession;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.Trainer;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessagingEngine.broadCastHeartBeatToScene for one tick of a scene: picking what every session gets,
+ * encoding it and handing it to the session, here a session that only keeps the last heartbeat. In
+ * delta mode every session acknowledges the heartbeat right away, the way a client keeping up does,
+ * so the acknowledgements are part of the tick.
+ *
+ * The sessions register through a real MessagingEngine. Its scenes are set to tick once an hour so
+ * only the benchmark broadcasts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    private static final String REGISTRATION = "{\"type\":\"TrainerRegistrationRequestEvent\"}";
+
+    @Param({"10", "100", "1000", "5000"})
+    public int trainersPerScene;
+
+    @Param({"full", "delta"})
+    public String mode;
+
+    @Param({"json", "binary"})
+    public String protocol;
+
+    private MessagingEngine engine;
+    private final List<BenchmarkSession> sessions = new ArrayList<>();
+    private AkkamonNexus.RespondHeartBeatQuery heartBeat;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void registerSessions() throws InterruptedException {
+        System.setProperty("akkamon.api.heartbeat.mode", mode);
+        System.setProperty("akkamon.domain.heartbeat.tick-interval", "1h");
+        System.setProperty("akkamon.domain.heartbeat.adaptive.enabled", "off");
+        System.setProperty("akkamon.domain.maps.reload-interval", "0");
+        ConfigFactory.invalidateCaches();
+        engine = new MessagingEngine();
+
+        for (int i = 0; i < trainersPerScene; i++) {
+            BenchmarkSession session = new BenchmarkSession(engine.newSessionId(), "binary".equals(protocol));
+            sessions.add(session);
+            engine.incoming(session, REGISTRATION);
+        }
+
+        List<AkkamonNexus.TrainerID> trainerIDs = new ArrayList<>(trainersPerScene);
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        for (BenchmarkSession session : sessions) {
+            while (session.gettrainerID() == null) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Only some of the " + trainersPerScene + " sessions registered");
+                }
+                Thread.sleep(10);
+            }
+            trainerIDs.add(session.gettrainerID());
+        }
+
+        heartBeat = SceneFixture.heartBeat(trainerIDs, 16, new Random(42));
+    }
+
+    @Benchmark
+    public void tick() {
+        engine.broadCastHeartBeatToScene(heartBeat);
+        if ("delta".equals(mode)) {
+            // every session's baseline numbers the heartbeats it got the same way
+            String acknowledgement = "{\"type\":\"HeartBeat\",\"sequence\":" + (++sequence) + "}";
+            for (BenchmarkSession session : sessions) {
+                engine.incoming(session, acknowledgement);
+            }
+        }
+    }
+
+    private static class BenchmarkSession implements AkkamonSession, BinarySession {
+        private final String sessionId;
+        private final BinaryHeartBeatEncoder binaryHeartBeats;
+        private volatile AkkamonNexus.TrainerID trainerID;
+        private volatile ActorRef<Trainer.Command> trainerRef;
+        private volatile Object lastHeartBeat;
+        private long requestIds;
+
+        BenchmarkSession(String sessionId, boolean binary) {
+            this.sessionId = sessionId;
+            this.binaryHeartBeats = binary ? new BinaryHeartBeatEncoder() : null;
+        }
+
+        @Override
+        public void send(String event) {
+        }
+
+        @Override
+        public void sendHeartBeat(String event) {
+            lastHeartBeat = event;
+        }
+
+        @Override
+        public boolean binaryFrames() {
+            return binaryHeartBeats != null;
+        }
+
+        @Override
+        public void sendHeartBeat(HeartBeatEvent heartBeat) {
+            ByteBuffer frame = binaryHeartBeats.encode(heartBeat);
+            lastHeartBeat = frame;
+        }
+
+        @Override
+        public void sendHeartBeat(BinaryHeartBeatEncoder.KeyFrame keyFrame) {
+            lastHeartBeat = binaryHeartBeats.encode(keyFrame);
+        }
+
+        @Override
+        public synchronized long nextRequestId() {
+            return ++requestIds;
+        }
+
+        @Override
+        public String sessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public void settrainerID(AkkamonNexus.TrainerID trainerID) {
+            this.trainerID = trainerID;
+        }
+
+        @Override
+        public AkkamonNexus.TrainerID gettrainerID() {
+            return trainerID;
+        }
+
+        @Override
+        public void setTrainerRef(ActorRef<Trainer.Command> trainer) {
+            this.trainerRef = trainer;
+        }
+
+        @Override
+        public ActorRef<Trainer.Command> getTrainerRef() {
+            return trainerRef;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package akkamon.api;
+
+import akkamon.api.binary.BinaryHeartBeatEncoder;
+import akkamon.api.models.outgoing.HeartBeatEvent;
+import akkamon.benchmarks.SceneFixture;
+import akkamon.domain.actors.AkkamonNexus;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding the heartbeat of a whole scene, the key frame every session gets now and then and every
+ * session gets in full mode: Gson with the MessagingEngine's adapters against the binary protocol.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeartBeatSerializationBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int trainersPerScene;
+
+    private final Gson gson = MessagingEngine.createGson();
+    private final BinaryHeartBeatEncoder binaryEncoder = new BinaryHeartBeatEncoder();
+    private HeartBeatEvent heartBeat;
+
+    @Setup(Level.Trial)
+    public void createHeartBeat() {
+        AkkamonNexus.RespondHeartBeatQuery query = SceneFixture.heartBeat(
+                SceneFixture.trainerIDs(trainersPerScene), 0, new Random(42));
+        heartBeat = new HeartBeatEvent(query.trainerMovementQueues, query.trainerTilePositions);
+        heartBeat.tickIntervalMillis = query.tickIntervalMillis;
+    }
+
+    @Benchmark
+    public String json() {
+        return gson.toJson(heartBeat);
+    }
+
+    @Benchmark
+    public ByteBuffer binary() {
+        return binaryEncoder.encode(heartBeat);
+    }
+}
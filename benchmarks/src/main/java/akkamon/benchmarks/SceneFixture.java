@@ -0,0 +1,99 @@
+package akkamon.benchmarks;
+
+import akka.actor.testkit.typed.javadsl.BehaviorTestKit;
+import akka.actor.testkit.typed.javadsl.TestInbox;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scenes for the benchmarks: trainers spread over a map that grows with them, so every trainer has
+ * about as many trainers within the interest radius whatever the size of the scene, and heartbeats
+ * made by a real SceneMovementAggregator.
+ */
+public final class SceneFixture {
+
+    public static final String SCENE = "DemoScene";
+    // the share of trainers that take a step in a tick
+    public static final double MOVING = 0.25;
+
+    private static final Direction[] WALKING = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    // tiles of map per trainer
+    private static final int TILES_PER_TRAINER = 16;
+
+    private SceneFixture() {
+    }
+
+    public static List<AkkamonNexus.TrainerID> trainerIDs(int trainers) {
+        List<AkkamonNexus.TrainerID> trainerIDs = new ArrayList<>(trainers);
+        for (int i = 1; i <= trainers; i++) {
+            trainerIDs.add(new AkkamonNexus.TrainerID(String.valueOf(i), SCENE));
+        }
+        return trainerIDs;
+    }
+
+    public static int side(int trainers) {
+        return Math.max(32, (int) Math.ceil(Math.sqrt((double) trainers * TILES_PER_TRAINER)));
+    }
+
+    public static TilePos randomTile(int trainers, Random random) {
+        int side = side(trainers);
+        return new TilePos(random.nextInt(side), random.nextInt(side));
+    }
+
+    public static Direction randomDirection(Random random) {
+        return WALKING[random.nextInt(WALKING.length)];
+    }
+
+    public static Direction opposite(Direction direction) {
+        switch (direction) {
+            case UP:
+                return Direction.DOWN;
+            case DOWN:
+                return Direction.UP;
+            case LEFT:
+                return Direction.RIGHT;
+            case RIGHT:
+                return Direction.LEFT;
+            default:
+                return Direction.NONE;
+        }
+    }
+
+    /**
+     * @return the heartbeat of a tick in which the share MOVING of the trainers took one step each,
+     * after every trainer has been placed on the map
+     */
+    public static AkkamonNexus.RespondHeartBeatQuery heartBeat(List<AkkamonNexus.TrainerID> trainerIDs,
+                                                               int interestRadius,
+                                                               Random random) {
+        BehaviorTestKit<SceneMovementAggregator.Command> aggregator =
+                BehaviorTestKit.create(SceneMovementAggregator.create(SCENE, interestRadius));
+        TestInbox<AkkamonNexus.Command> heartBeats = TestInbox.create();
+
+        List<TilePos> tilePositions = new ArrayList<>(trainerIDs.size());
+        for (AkkamonNexus.TrainerID trainerID : trainerIDs) {
+            TilePos from = randomTile(trainerIDs.size(), random);
+            Direction direction = randomDirection(random);
+            aggregator.run(new SceneMovementAggregator.TrainerJoined(trainerID));
+            aggregator.run(new SceneMovementAggregator.MovementStep(trainerID, direction, from));
+            tilePositions.add(from.step(direction));
+        }
+        aggregator.run(new AkkamonNexus.RequestHeartBeat(0, heartBeats.getRef()));
+        heartBeats.receiveMessage();
+
+        for (int i = 0; i < trainerIDs.size(); i++) {
+            if (random.nextDouble() < MOVING) {
+                aggregator.run(new SceneMovementAggregator.MovementStep(
+                        trainerIDs.get(i), randomDirection(random), tilePositions.get(i)));
+            }
+        }
+        aggregator.run(new AkkamonNexus.RequestHeartBeat(1, heartBeats.getRef()));
+        return (AkkamonNexus.RespondHeartBeatQuery) heartBeats.receiveMessage();
+    }
+}
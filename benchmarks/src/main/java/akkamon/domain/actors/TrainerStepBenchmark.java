@@ -0,0 +1,103 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.BehaviorTestKit;
+import akka.actor.testkit.typed.javadsl.TestInbox;
+import akkamon.benchmarks.SceneFixture;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.model.world.SceneMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steps of a quarter of a scene's trainers in one tick as the Trainer actors take them: StartMoving,
+ * then NewTilePos checked against the demo map and passed on to the aggregator. Trainers used to keep
+ * their own movement queue for the scene to read every tick, since the queue moved to the aggregator
+ * this is the part of a heartbeat that runs in the trainers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainerStepBenchmark {
+
+    // relative to the benchmarks module, where gradle :benchmarks:jmh runs
+    private static final String DEMO_MAP = "../client/dist/assets/tilemaps/akkamon-demo-tilemap.json";
+
+    @Param({"10", "100", "1000", "5000"})
+    public int trainersPerScene;
+
+    private static class Walker {
+        final BehaviorTestKit<Trainer.Command> trainer;
+        final AkkamonNexus.TrainerID trainerID;
+        // the trainer walks between from and its right neighbour
+        final TilePos from;
+        boolean atFrom = true;
+
+        Walker(BehaviorTestKit<Trainer.Command> trainer, AkkamonNexus.TrainerID trainerID, TilePos from) {
+            this.trainer = trainer;
+            this.trainerID = trainerID;
+            this.from = from;
+        }
+    }
+
+    private final List<Walker> walkers = new ArrayList<>();
+    private TestInbox<SceneMovementAggregator.Command> aggregator;
+    private TestInbox<AkkamonNexus.Command> nexus;
+    private long requestId;
+
+    @Setup(Level.Trial)
+    public void createTrainers() throws IOException {
+        Optional<SceneMap> map;
+        try (Reader reader = Files.newBufferedReader(Paths.get(DEMO_MAP), StandardCharsets.UTF_8)) {
+            map = Optional.of(SceneMap.fromTiledJson(reader));
+        }
+        List<TilePos> walkable = new ArrayList<>();
+        for (int y = 0; y < map.get().height(); y++) {
+            for (int x = 0; x < map.get().width(); x++) {
+                TilePos tilePos = new TilePos(x, y);
+                if (!map.get().isBlocked(tilePos) && !map.get().isBlocked(tilePos.step(Direction.RIGHT))
+                        && !map.get().warpAt(tilePos).isPresent() && !map.get().warpAt(tilePos.step(Direction.RIGHT)).isPresent()) {
+                    walkable.add(tilePos);
+                }
+            }
+        }
+
+        Random random = new Random(42);
+        aggregator = TestInbox.create();
+        nexus = TestInbox.create();
+        for (AkkamonNexus.TrainerID trainerID : SceneFixture.trainerIDs(trainersPerScene)) {
+            if (random.nextDouble() >= SceneFixture.MOVING) continue;
+            walkers.add(new Walker(
+                    BehaviorTestKit.create(Trainer.create(trainerID, aggregator.getRef(), () -> map)),
+                    trainerID,
+                    walkable.get(random.nextInt(walkable.size()))
+            ));
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        for (Walker walker : walkers) {
+            Direction direction = walker.atFrom ? Direction.RIGHT : Direction.LEFT;
+            TilePos tilePos = walker.atFrom ? walker.from : walker.from.step(Direction.RIGHT);
+            walker.trainer.run(new AkkamonNexus.RequestStartMoving(++requestId, walker.trainerID, direction, nexus.getRef()));
+            walker.trainer.run(new AkkamonNexus.RequestNewTilePos(++requestId, walker.trainerID, tilePos, nexus.getRef()));
+            walker.atFrom = !walker.atFrom;
+        }
+        return aggregator.getAllReceived().size();
+    }
+}
@@ -0,0 +1,73 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import akka.actor.testkit.typed.javadsl.BehaviorTestKit;
+import akka.actor.testkit.typed.javadsl.TestInbox;
+import akkamon.benchmarks.SceneFixture;
+import akkamon.domain.actors.AkkamonNexus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick of a scene's SceneMovementAggregator: the steps a quarter of its trainers took, then the
+ * heartbeat query that drains them into a snapshot and works out who sees whom. The aggregator runs
+ * in a BehaviorTestKit, so this is the actor's own work without mailbox or dispatcher.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int trainersPerScene;
+
+    // 0 shares the whole scene with everyone
+    @Param({"0", "16"})
+    public int interestRadius;
+
+    private BehaviorTestKit<SceneMovementAggregator.Command> aggregator;
+    private TestInbox<AkkamonNexus.Command> heartBeats;
+    // trainers step there and back again, so they stay on the map however long the benchmark runs
+    private List<SceneMovementAggregator.MovementStep> there;
+    private List<SceneMovementAggregator.MovementStep> back;
+    private boolean goingBack;
+    private long requestId;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        Random random = new Random(42);
+        aggregator = BehaviorTestKit.create(SceneMovementAggregator.create(SceneFixture.SCENE, interestRadius));
+        heartBeats = TestInbox.create();
+        there = new ArrayList<>();
+        back = new ArrayList<>();
+
+        for (AkkamonNexus.TrainerID trainerID : SceneFixture.trainerIDs(trainersPerScene)) {
+            TilePos tilePos = SceneFixture.randomTile(trainersPerScene, random);
+            aggregator.run(new SceneMovementAggregator.TrainerJoined(trainerID));
+            aggregator.run(new SceneMovementAggregator.MovementStep(trainerID, Direction.NONE, tilePos));
+            if (random.nextDouble() < SceneFixture.MOVING) {
+                Direction direction = SceneFixture.randomDirection(random);
+                there.add(new SceneMovementAggregator.MovementStep(trainerID, direction, tilePos));
+                back.add(new SceneMovementAggregator.MovementStep(
+                        trainerID, SceneFixture.opposite(direction), tilePos.step(direction)));
+            }
+        }
+        tick();
+    }
+
+    @Benchmark
+    public AkkamonNexus.RespondHeartBeatQuery tick() {
+        for (SceneMovementAggregator.MovementStep step : goingBack ? back : there) {
+            aggregator.run(step);
+        }
+        goingBack = !goingBack;
+        aggregator.run(new AkkamonNexus.RequestHeartBeat(requestId++, heartBeats.getRef()));
+        return (AkkamonNexus.RespondHeartBeatQuery) heartBeats.receiveMessage();
+    }
+}
@@ -0,0 +1,191 @@
+import { Direction } from '../render/Direction';
+import { EventType } from './EventType';
+import type { IncomingEvent } from './IncomingEvents';
+
+// Mirrors akkamon.api.binary.BinaryProtocol on the server, see there for the frame layouts.
+export const BINARY_SUBPROTOCOL = "akkamon.binary.v1";
+
+const START_MOVING = 0x01;
+const STOP_MOVING = 0x02;
+const NEW_TILE_POS = 0x03;
+const HEART_BEAT = 0x04;
+
+const FLAG_KEY_FRAME = 1;
+const FLAG_TICK_INTERVAL = 2;
+const FLAG_REQUEST_KEY_FRAME = 1;
+
+const DIRECTIONS = [Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT];
+
+const utf8 = new TextDecoder();
+
+class FrameReader {
+    private offset = 0;
+    private bytes: Uint8Array;
+
+    constructor(buffer: ArrayBuffer) {
+        this.bytes = new Uint8Array(buffer);
+    }
+
+    byte(): number {
+        if (this.offset >= this.bytes.length) {
+            throw new Error("Truncated binary frame");
+        }
+        return this.bytes[this.offset++];
+    }
+
+    // sequences may exceed 32 bits, so no bit shifts here
+    varint(): number {
+        let value = 0;
+        let scale = 1;
+        let b: number;
+        do {
+            b = this.byte();
+            value += (b & 0x7f) * scale;
+            scale *= 128;
+        } while (b & 0x80);
+        return value;
+    }
+
+    zigzag(): number {
+        const value = this.varint();
+        return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+    }
+
+    string(): string {
+        const length = this.varint();
+        const value = utf8.decode(this.bytes.subarray(this.offset, this.offset + length));
+        this.offset += length;
+        return value;
+    }
+}
+
+class FrameWriter {
+    private bytes: number[] = [];
+
+    byte(b: number): FrameWriter {
+        this.bytes.push(b & 0xff);
+        return this;
+    }
+
+    varint(value: number): FrameWriter {
+        while (value >= 0x80) {
+            this.bytes.push((value % 128) | 0x80);
+            value = Math.floor(value / 128);
+        }
+        this.bytes.push(value);
+        return this;
+    }
+
+    zigzag(value: number): FrameWriter {
+        return this.varint(value >= 0 ? value * 2 : -value * 2 - 1);
+    }
+
+    toArrayBuffer(): ArrayBuffer {
+        return new Uint8Array(this.bytes).buffer;
+    }
+}
+
+export function hasBinaryCode(direction: Direction): boolean {
+    return DIRECTIONS.indexOf(direction) !== -1;
+}
+
+export function encodeStartMoving(direction: Direction): ArrayBuffer {
+    return new FrameWriter().byte(START_MOVING).byte(DIRECTIONS.indexOf(direction)).toArrayBuffer();
+}
+
+export function encodeStopMoving(direction: Direction): ArrayBuffer {
+    return new FrameWriter().byte(STOP_MOVING).byte(DIRECTIONS.indexOf(direction)).toArrayBuffer();
+}
+
+export function encodeNewTilePos(tilePos: {x: number, y: number}): ArrayBuffer {
+    return new FrameWriter().byte(NEW_TILE_POS).zigzag(tilePos.x).zigzag(tilePos.y).toArrayBuffer();
+}
+
+export function encodeHeartBeatReply(sequence: number, requestKeyFrame: boolean): ArrayBuffer {
+    return new FrameWriter()
+        .byte(HEART_BEAT)
+        .byte(requestKeyFrame ? FLAG_REQUEST_KEY_FRAME : 0)
+        .varint(sequence)
+        .toArrayBuffer();
+}
+
+// Keeps the trainer index dictionary of one connection, it restarts with every key frame.
+export class BinaryHeartBeatDecoder {
+
+    private indexToKey: Map<number, string> = new Map();
+
+    decode(buffer: ArrayBuffer): IncomingEvent | undefined {
+        const frame = new FrameReader(buffer);
+        if (frame.byte() !== HEART_BEAT) {
+            return undefined;
+        }
+
+        const flags = frame.byte();
+        const keyFrame = (flags & FLAG_KEY_FRAME) !== 0;
+        const sequence = frame.varint();
+        const tickIntervalMillis = (flags & FLAG_TICK_INTERVAL) !== 0 ? frame.varint() : undefined;
+        if (keyFrame) {
+            this.indexToKey.clear();
+        }
+
+        const introduced = frame.varint();
+        for (let i = 0; i < introduced; i++) {
+            const index = frame.varint();
+            this.indexToKey.set(index, frame.string());
+        }
+
+        const remoteMovementQueues: {[trainerID: string]: { value: Array<Direction> }} = {};
+        const remoteTilePositions: {[trainerID: string]: { x: number, y: number }} = {};
+        let unknownTrainer = false;
+
+        const entries = frame.varint();
+        for (let i = 0; i < entries; i++) {
+            const key = this.indexToKey.get(frame.varint());
+            const header = frame.varint();
+            const moveCount = Math.floor(header / 2);
+            let tilePos: {x: number, y: number} | undefined;
+            if (header % 2 === 1) {
+                tilePos = { x: frame.zigzag(), y: frame.zigzag() };
+            }
+            const moves: Direction[] = [];
+            let packed = 0;
+            for (let m = 0; m < moveCount; m++) {
+                if (m % 4 === 0) {
+                    packed = frame.byte();
+                }
+                moves.push(DIRECTIONS[(packed >> ((m % 4) * 2)) & 0b11]);
+            }
+            if (key === undefined) {
+                unknownTrainer = true;
+                continue;
+            }
+            remoteMovementQueues[key] = { value: moves.length === 0 ? [Direction.NONE] : moves };
+            if (tilePos !== undefined) {
+                remoteTilePositions[key] = tilePos;
+            }
+        }
+
+        const removedRemoteTrainers: string[] = [];
+        const removed = frame.varint();
+        for (let i = 0; i < removed; i++) {
+            const index = frame.varint();
+            const key = this.indexToKey.get(index);
+            if (key !== undefined) {
+                removedRemoteTrainers.push(key);
+                this.indexToKey.delete(index);
+            }
+        }
+
+        return {
+            type: EventType.HEART_BEAT,
+            keyFrame: keyFrame,
+            sequence: sequence,
+            tickIntervalMillis: tickIntervalMillis,
+            // a frame that introduced a trainer was lost
+            outOfSync: unknownTrainer,
+            remoteMovementQueues: remoteMovementQueues,
+            remoteTilePositions: remoteTilePositions,
+            removedRemoteTrainers: removedRemoteTrainers
+        };
+    }
+}
@@ -52,6 +52,16 @@ import {
     BattleActionRequest
 } from './OutgoingEvents';
 
+import {
+    BINARY_SUBPROTOCOL,
+    BinaryHeartBeatDecoder,
+    encodeHeartBeatReply,
+    encodeNewTilePos,
+    encodeStartMoving,
+    encodeStopMoving,
+    hasBinaryCode
+} from './BinaryProtocol';
+
 import type BattleScene from '../scenes/BattleScene';
 import { BattleControls } from '../render/BattleControls';
 
@@ -71,6 +81,11 @@ export class Client implements AkkamonClient
 
     private BattleEngine?: BattleEngine
 
+    private lastHeartBeatSequence: number = 0;
+    private needsKeyFrame: boolean = true;
+
+    private binaryHeartBeats: BinaryHeartBeatDecoder = new BinaryHeartBeatDecoder();
+
     constructor(
         private url: string
     ) {
@@ -81,9 +96,22 @@ export class Client implements AkkamonClient
 
     retryConnection() {
         this.tryAgainLater(1000);
+        this.binaryHeartBeats = new BinaryHeartBeatDecoder();
         this.session = new Socket(this.url, this);
     }
 
+    private binary(): boolean {
+        return this.session.protocol === BINARY_SUBPROTOCOL;
+    }
+
+    inBinary(frame: ArrayBuffer) {
+        const event = this.binaryHeartBeats.decode(frame);
+        if (event !== undefined) {
+            const requestKeyFrame = this.applyHeartBeat(event);
+            this.session.send(encodeHeartBeatReply(event.sequence!, requestKeyFrame));
+        }
+    }
+
     async tryAgainLater(ms: number) {
         await delay(ms);
     }
@@ -94,10 +122,10 @@ export class Client implements AkkamonClient
         // console.log(event);
         switch (event.type) {
             case EventType.HEART_BEAT:
-                if (this.remotePlayerEngine !== undefined && event.remoteMovementQueues) {
-                    this.remotePlayerEngine.push(event.remoteMovementQueues!);
-                }
-                this.send(new HeartBeatReplyEvent());
+                this.send(new HeartBeatReplyEvent(
+                    event.sequence,
+                    this.applyHeartBeat(event)
+                ));
                 break;
             case EventType.TRAINER_REGISTRATION_REPLY:
                 if (event.trainerID !== undefined) {
@@ -106,6 +134,12 @@ export class Client implements AkkamonClient
                     this.session.trainerID = event.trainerID;
                 }
                 break;
+            case EventType.SCENE_TRANSFER:
+                // the server moved our trainer to another scene, its remote players are new to us
+                console.log("Moved to scene " + event.trainerID!.scene + " at " + JSON.stringify(event.tilePos));
+                this.session.trainerID = event.trainerID;
+                this.needsKeyFrame = true;
+                break;
             case EventType.INTERACTION_REQUEST:
                 console.log("Received an interaction request!");
                 console.log(event);
@@ -136,6 +170,40 @@ export class Client implements AkkamonClient
         }
     }
 
+    // returns true when the remote player state is out of sync and a key frame is needed
+    private applyHeartBeat(event: IncomingEvent): boolean {
+        if (!event.remoteMovementQueues) {
+            return false;
+        }
+        if (this.remotePlayerEngine === undefined) {
+            this.needsKeyFrame = true;
+            return true;
+        }
+        if (event.keyFrame) {
+            this.remotePlayerEngine.push(
+                event.remoteMovementQueues!,
+                event.remoteTilePositions || {},
+                this.getTrainerID(),
+                event.tickIntervalMillis
+            );
+            this.needsKeyFrame = false;
+        } else if (!this.needsKeyFrame && !event.outOfSync && event.sequence === this.lastHeartBeatSequence + 1) {
+            this.remotePlayerEngine.pushDelta(
+                event.remoteMovementQueues!,
+                event.remoteTilePositions || {},
+                event.removedRemoteTrainers || [],
+                this.getTrainerID(),
+                event.tickIntervalMillis
+            );
+        } else {
+            this.needsKeyFrame = true;
+        }
+        if (event.sequence !== undefined) {
+            this.lastHeartBeatSequence = event.sequence;
+        }
+        return this.needsKeyFrame;
+    }
+
     send(event: AkkamonEvent) {
         // console.log("-> client is now sending out message:");
         // console.log(event)
@@ -200,6 +268,7 @@ export class Client implements AkkamonClient
         this.remotePlayerEngine = new RemotePlayerEngine(
             scene
         );
+        this.needsKeyFrame = true;
 
         this.interactionEngine = new InteractionEngine(
             scene
@@ -287,10 +356,18 @@ export class Client implements AkkamonClient
     }
 
     sendStartMove(direction: Direction) {
+        if (this.binary() && hasBinaryCode(direction)) {
+            this.session.send(encodeStartMoving(direction));
+            return;
+        }
         this.send(new StartMovingEvent(this.getTrainerID()!, direction));
     }
 
     sendNewTilePos(tilePos: {x: number, y: number}) {
+        if (this.binary()) {
+            this.session.send(encodeNewTilePos(tilePos));
+            return;
+        }
         this.send(new NewTilePosEvent(
                 this.getTrainerID()!, tilePos
             )
@@ -298,6 +375,10 @@ export class Client implements AkkamonClient
     }
 
     sendStopMoving(direction: Direction) {
+        if (this.binary() && hasBinaryCode(direction)) {
+            this.session.send(encodeStopMoving(direction));
+            return;
+        }
         this.send(
             new StopMovingEvent(
                 this.getTrainerID()!,
@@ -14,6 +14,7 @@ export enum EventType {
     INTERACTION_ABORTED = "InteractionAbortedEvent",
     INTERACTION_START = "InteractionStarting",
     BATTLE_INIT = "BattleInitEvent",
-    BATTLE_ACTION_REQUEST = "BattleActionRequest"
+    BATTLE_ACTION_REQUEST = "BattleActionRequest",
+    SCENE_TRANSFER = "SceneTransferEvent"
 }
 
@@ -63,7 +63,14 @@ export type Mon = {
 
 export interface IncomingEvent extends AkkamonEvent {
     remoteMovementQueues?:{[trainerID: string]: { value: Array<Direction> }}
+    remoteTilePositions?:{[trainerID: string]: { x: number, y: number }}
+    sequence?: number
+    keyFrame?: boolean
+    removedRemoteTrainers?: string[]
+    outOfSync?: boolean
+    tickIntervalMillis?: number
     trainerID?: TrainerID
+    tilePos?: { x: number, y: number }
     requestId?: number
     requestName?: string
     interactionType?: string
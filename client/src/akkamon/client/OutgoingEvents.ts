@@ -50,6 +50,8 @@ export class HeartBeatReplyEvent implements AkkamonEvent {
     public type: EventType = EventType.HEART_BEAT;
 
     constructor(
+        public sequence?: number,
+        public requestKeyFrame?: boolean
     ) { }
 }
 
@@ -4,6 +4,7 @@ import type AkkamonSession from './Session'
 import {
     PlayerRegistrationRequestEvent
 } from './Events';
+import { BINARY_SUBPROTOCOL } from './BinaryProtocol';
 
 export class Socket extends WebSocket implements AkkamonSession
 {
@@ -13,7 +14,9 @@ export class Socket extends WebSocket implements AkkamonSession
         url: string,
         client: Client
     ) {
-        super(url);
+        // servers without binary support just don't pick the subprotocol and we stay on json
+        super(url, [BINARY_SUBPROTOCOL]);
+        this.binaryType = "arraybuffer";
 
         this.onopen = function echo(this: WebSocket, ev: Event) {
             console.log("Sending PlayerRegistrationEvent.");
@@ -21,7 +24,11 @@ export class Socket extends WebSocket implements AkkamonSession
         }
 
         this.onmessage = function incomingMessage(this: WebSocket, ev: MessageEvent) {
-            client.in(ev.data);
+            if (typeof ev.data === "string") {
+                client.in(ev.data);
+            } else {
+                client.inBinary(ev.data);
+            }
         }
 
         // this.onerror = function socketFailure(this: WebSocket, ev: Event) {
@@ -5,6 +5,8 @@ import { AkkamonEngine } from '../engine/AkkamonEngine';
 
 import type { Direction } from '../Direction';
 
+import type { TrainerID } from '../../client/OutgoingEvents';
+
 import {
     RemotePlayerSprite
 } from '../model/RemotePlayerSprite';
@@ -20,25 +22,67 @@ type RemoteMovementQueues = {
     [key: string]: {value: Direction[]}
 }
 
+type RemoteTilePositions = {
+    [key: string]: {x: number, y: number}
+}
+
 export class RemotePlayerEngine extends AkkamonEngine {
 
     private scene: WorldScene;
 
     private trainerIDToRemotePlayerSprite: Map<string, RemotePlayerSprite> = new Map();
 
+    private selfKey?: string;
+
     constructor(scene: WorldScene) {
         super();
         this.scene = scene;
     }
 
-    push(remoteMovementQueues: RemoteMovementQueues) {
-        this.updateMembers(remoteMovementQueues);
-        this.pushMovesToSprites(remoteMovementQueues);
+    push(remoteMovementQueues: RemoteMovementQueues,
+         remoteTilePositions: RemoteTilePositions,
+         self?: TrainerID,
+         tickIntervalMillis?: number) {
+        this.updateMembers(remoteMovementQueues, remoteTilePositions, self);
+        this.pushMovesToSprites(remoteMovementQueues, tickIntervalMillis);
+    }
+
+    pushDelta(changedMovementQueues: RemoteMovementQueues,
+              remoteTilePositions: RemoteTilePositions,
+              removedRemoteTrainers: string[],
+              self?: TrainerID,
+              tickIntervalMillis?: number) {
+        for (const key of removedRemoteTrainers) {
+            const remoteSprite = this.trainerIDToRemotePlayerSprite.get(key);
+            if (remoteSprite !== undefined) {
+                remoteSprite.destroy();
+                this.trainerIDToRemotePlayerSprite.delete(key);
+            }
+        }
+
+        Object.keys(changedMovementQueues).forEach((key: string) => {
+            if (this.isSelf(key, self)) {
+                return;
+            }
+            const moveQueue = changedMovementQueues[key].value;
+            if (!this.trainerIDToRemotePlayerSprite.has(key)) {
+                this.trainerIDToRemotePlayerSprite.set(key,
+                                                      new RemotePlayerSprite({
+                                                          scene: this.scene,
+                                                          tilePos: this.startTilePos(key, remoteTilePositions),
+                                                          texture: this.scene.textures.get("atlas"),
+                                                          frame: "misa-front",
+                                                          moveQueue: queueFromArray(moveQueue)
+                                                      }
+                                                      ));
+            }
+            this.trainerIDToRemotePlayerSprite.get(key)!.push(moveQueue, tickIntervalMillis);
+        });
     }
 
-    pushMovesToSprites(remoteMovementQueues: RemoteMovementQueues) {
+    pushMovesToSprites(remoteMovementQueues: RemoteMovementQueues, tickIntervalMillis?: number) {
         this.trainerIDToRemotePlayerSprite.forEach((remoteSprite: RemotePlayerSprite, key: string) => {
-            remoteSprite.push(remoteMovementQueues[key].value);
+            remoteSprite.push(remoteMovementQueues[key].value, tickIntervalMillis);
         });
     }
 
@@ -54,11 +98,16 @@ export class RemotePlayerEngine extends AkkamonEngine {
         });
     }
 
-    updateMembers(newRemoteMovementQueues: RemoteMovementQueues) {
+    updateMembers(newRemoteMovementQueues: RemoteMovementQueues, remoteTilePositions: RemoteTilePositions, self?: TrainerID) {
         const trainerIDToQueueValue = newRemoteMovementQueues;
 
         Object.keys(newRemoteMovementQueues).forEach((key: string) => {
 
+            // the heartbeat is shared by the whole scene, so it includes our own trainer
+            if (this.isSelf(key, self)) {
+                return;
+            }
+
             var moveQueue = trainerIDToQueueValue[key].value;
             if (moveQueue !== undefined) {
 
@@ -69,7 +118,7 @@ export class RemotePlayerEngine extends AkkamonEngine {
                     this.trainerIDToRemotePlayerSprite.set(key,
                                                           new RemotePlayerSprite({
                                                               scene: this.scene,
-                                                              tilePos: new Phaser.Math.Vector2(this.scene.spawnPointTilePos!),
+                                                              tilePos: this.startTilePos(key, remoteTilePositions),
                                                               texture: this.scene.textures.get("atlas"),
                                                               frame: "misa-front",
                                                               moveQueue: queueFromArray(moveQueue)
@@ -93,6 +142,30 @@ export class RemotePlayerEngine extends AkkamonEngine {
         });
     }
 
+    // remote trainers appear where their movement queue starts, or at the spawn point if that is unknown
+    private startTilePos(key: string, remoteTilePositions: RemoteTilePositions): Phaser.Math.Vector2 {
+        const tilePos = remoteTilePositions[key];
+        if (tilePos !== undefined) {
+            return new Phaser.Math.Vector2(tilePos.x, tilePos.y);
+        }
+        return new Phaser.Math.Vector2(this.scene.spawnPointTilePos!);
+    }
+
+    private isSelf(key: string, self?: TrainerID): boolean {
+        if (this.selfKey !== undefined) {
+            return key === this.selfKey;
+        }
+        if (self === undefined) {
+            return false;
+        }
+        const trainerID: TrainerID = JSON.parse(key);
+        if (trainerID.id === self.id && trainerID.scene === self.scene) {
+            this.selfKey = key;
+            return true;
+        }
+        return false;
+    }
+
     getData() {
         return this.trainerIDToRemotePlayerSprite;
     }
@@ -24,7 +24,9 @@ export class RemotePlayerSprite extends PlayerSprite  {
 
     private movementDirection: Direction = Direction.NONE;
 
-    private speedPixelsPerSecond: number = TILE_SIZE * 4;
+    private static readonly WALKING_SPEED_PIXELS_PER_SECOND: number = TILE_SIZE * 4;
+
+    private speedPixelsPerSecond: number = RemotePlayerSprite.WALKING_SPEED_PIXELS_PER_SECOND;
 
     private tileSizePixelsWalked: number = 0;
 
@@ -32,12 +34,20 @@ export class RemotePlayerSprite extends PlayerSprite  {
         super(config);
     }
 
-    push(moveQueue: Array<Direction>): void {
+    // the moves of a heartbeat should be walked before the next one, so a backlog is walked faster
+    push(moveQueue: Array<Direction>, tickIntervalMillis?: number): void {
         for (var direction of moveQueue) {
             if (direction !== Direction.NONE) {
                 this.moveQueue.push(direction);
             }
         }
+        if (tickIntervalMillis !== undefined && tickIntervalMillis > 0) {
+            const tilesToWalk = this.moveQueue._data.length + (this.isMoving() ? 1 : 0);
+            this.speedPixelsPerSecond = Math.max(
+                RemotePlayerSprite.WALKING_SPEED_PIXELS_PER_SECOND,
+                tilesToWalk * TILE_SIZE * 1000 / tickIntervalMillis
+            );
+        }
         // console.log(this.moveQueue);
     }
 
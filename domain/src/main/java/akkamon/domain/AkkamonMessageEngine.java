@@ -3,21 +3,25 @@ package akkamon.domain;
 import akka.actor.typed.ActorRef;
 import akkamon.domain.actors.AkkamonBattle;
 import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.Trainer;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
 import akkamon.domain.actors.tasks.interactions.InteractionHandshaker;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 public interface AkkamonMessageEngine {
     // broadcasts position info to WebSocket Clients
-    void broadCastHeartBeatToScene(String sceneId, Map<AkkamonNexus.TrainerID, AkkamonNexus.MovementQueueReading> trainerPositions);
+    void broadCastHeartBeatToScene(AkkamonNexus.RespondHeartBeatQuery heartBeat);
 
     void broadCastInteractionRequestToSessionWithtrainerIDs(List<AkkamonNexus.TrainerID> trainerIDs, String type, AkkamonNexus.TrainerID trainerID, String requestName, ActorRef<InteractionHandshaker.Command> handshaker);
 
-    void registerTrainerSessionToSceneAndtrainerIDMaps(AkkamonNexus.TrainerID trainerID, AkkamonSession session);
+    void registerTrainerSessionToSceneAndtrainerIDMaps(AkkamonNexus.TrainerID trainerID, String sessionId, ActorRef<Trainer.Command> trainer);
 
-    void removeTrainerSessionFromScene(AkkamonNexus.TrainerID trainerID, AkkamonSession session);
+    // moves the session over to the trainer that continues in another scene, then tells previous it switched
+    void transferTrainerSession(AkkamonNexus.TrainerID from, AkkamonNexus.TrainerID to, TilePos tilePos, ActorRef<Trainer.Command> previous, ActorRef<Trainer.Command> trainer);
+
+    void removeTrainerSessionFromScene(AkkamonNexus.TrainerID trainerID, String sessionId);
 
     void trainerDisconnected(AkkamonSession session);
 
@@ -29,5 +33,5 @@ public interface AkkamonMessageEngine {
 
     void broadCastBattleStart(AkkamonBattle.BattleCreatedResponse response);
 
-    void removeTrainerSessionFromHeartBeat(AkkamonNexus.TrainerID trainerID, AkkamonSession session);
+    void removeTrainerSessionFromHeartBeat(AkkamonNexus.TrainerID trainerID, String sessionId);
 }
@@ -0,0 +1,9 @@
+package akkamon.domain;
+
+/**
+ * Marks messages that may travel between cluster nodes, they are serialized with Jackson CBOR
+ * (see the serialization-bindings in reference.conf). Such messages only carry plain data, ids and
+ * ActorRefs, never node-local objects like an AkkamonSession.
+ */
+public interface AkkamonSerializable {
+}
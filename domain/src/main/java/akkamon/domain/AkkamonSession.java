@@ -1,11 +1,29 @@
 package akkamon.domain;
 
+import akka.actor.typed.ActorRef;
 import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.Trainer;
 
 public interface AkkamonSession {
     void send(String event);
 
+    // heartbeats are superseded by the next one, so a session may drop them when the client falls behind
+    default void sendHeartBeat(String event) {
+        send(event);
+    }
+
+    // ordered ids for the requests this session makes, see RequestIds
+    long nextRequestId();
+
+    // unique over the cluster, actors refer to the session by it since the session itself never leaves its node
+    String sessionId();
+
     void settrainerID(AkkamonNexus.TrainerID trainerID);
 
     AkkamonNexus.TrainerID gettrainerID();
+
+    void setTrainerRef(ActorRef<Trainer.Command> trainer);
+
+    // the registered trainer actor, null until registration completes
+    ActorRef<Trainer.Command> getTrainerRef();
 }
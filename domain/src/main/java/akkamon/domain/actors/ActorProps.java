@@ -0,0 +1,25 @@
+package akkamon.domain.actors;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.MailboxSelector;
+import akka.actor.typed.Props;
+import com.typesafe.config.Config;
+
+/**
+ * The dispatcher and mailbox a kind of actor is spawned with, configured under akkamon.domain.actors.
+ * Both are config paths, an empty one leaves the actor on akka's default.
+ */
+public final class ActorProps {
+
+    private ActorProps() {
+    }
+
+    public static Props of(ActorSystem<?> system, String actorKind) {
+        Config config = system.settings().config().getConfig("akkamon.domain.actors." + actorKind);
+        String mailbox = config.getString("mailbox");
+        String dispatcher = config.getString("dispatcher");
+
+        Props props = mailbox.isEmpty() ? Props.empty() : MailboxSelector.fromConfig(mailbox);
+        return dispatcher.isEmpty() ? props : props.withDispatcherFromConfig(dispatcher);
+    }
+}
@@ -6,6 +6,9 @@ import akka.actor.typed.Behavior;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akkamon.domain.AkkamonSerializable;
+import akkamon.domain.metrics.AkkamonMetrics;
+import akkamon.domain.metrics.LatencyHistogram;
 import akkamon.domain.model.battle.BattleEngine;
 import akkamon.domain.model.battle.BattleMessage;
 import akkamon.domain.model.battle.requests.BattleRequestBody;
@@ -21,14 +24,14 @@ public class AkkamonBattle extends AbstractBehavior<AkkamonBattle.Command> {
     public interface Command { }
 
     public static class RequestAction 
-            implements AkkamonNexus.Command, SceneTrainerGroup.Command, Trainer.Command, Command {
+            implements AkkamonNexus.Command, SceneTrainerGroup.Command, Trainer.Command, Command, AkkamonSerializable {
 
         public AkkamonNexus.TrainerID trainerID;
         public BattleRequestBody body;
 
-        public RequestAction(AkkamonNexus.TrainerID trainerID, BattleRequestBody battleRequestBody) {
+        public RequestAction(AkkamonNexus.TrainerID trainerID, BattleRequestBody body) {
             this.trainerID = trainerID;
-            this.body = battleRequestBody;
+            this.body = body;
         }
 
         @Override
@@ -69,6 +72,13 @@ public class AkkamonBattle extends AbstractBehavior<AkkamonBattle.Command> {
 
     private Set<RequestAction> nextTurnActions = new HashSet<>();
 
+    // when the first action of the turn being collected came in
+    private long turnStartNanos;
+
+    private final LatencyHistogram turnLatency;
+
+    private final LatencyHistogram playDuration;
+
     public AkkamonBattle(
             ActorContext<Command> context,
             Set<AkkamonNexus.TrainerID> participants,
@@ -81,6 +91,12 @@ public class AkkamonBattle extends AbstractBehavior<AkkamonBattle.Command> {
         this.needLink = new HashSet(participants);
 
         this.replyTo = replyTo;
+
+        AkkamonMetrics metrics = AkkamonMetrics.get(context.getSystem());
+        this.turnLatency = metrics.histogram("akkamon_battle_turn_seconds",
+                "Time from the first action of a battle turn until the turn is played");
+        this.playDuration = metrics.histogram("akkamon_battle_play_seconds",
+                "Time the battle engine takes to play a turn");
     }
 
 
@@ -96,21 +112,25 @@ public class AkkamonBattle extends AbstractBehavior<AkkamonBattle.Command> {
     }
 
     private Behavior<Command> onRequestBattleAction(RequestAction requestAction) {
+        if (nextTurnActions.isEmpty()) turnStartNanos = System.nanoTime();
         nextTurnActions.add(requestAction);
         if (nextTurnActions.size() == participants.size()) {
+            long playStart = System.nanoTime();
             engine.play(nextTurnActions);
+            long played = System.nanoTime();
+            playDuration.recordNanos(played - playStart);
+            turnLatency.recordNanos(played - turnStartNanos);
             nextTurnActions.clear();
         } else {
-            getContext().getLog().info("Received battle action request of {} but not playing until all received, {}", requestAction.trainerID, requestAction.body);
+            getContext().getLog().debug("Received battle action request of {} but not playing until all received, {}", requestAction.trainerID, requestAction.body);
         }
         return inProgress();
     }
 
     private Behavior<Command> onBattleStart(AkkamonNexus.BattleStart start) {
         AkkamonNexus.TrainerID linkingTrainer = start.trainerID;
-        getContext().getLog().info(String.valueOf(needLink));
         needLink.remove(linkingTrainer);
-        getContext().getLog().info(String.valueOf(needLink));
+        getContext().getLog().debug("Trainer {} linked to the battle, still waiting for {}", linkingTrainer, needLink);
         if (needLink.isEmpty()) {
             getContext().getLog().info("Sending Battle Created Response!");
             this.engine = new BattleEngine(participants);
@@ -2,15 +2,32 @@ package akkamon.domain.actors;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.RecipientRef;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.dispatch.ControlMessage;
 import akkamon.domain.*;
 import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.PackedMovementQueue;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
 import akkamon.domain.actors.tasks.interactions.InteractionHandshaker;
 import akkamon.domain.actors.tasks.heartbeat.TilePos;
-
+import akkamon.domain.logging.LogMarkers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 
@@ -19,6 +36,9 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
 
     public interface Command {}
 
+    // map keys are written as "scene/id", toString is the JSON the clients know trainers by
+    @JsonSerialize(keyUsing = TrainerID.KeySerializer.class)
+    @JsonDeserialize(keyUsing = TrainerID.KeyDeserializer.class)
     public static class TrainerID {
         public final String id;
         public final String scene;
@@ -48,22 +68,46 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
                     "\"scene\": \"" + scene + "\"" +
                     " }";
         }
+
+        public static class KeySerializer extends JsonSerializer<TrainerID> {
+            @Override
+            public void serialize(TrainerID trainerID, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeFieldName(trainerID.scene + "/" + trainerID.id);
+            }
+        }
+
+        public static class KeyDeserializer extends com.fasterxml.jackson.databind.KeyDeserializer {
+            @Override
+            public Object deserializeKey(String key, DeserializationContext context) {
+                // scene ids don't contain slashes, trainer ids might
+                int separator = key.indexOf('/');
+                return new TrainerID(key.substring(separator + 1), key.substring(0, separator));
+            }
+        }
     }
 
     public static class BattleStart
-            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonBattle.Command {
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonBattle.Command, AkkamonSerializable {
 
         public TrainerID trainerID;
         public ActorRef<AkkamonBattle.Command> ref;
         public ActorRef<AkkamonNexus.Command> replyTo;
 
-        public BattleStart(TrainerID trainerID, ActorRef<AkkamonBattle.Command> battle, ActorRef<AkkamonNexus.Command> replyTo) {
+        public BattleStart(TrainerID trainerID, ActorRef<AkkamonBattle.Command> ref, ActorRef<AkkamonNexus.Command> replyTo) {
             this.trainerID = trainerID;
-            this.ref = battle;
+            this.ref = ref;
             this.replyTo = replyTo;
         }
     }
 
+    public static class ShardsAssigned implements Command {
+        public final NexusShards shards;
+
+        public ShardsAssigned(NexusShards shards) {
+            this.shards = shards;
+        }
+    }
+
     public static class RespondInteractionHandshaker implements Command {
         public String requestName;
         public String interactionType;
@@ -102,40 +146,93 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     public static class RequestTrainerRegistration
-            implements AkkamonNexus.Command, SceneTrainerGroup.Command {
+            implements AkkamonNexus.Command, SceneTrainerGroup.Command, AkkamonSerializable {
         public String trainerName;
         public String sceneId;
-        public AkkamonSession session;
+        // the session stays on the node that accepted the connection, messages only carry its id
+        public String sessionId;
         public ActorRef<Command> replyTo;
 
         public RequestTrainerRegistration(
                 String trainerName,
                 String sceneId,
-                AkkamonSession session,
+                String sessionId,
                 ActorRef<Command> replyTo
         ) {
             this.trainerName = trainerName;
             this.sceneId = sceneId;
-            this.session = session;
+            this.sessionId = sessionId;
             this.replyTo = replyTo;
         }
     }
 
-    public static class TrainerRegistered implements Command {
-        private TrainerID trainerID;
-        private AkkamonSession session;
+    /**
+     * Moves a trainer to another scene, see Trainer for the hand-off. It goes through the nexus shard
+     * owning the scene, the one its session's commands are routed through from then on.
+     */
+    public static class TransferTrainer
+            implements AkkamonNexus.Command, SceneTrainerGroup.Command, AkkamonSerializable {
+        public final TrainerID trainerID;
+        public final String sceneId;
+        // the tile to arrive on, null for the spawn point of the scene
+        public final TilePos arrival;
+        public final Trainer.State state;
+        public final ActorRef<Trainer.Command> from;
+        public final ActorRef<Command> replyTo;
+
+        public TransferTrainer(TrainerID trainerID,
+                               String sceneId,
+                               TilePos arrival,
+                               Trainer.State state,
+                               ActorRef<Trainer.Command> from,
+                               ActorRef<Command> replyTo) {
+            this.trainerID = trainerID;
+            this.sceneId = sceneId;
+            this.arrival = arrival;
+            this.state = state;
+            this.from = from;
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static class TrainerTransferred implements Command, AkkamonSerializable {
+        public final TrainerID from;
+        public final TrainerID to;
+        public final TilePos tilePos;
+        public final ActorRef<Trainer.Command> previous;
+        public final ActorRef<Trainer.Command> trainer;
+
+        public TrainerTransferred(TrainerID from,
+                                  TrainerID to,
+                                  TilePos tilePos,
+                                  ActorRef<Trainer.Command> previous,
+                                  ActorRef<Trainer.Command> trainer) {
+            this.from = from;
+            this.to = to;
+            this.tilePos = tilePos;
+            this.previous = previous;
+            this.trainer = trainer;
+        }
+    }
+
+    public static class TrainerRegistered implements Command, AkkamonSerializable {
+        public final TrainerID trainerID;
+        public final String sessionId;
+        public final ActorRef<Trainer.Command> trainer;
 
         public TrainerRegistered(
                 TrainerID trainerID,
-                AkkamonSession session
+                String sessionId,
+                ActorRef<Trainer.Command> trainer
         ) {
             this.trainerID = trainerID;
-            this.session = session;
+            this.sessionId = sessionId;
+            this.trainer = trainer;
         }
     }
 
     public static class RequestStartMoving
-            implements Command, SceneTrainerGroup.Command, Trainer.Command {
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonSerializable {
         public long requestId;
         public TrainerID trainerID;
         public Direction direction;
@@ -150,7 +247,7 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     public static class RequestStopMoving
-            implements Command, SceneTrainerGroup.Command, Trainer.Command  {
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonSerializable {
         public long requestId;
         public TrainerID trainerID;
         public Direction direction;
@@ -169,7 +266,7 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     public static class RequestNewTilePos
-            implements Command, SceneTrainerGroup.Command, Trainer.Command {
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonSerializable {
         public long requestId;
         public TrainerID trainerID;
         public TilePos tilePos;
@@ -183,8 +280,45 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
         }
     }
 
+    /**
+     * The movement of a session over one tick window, coalesced into a single command, see
+     * MovementCoalescer in the api. The trainer walks steps[i] tiles in directions[i], leg by leg,
+     * then moves in finalDirection. A null direction keeps the one the trainer was moving in.
+     */
+    public static class RequestMovementBatch
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonSerializable {
+        public long requestId;
+        public TrainerID trainerID;
+        // where the client had the trainer before the first step, the server only uses it for a trainer it has no position for yet
+        public TilePos tilePos;
+        public Direction[] directions;
+        public int[] steps;
+        public Direction finalDirection;
+        // the rest of a batch a trainer handed over at a warp, its request id was already taken by that trainer
+        public boolean resumed;
+        public ActorRef<AkkamonNexus.Command> replyTo;
+
+        public RequestMovementBatch(long requestId,
+                                    TrainerID trainerID,
+                                    TilePos tilePos,
+                                    Direction[] directions,
+                                    int[] steps,
+                                    Direction finalDirection,
+                                    boolean resumed,
+                                    ActorRef<AkkamonNexus.Command> replyTo) {
+            this.requestId = requestId;
+            this.trainerID = trainerID;
+            this.tilePos = tilePos;
+            this.directions = directions;
+            this.steps = steps;
+            this.finalDirection = finalDirection;
+            this.resumed = resumed;
+            this.replyTo = replyTo;
+        }
+    }
+
     public static class RequestHeartBeat
-            implements Command, SceneTrainerGroup.Command {
+            implements Command, SceneTrainerGroup.Command, SceneMovementAggregator.Command, AkkamonSerializable, ControlMessage {
 
         public long requestId;
         // TODO find a way to make the command Narrower
@@ -202,56 +336,119 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     public static class RequestTrainerOffline
-            implements Command, SceneTrainerGroup.Command, Trainer.Command {
+            implements Command, SceneTrainerGroup.Command, Trainer.Command, AkkamonSerializable {
         public long requestId;
         public TrainerID trainerID;
-        public AkkamonSession session;
+        public String sessionId;
         public ActorRef<AkkamonNexus.Command> replyTo;
 
-        public RequestTrainerOffline(long requestId, TrainerID trainerID, String sceneId, AkkamonSession session, ActorRef<Command> replyTo) {
+        public RequestTrainerOffline(long requestId, TrainerID trainerID, String sessionId, ActorRef<Command> replyTo) {
             this.requestId = requestId;
             this.trainerID = trainerID;
-            this.session = session;
+            this.sessionId = sessionId;
             this.replyTo = replyTo;
         }
     }
 
     public static class RespondTrainerOffline
-            implements Command {
+            implements Command, AkkamonSerializable {
         public long requestId;
         public TrainerID trainerID;
-        public AkkamonSession session;
+        public String sessionId;
 
-        public RespondTrainerOffline(long requestId, TrainerID trainerID, AkkamonSession session) {
+        public RespondTrainerOffline(long requestId, TrainerID trainerID, String sessionId) {
             this.requestId = requestId;
             this.trainerID = trainerID;
-            this.session = session;
+            this.sessionId = sessionId;
         }
     }
 
-    public static class RespondHeartBeatQuery implements Command {
+    public static class RespondHeartBeatQuery implements Command, AkkamonSerializable {
 
+        // 0 for the ticks a scene runs by itself
         public final long requestId;
         public final String sceneId;
+        // numbered by the scene's TickClock, a gap means the scene merged late ticks
+        public final long tick;
+        public final long tickIntervalMillis;
         public final Map<TrainerID, MovementQueueReading> trainerMovementQueues;
+        // where each trainer started its movement queue, for trainers whose position is known
+        public final Map<TrainerID, TilePos> trainerTilePositions;
+        // the trainers each trainer should receive, null when the whole scene is shared
+        public final Map<TrainerID, Set<TrainerID>> trainerInterests;
 
         public RespondHeartBeatQuery(
                 long requestId,
                 String sceneId,
-                Map<TrainerID, MovementQueueReading> trainerPositions) {
+                long tick,
+                long tickIntervalMillis,
+                Map<TrainerID, MovementQueueReading> trainerMovementQueues,
+                Map<TrainerID, TilePos> trainerTilePositions,
+                Map<TrainerID, Set<TrainerID>> trainerInterests) {
             this.requestId = requestId;
             this.sceneId = sceneId;
-            this.trainerMovementQueues = trainerPositions;
+            this.tick = tick;
+            this.tickIntervalMillis = tickIntervalMillis;
+            this.trainerMovementQueues = trainerMovementQueues;
+            this.trainerTilePositions = trainerTilePositions;
+            this.trainerInterests = trainerInterests;
         }
     }
 
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME)
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = MovementQueue.class, name = "queue"),
+            @JsonSubTypes.Type(value = MovementQueueEmpty.class, name = "empty"),
+            @JsonSubTypes.Type(value = TrainerOffline.class, name = "offline"),
+            @JsonSubTypes.Type(value = TrainerTimedOut.class, name = "timed-out")
+    })
     public interface MovementQueueReading { }
 
+    /**
+     * The steps of a trainer in one tick, packed two bits per direction (see PackedMovementQueue).
+     * A trainer that didn't move gets IDLE, which clients know as a queue holding only NONE.
+     */
     public static class MovementQueue implements MovementQueueReading {
-        public final Queue<Direction> value;
+        public static final int CAPACITY = Long.SIZE / 2;
+        public static final MovementQueue IDLE = new MovementQueue(0, 0);
+        private static final Direction[] DIRECTIONS = Direction.values();
 
-        public MovementQueue(Queue<Direction> value) {
-            this.value = value;
+        public final long packed;
+        public final int size;
+
+        @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+        public MovementQueue(long packed, int size) {
+            this.packed = packed;
+            this.size = size;
+        }
+
+        public MovementQueue(Collection<Direction> directions) {
+            PackedMovementQueue queue = new PackedMovementQueue();
+            for (Direction direction : directions) {
+                queue.add(direction);
+            }
+            MovementQueue drained = queue.drain();
+            this.packed = drained.packed;
+            this.size = drained.size;
+        }
+
+        // the moves, NONE never is one
+        public Direction get(int index) {
+            return DIRECTIONS[(int) (packed >>> (index * 2)) & 0b11];
+        }
+
+        /**
+         * @return the moves as a list, or just NONE for an idle trainer
+         */
+        public List<Direction> directions() {
+            if (size == 0) {
+                return Collections.singletonList(Direction.NONE);
+            }
+            List<Direction> directions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                directions.add(get(i));
+            }
+            return directions;
         }
     }
 
@@ -268,24 +465,41 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     public static Behavior<AkkamonNexus.Command> create(AkkamonMessageEngine messagingEngine) {
-        return Behaviors.setup(context -> new AkkamonNexus(context, messagingEngine));
+        return create(messagingEngine, null);
+    }
+
+    /**
+     * @param sharding when set, scenes are cluster sharded entities instead of children of this nexus
+     */
+    public static Behavior<AkkamonNexus.Command> create(AkkamonMessageEngine messagingEngine, ClusterSharding sharding) {
+        return Behaviors.setup(context -> new AkkamonNexus(context, messagingEngine, sharding));
     }
 
     private AkkamonMessageEngine messageEngine;
-    private Map<String, ActorRef<SceneTrainerGroup.Command>> sceneIdToActor = new HashMap<>();
+    private final ClusterSharding sharding;
+    // children of this nexus, or entity refs of the scenes this node has trainers in
+    private Map<String, RecipientRef<SceneTrainerGroup.Command>> sceneIdToActor = new HashMap<>();
+    // the other shards, to hand over work for scenes this shard doesn't own
+    private NexusShards shards;
 
-    public AkkamonNexus(ActorContext<Command> context, AkkamonMessageEngine msgEngine) {
+    public AkkamonNexus(ActorContext<Command> context, AkkamonMessageEngine msgEngine, ClusterSharding sharding) {
         super(context);
         this.messageEngine = msgEngine;
+        this.sharding = sharding;
         getContext().getLog().info("AkkamonNexus is up and running, waiting eagerly for your messages!");
     }
 
     @Override
     public Receive<Command> createReceive() {
         return newReceiveBuilder()
+                .onMessage(ShardsAssigned.class, this::onShardsAssigned)
+
                 .onMessage(RequestTrainerRegistration.class, this::onTrainerRegistration)
                 .onMessage(TrainerRegistered.class, this::onTrainerRegistered)
 
+                .onMessage(TransferTrainer.class, this::onTransferTrainer)
+                .onMessage(TrainerTransferred.class, this::onTrainerTransferred)
+
                 .onMessage(RequestTrainerOffline.class, this::onTrainerOfflineRequest)
                 .onMessage(RespondTrainerOffline.class, this::onTrainerOffline)
 
@@ -295,11 +509,13 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
                 .onMessage(RequestStartMoving.class, this::onStartMoving)
                 .onMessage(RequestStopMoving.class, this::onStopMoving)
                 .onMessage(RequestNewTilePos.class, this::onNewTilePos)
+                .onMessage(RequestMovementBatch.class, this::onMovementBatch)
 
                 .onMessage(RequestInteraction.class, this::onInteractionRequest)
 
                 .onMessage(RespondInteractionHandshaker.class, this::onInteractionHandshakerResponse)
 
+                .onMessage(BattleStart.class, this::onBattleStart)
                 .onMessage(AkkamonBattle.BattleCreatedResponse.class, this::onBattleCreatedResponse)
                 .onMessage(AkkamonBattle.RequestAction.class, this::onRequestBattleAction)
                 .build();
@@ -308,7 +524,7 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     private AkkamonNexus onRequestBattleAction(AkkamonBattle.RequestAction requestAction) {
         // just pass on the message for now
         // TODO do some checks here?
-        ActorRef<SceneTrainerGroup.Command> sceneContaining = sceneIdToActor.get(requestAction.trainerID.scene);
+        RecipientRef<SceneTrainerGroup.Command> sceneContaining = sceneIdToActor.get(requestAction.trainerID.scene);
         if (sceneContaining != null) {
             sceneContaining.tell(requestAction);
         } else {
@@ -317,6 +533,21 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
         return this;
     }
 
+    private AkkamonNexus onShardsAssigned(ShardsAssigned assigned) {
+        this.shards = assigned.shards;
+        return this;
+    }
+
+    private AkkamonNexus onBattleStart(BattleStart battleStart) {
+        RecipientRef<SceneTrainerGroup.Command> scene = sceneIdToActor.get(battleStart.trainerID.scene);
+        if (scene != null) {
+            scene.tell(battleStart);
+        } else {
+            getContext().getLog().info("Ignoring battle in scene {}, it isn't mapped to a sceneTrainerActor.", battleStart.trainerID.scene);
+        }
+        return this;
+    }
+
     private AkkamonNexus onBattleCreatedResponse(AkkamonBattle.BattleCreatedResponse r) {
         getContext().getLog().info("Created battle between {} and {}, they should now only be listening to battle commands!");
         messageEngine.broadCastBattleStart(r);
@@ -343,17 +574,19 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
                                 r.waitingToStartInteraction,
                                 getContext().getSelf()
                             ),
-                            battlename.toString());
+                            battlename.toString(),
+                            ActorProps.of(getContext().getSystem(), "battle"));
                     for (TrainerID trainerID : r.waitingToStartInteraction) {
-                        ActorRef<SceneTrainerGroup.Command> scene = sceneIdToActor.get(trainerID.scene);
-                        if (scene != null) {
-                            scene.tell(new BattleStart(
-                                    trainerID,
-                                    battle,
-                                    getContext().getSelf()
-                            ));
+                        BattleStart battleStart = new BattleStart(
+                                trainerID,
+                                battle,
+                                getContext().getSelf()
+                        );
+                        ActorRef<AkkamonNexus.Command> owner = shards != null ? shards.shardFor(trainerID.scene) : null;
+                        if (sceneIdToActor.containsKey(trainerID.scene) || owner == null || owner.equals(getContext().getSelf())) {
+                            onBattleStart(battleStart);
                         } else {
-                            getContext().getLog().info("Ignoring battle in scene {}, it isn't mapped to a sceneTrainerActor.", trainerID.scene);
+                            owner.tell(battleStart);
                         }
                     }
                     break;
@@ -386,20 +619,20 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     }
 
     private AkkamonNexus onTrainerOffline(RespondTrainerOffline trainerOfflineMsg) {
-        getContext().getLog().info("Removing {} from akkamon sessions!", trainerOfflineMsg.session.gettrainerID());
-        messageEngine.removeTrainerSessionFromScene(trainerOfflineMsg.trainerID, trainerOfflineMsg.session);
-        messageEngine.removeTrainerSessionFromHeartBeat(trainerOfflineMsg.trainerID, trainerOfflineMsg.session);
+        getContext().getLog().info("Removing {} from akkamon sessions!", trainerOfflineMsg.trainerID);
+        messageEngine.removeTrainerSessionFromScene(trainerOfflineMsg.trainerID, trainerOfflineMsg.sessionId);
+        messageEngine.removeTrainerSessionFromHeartBeat(trainerOfflineMsg.trainerID, trainerOfflineMsg.sessionId);
         return this;
     }
 
     private AkkamonNexus onTrainerOfflineRequest(RequestTrainerOffline trainerOfflineRequest) {
-        ActorRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
                 trainerOfflineRequest.trainerID.scene
         );
         if (sceneTrainerGroup != null) {
             sceneTrainerGroup.tell(trainerOfflineRequest);
         } else {
-            getContext().getLog().info("Ignoring trainerOffline request in scene {}, it isn't mapped to a sceneTrainerActor.", trainerOfflineRequest.trainerID.scene);
+            getContext().getLog().info("Ignoring trainerOffline request {} in scene {}, it isn't mapped to a sceneTrainerActor.", RequestIds.format(trainerOfflineRequest.requestId), trainerOfflineRequest.trainerID.scene);
         }
         return this;
     }
@@ -416,51 +649,63 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
         // }
         // getContext().getLog().info(String.valueOf(positions));
 
-        messageEngine.broadCastHeartBeatToScene(response.sceneId, response.trainerMovementQueues);
+        messageEngine.broadCastHeartBeatToScene(response);
 
        return this;
     }
 
     private AkkamonNexus onHeartBeat(RequestHeartBeat heartBeatRequest) {
         // TODO do some checks here?
-        for (ActorRef<SceneTrainerGroup.Command> sceneGroupActor: sceneIdToActor.values()) {
+        for (RecipientRef<SceneTrainerGroup.Command> sceneGroupActor: sceneIdToActor.values()) {
             sceneGroupActor.tell(heartBeatRequest);
         }
         return this;
     }
 
     private AkkamonNexus onNewTilePos(RequestNewTilePos newTilePosRequest) {
-        ActorRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
                 newTilePosRequest.trainerID.scene
         );
         if (sceneTrainerGroup != null) {
             sceneTrainerGroup.tell(newTilePosRequest);
         } else {
-            getContext().getLog().info("Ignoring newTilePos request in scene {}, it isn't mapped to a sceneTrainerActor.", newTilePosRequest.trainerID.scene);
+            getContext().getLog().warn(LogMarkers.SAMPLED, "Ignoring newTilePos request {} in scene {}, it isn't mapped to a sceneTrainerActor.", RequestIds.format(newTilePosRequest.requestId), newTilePosRequest.trainerID.scene);
+        }
+        return this;
+    }
+
+    private AkkamonNexus onMovementBatch(RequestMovementBatch movementBatch) {
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
+                movementBatch.trainerID.scene
+        );
+        if (sceneTrainerGroup != null) {
+            sceneTrainerGroup.tell(movementBatch);
+        } else {
+            getContext().getLog().warn(LogMarkers.SAMPLED, "Ignoring movement batch {} in scene {}, it isn't mapped to a sceneTrainerActor.", RequestIds.format(movementBatch.requestId), movementBatch.trainerID.scene);
         }
         return this;
     }
 
     private AkkamonNexus onStopMoving(RequestStopMoving stopMovingRequest) {
-        ActorRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
                 stopMovingRequest.trainerID.scene
         );
         if (sceneTrainerGroup != null) {
             sceneTrainerGroup.tell(stopMovingRequest);
         } else {
-            getContext().getLog().info("Ignoring stopMove request in scene {}, it isn't mapped to a sceneTrainerActor.", stopMovingRequest.trainerID.scene);
+            getContext().getLog().warn(LogMarkers.SAMPLED, "Ignoring stopMove request {} in scene {}, it isn't mapped to a sceneTrainerActor.", RequestIds.format(stopMovingRequest.requestId), stopMovingRequest.trainerID.scene);
         }
         return this;
     }
 
     private AkkamonNexus onStartMoving(RequestStartMoving startMovingRequest) {
-        ActorRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(
                 startMovingRequest.trainerID.scene
         );
         if (sceneTrainerGroup != null) {
             sceneTrainerGroup.tell(startMovingRequest);
         } else {
-            getContext().getLog().info("Ignoring startMove request in scene {}, it isn't mapped to a sceneTrainerActor.", startMovingRequest.trainerID.scene);
+            getContext().getLog().warn(LogMarkers.SAMPLED, "Ignoring startMove request {} in scene {}, it isn't mapped to a sceneTrainerActor.", RequestIds.format(startMovingRequest.requestId), startMovingRequest.trainerID.scene);
         }
         return this;
     }
@@ -468,30 +713,58 @@ public class AkkamonNexus extends AbstractBehavior<AkkamonNexus.Command> {
     private AkkamonNexus onTrainerRegistered(TrainerRegistered reply) {
         // TODO test when registration fails?
         getContext().getLog().info("Adding {} to scene {} Live AkkamonSessions in Messaging Engine", reply.trainerID, reply.trainerID.scene);
-        reply.session.settrainerID(reply.trainerID);
-        messageEngine.registerTrainerSessionToSceneAndtrainerIDMaps(reply.trainerID, reply.session);
+        messageEngine.registerTrainerSessionToSceneAndtrainerIDMaps(reply.trainerID, reply.sessionId, reply.trainer);
+        return this;
+    }
+
+    private AkkamonNexus onTrainerTransferred(TrainerTransferred transferred) {
+        getContext().getLog().info("Moving the session of {} over to {}", transferred.from, transferred.to);
+        messageEngine.transferTrainerSession(
+                transferred.from,
+                transferred.to,
+                transferred.tilePos,
+                transferred.previous,
+                transferred.trainer
+        );
+        return this;
+    }
+
+    private AkkamonNexus onTransferTrainer(TransferTrainer transfer) {
+        ActorRef<AkkamonNexus.Command> owner = shards != null ? shards.shardFor(transfer.sceneId) : null;
+        if (owner != null && !owner.equals(getContext().getSelf())) {
+            owner.tell(transfer);
+        } else {
+            sceneFor(transfer.sceneId).tell(transfer);
+        }
         return this;
     }
 
     private AkkamonNexus onTrainerRegistration(RequestTrainerRegistration registrationRequest) {
-        String sceneId = registrationRequest.sceneId;
-        String trainerName = registrationRequest.trainerName;
+        getContext().getLog().info("Nexus received registration request for {} in {}", registrationRequest.trainerName, registrationRequest.sceneId);
 
-        getContext().getLog().info("Nexus received registration request for {} in {}", trainerName, sceneId);
+        sceneFor(registrationRequest.sceneId).tell(registrationRequest);
+        return this;
+    }
 
-        ActorRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(sceneId);
+    private RecipientRef<SceneTrainerGroup.Command> sceneFor(String sceneId) {
+        RecipientRef<SceneTrainerGroup.Command> sceneTrainerGroup = sceneIdToActor.get(sceneId);
         if (sceneTrainerGroup != null) {
-            sceneTrainerGroup.tell(registrationRequest);
+            return sceneTrainerGroup;
+        } else if (sharding != null) {
+            // the scene lives on whichever node the shard region placed it, it is never watched from here
+            RecipientRef<SceneTrainerGroup.Command> sceneEntity =
+                    sharding.entityRefFor(SceneTrainerGroup.ENTITY_TYPE_KEY, sceneId);
+            sceneIdToActor.put(sceneId, sceneEntity);
+            return sceneEntity;
         } else {
-            getContext().getLog().info("Creating sceneTrainerGroup {} for trainer {}", sceneId, trainerName);
+            getContext().getLog().info("Creating sceneTrainerGroup {}", sceneId);
             ActorRef<SceneTrainerGroup.Command> sceneActor =
-                    getContext().spawn(SceneTrainerGroup.create(sceneId), "scene-" + sceneId);
+                    getContext().spawn(SceneTrainerGroup.create(sceneId), "scene-" + sceneId, ActorProps.of(getContext().getSystem(), "scene"));
 
             getContext().watchWith(sceneActor, new SceneTrainerGroupTerminated(sceneId));
-            sceneActor.tell(registrationRequest);
             sceneIdToActor.put(sceneId, sceneActor);
+            return sceneActor;
         }
-        return this;
     }
 
 }
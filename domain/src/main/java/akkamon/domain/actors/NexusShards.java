@@ -0,0 +1,124 @@
+package akkamon.domain.actors;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.SpawnProtocol;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.cluster.sharding.typed.javadsl.Entity;
+import akka.cluster.typed.Cluster;
+import akka.cluster.typed.Join;
+import akkamon.domain.AkkamonMessageEngine;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A fixed set of AkkamonNexus shards, each owning the scenes that hash to it on a consistent-hash
+ * ring. Senders pick the shard themselves, so routing spreads over the shards' mailboxes instead of
+ * queueing up in a single nexus or router actor.
+ *
+ * Everything about a scene (registration, movement, trainers going offline) goes to the scene's
+ * shard. Work that spans scenes, like starting a battle between trainers of different scenes, is
+ * forwarded by the shard that handles it to the shards owning the other scenes.
+ *
+ * With akkamon.domain.cluster.enabled the scenes themselves are cluster sharded entities, spread over
+ * every node of the cluster. The nexus shards of a node then only hold the sessions connected to that
+ * node and talk to the scenes through entity refs.
+ */
+public class NexusShards {
+
+    private final List<ActorRef<AkkamonNexus.Command>> shards;
+    private final NavigableMap<Integer, ActorRef<AkkamonNexus.Command>> ring = new TreeMap<>();
+
+    public NexusShards(List<ActorRef<AkkamonNexus.Command>> shards, int virtualNodes) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one nexus shard is needed");
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        for (int i = 0; i < shards.size(); i++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(hash("nexus-" + i + "#" + v), shards.get(i));
+            }
+        }
+    }
+
+    /**
+     * Creates the actor system the shards are spawned in, a cluster member when
+     * akkamon.domain.cluster.enabled is on.
+     */
+    public static ActorSystem<SpawnProtocol.Command> createSystem(String name, Config config) {
+        if (config.getBoolean("akkamon.domain.cluster.enabled")) {
+            config = ConfigFactory.parseString("akka.actor.provider = cluster").withFallback(config);
+        }
+        return ActorSystem.create(SpawnProtocol.create(), name, config);
+    }
+
+    /**
+     * Spawns the shards configured under akkamon.domain.nexus and tells each of them about the others.
+     */
+    public static NexusShards spawn(ActorSystem<SpawnProtocol.Command> system, AkkamonMessageEngine messageEngine) {
+        Config config = system.settings().config().getConfig("akkamon.domain.nexus");
+        int count = config.getInt("shards");
+        if (count <= 0) count = Runtime.getRuntime().availableProcessors();
+
+        // read the maps now rather than when the first trainer steps
+        SceneMaps.get(system);
+
+        ClusterSharding sharding = null;
+        if (system.settings().config().getBoolean("akkamon.domain.cluster.enabled")) {
+            if (system.settings().config().getStringList("akka.cluster.seed-nodes").isEmpty()) {
+                // nothing to join, this node starts a cluster of its own
+                Cluster cluster = Cluster.get(system);
+                cluster.manager().tell(Join.create(cluster.selfMember().address()));
+            }
+            sharding = ClusterSharding.get(system);
+            sharding.init(Entity.of(
+                    SceneTrainerGroup.ENTITY_TYPE_KEY,
+                    entityContext -> SceneTrainerGroup.create(entityContext.getEntityId())
+            ).withEntityProps(ActorProps.of(system, "scene")));
+        }
+        ClusterSharding scenes = sharding;
+
+        List<ActorRef<AkkamonNexus.Command>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "nexus-" + i;
+            try {
+                shards.add(AskPattern.<SpawnProtocol.Command, ActorRef<AkkamonNexus.Command>>ask(
+                        system,
+                        replyTo -> new SpawnProtocol.Spawn<>(AkkamonNexus.create(messageEngine, scenes), name, ActorProps.of(system, "nexus"), replyTo),
+                        Duration.ofSeconds(5),
+                        system.scheduler()
+                ).toCompletableFuture().get());
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not spawn " + name, e);
+            }
+        }
+
+        NexusShards nexusShards = new NexusShards(shards, config.getInt("virtual-nodes"));
+        for (ActorRef<AkkamonNexus.Command> shard : shards) {
+            shard.tell(new AkkamonNexus.ShardsAssigned(nexusShards));
+        }
+        return nexusShards;
+    }
+
+    public ActorRef<AkkamonNexus.Command> shardFor(String sceneId) {
+        Map.Entry<Integer, ActorRef<AkkamonNexus.Command>> entry = ring.ceilingEntry(hash(sceneId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<ActorRef<AkkamonNexus.Command>> all() {
+        return shards;
+    }
+
+    // String.hashCode clusters similar names, so spread it with the murmur3 finalizer
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,122 @@
+package akkamon.domain.actors;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akkamon.domain.model.world.SceneMap;
+import com.typesafe.config.Config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The maps of the scenes configured under akkamon.domain.maps, read once per actor system and shared by
+ * every actor of a scene. The files are checked for changes every reload-interval, a changed map is read
+ * again and swapped in whole; actors holding the supplier from live see the new map on their next lookup.
+ * A map that fails to read keeps the previous version.
+ */
+public class SceneMaps implements Extension {
+
+    public static class Id extends ExtensionId<SceneMaps> {
+        private static final Id instance = new Id();
+
+        private Id() {
+        }
+
+        @Override
+        public SceneMaps createExtension(ActorSystem<?> system) {
+            return new SceneMaps(system);
+        }
+    }
+
+    public static SceneMaps get(ActorSystem<?> system) {
+        return Id.instance.apply(system);
+    }
+
+    private static class LoadedMap {
+        final Path path;
+        volatile FileTime lastModified;
+        volatile Optional<SceneMap> map = Optional.empty();
+
+        LoadedMap(Path path) {
+            this.path = path;
+        }
+    }
+
+    private static final FileTime MISSING = FileTime.fromMillis(0);
+
+    private final ActorSystem<?> system;
+    private final Map<String, LoadedMap> scenes = new ConcurrentHashMap<>();
+
+    private SceneMaps(ActorSystem<?> system) {
+        this.system = system;
+        Config config = system.settings().config().getConfig("akkamon.domain.maps");
+        Config sceneFiles = config.getConfig("scenes");
+        for (String sceneId : sceneFiles.root().keySet()) {
+            LoadedMap loaded = new LoadedMap(Paths.get(config.getString("directory"), sceneFiles.getString(sceneId)));
+            scenes.put(sceneId, loaded);
+            reloadIfChanged(sceneId, loaded);
+        }
+
+        Duration reloadInterval = config.getDuration("reload-interval");
+        if (!reloadInterval.isZero() && !scenes.isEmpty()) {
+            system.scheduler().scheduleWithFixedDelay(
+                    reloadInterval,
+                    reloadInterval,
+                    this::reloadChanged,
+                    system.dispatchers().lookup(DispatcherSelector.blocking())
+            );
+        }
+    }
+
+    public Optional<SceneMap> current(String sceneId) {
+        LoadedMap loaded = scenes.get(sceneId);
+        return loaded != null ? loaded.map : Optional.empty();
+    }
+
+    /**
+     * @return the map of the scene as it is at the time of the call, following reloads
+     */
+    public Supplier<Optional<SceneMap>> live(String sceneId) {
+        LoadedMap loaded = scenes.get(sceneId);
+        if (loaded == null) return Optional::empty;
+        return () -> loaded.map;
+    }
+
+    private void reloadChanged() {
+        for (Map.Entry<String, LoadedMap> entry : scenes.entrySet()) {
+            reloadIfChanged(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // a file that can't be read is reported once and tried again when it changes
+    private void reloadIfChanged(String sceneId, LoadedMap loaded) {
+        FileTime previous = loaded.lastModified;
+        try {
+            FileTime lastModified = Files.exists(loaded.path) ? Files.getLastModifiedTime(loaded.path) : MISSING;
+            if (lastModified.equals(previous)) return;
+            loaded.lastModified = lastModified;
+            if (lastModified == MISSING) throw new NoSuchFileException(loaded.path.toString());
+
+            try (Reader reader = Files.newBufferedReader(loaded.path, StandardCharsets.UTF_8)) {
+                loaded.map = Optional.of(SceneMap.fromTiledJson(reader));
+            }
+            system.log().info("{} the map of scene {} from {}", previous != null ? "Reloaded" : "Loaded", sceneId, loaded.path);
+        } catch (IOException | RuntimeException e) {
+            system.log().warn("Could not read the map of scene {} from {}, keeping the previous one: {}",
+                    sceneId, loaded.path, e.toString());
+        }
+    }
+}
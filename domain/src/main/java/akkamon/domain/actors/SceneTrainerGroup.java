@@ -6,25 +6,35 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
-import akkamon.domain.actors.tasks.heartbeat.HeartBeatQuery;
+import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
+import akkamon.domain.AkkamonSerializable;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.model.world.SceneMap;
+
+import com.typesafe.config.Config;
 
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Command> {
 
     public interface Command { }
 
+    // scenes are entities keyed by their scene id when the domain runs clustered
+    public static final EntityTypeKey<Command> ENTITY_TYPE_KEY = EntityTypeKey.create(Command.class, "Scene");
+
     public static class TrainerOffline
-            implements Command, AkkamonNexus.Command {
+            implements Command, AkkamonNexus.Command, AkkamonSerializable {
         public ActorRef<Trainer.Command> trainer;
         public String sceneId;
         public String trainerID;
         public ActorRef<AkkamonNexus.Command> replyTo;
 
-        public TrainerOffline(ActorRef<Trainer.Command> trainerActor, String sceneId, String trainerID, ActorRef<AkkamonNexus.Command> replyTo) {
-            this.trainer = trainerActor;
+        public TrainerOffline(ActorRef<Trainer.Command> trainer, String sceneId, String trainerID, ActorRef<AkkamonNexus.Command> replyTo) {
+            this.trainer = trainer;
             this.sceneId = sceneId;
             this.trainerID = trainerID;
             this.replyTo = replyTo;
@@ -37,11 +47,30 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
 
     private final String sceneId;
     private final Map<AkkamonNexus.TrainerID, ActorRef<Trainer.Command>> trainerIDToActor= new HashMap();
+    private final ActorRef<SceneMovementAggregator.Command> movementAggregator;
+    private final Supplier<Optional<SceneMap>> sceneMap;
+    private long handOffs = 0;
 
     public SceneTrainerGroup(ActorContext<Command> context, String sceneId) {
         super(context);
 
         this.sceneId = sceneId;
+        Config heartBeatConfig = context.getSystem().settings().config().getConfig("akkamon.domain.heartbeat");
+        int interestRadius = heartBeatConfig.getInt("interest-radius");
+        this.movementAggregator = context.spawn(
+                SceneMovementAggregator.create(
+                        sceneId,
+                        interestRadius,
+                        SceneMovementAggregator.TickRates.fromConfig(heartBeatConfig, sceneId)
+                ),
+                "movement-aggregator",
+                ActorProps.of(context.getSystem(), "aggregator")
+        );
+
+        this.sceneMap = SceneMaps.get(context.getSystem()).live(sceneId);
+        if (sceneMap.get().isEmpty()) {
+            getContext().getLog().info("Scene {} has no map, steps are not checked for collisions.", sceneId);
+        }
 
         getContext().getLog().info("SceneTrainerGroup Actor {} started", sceneId);
     }
@@ -53,6 +82,10 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
                         AkkamonNexus.RequestTrainerRegistration.class,
                         this::onTrainerRegistration
                 )
+                .onMessage(
+                        AkkamonNexus.TransferTrainer.class,
+                        this::onTransferTrainer
+                )
                 .onMessage(
                         AkkamonNexus.RequestTrainerOffline.class,
                         this::onTrainerOfflineRequest
@@ -73,6 +106,10 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
                         AkkamonNexus.RequestNewTilePos.class,
                         this::onNewTilePos
                 )
+                .onMessage(
+                        AkkamonNexus.RequestMovementBatch.class,
+                        this::onMovementBatch
+                )
                 .onMessage(
                         AkkamonNexus.RequestHeartBeat.class,
                         this::onHeartBeat
@@ -112,8 +149,12 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
     }
 
     private SceneTrainerGroup onWatchedTrainerOffline(TrainerOffline trainerOfflineMsg) {
+        AkkamonNexus.TrainerID trainerID = new AkkamonNexus.TrainerID(trainerOfflineMsg.trainerID, trainerOfflineMsg.sceneId);
         trainerOfflineMsg.replyTo.tell(trainerOfflineMsg);
-        trainerIDToActor.remove(trainerOfflineMsg.trainerID);
+        // a trainer that went to another scene and came back has a newer actor here by now, the old one stopping leaves it be
+        if (trainerIDToActor.remove(trainerID, trainerOfflineMsg.trainer)) {
+            movementAggregator.tell(new SceneMovementAggregator.TrainerLeft(trainerID));
+        }
         return this;
     }
 
@@ -125,7 +166,7 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
                 trainerOfflineRequest.replyTo.tell(new AkkamonNexus.RespondTrainerOffline(
                         trainerOfflineRequest.requestId,
                         trainerOfflineRequest.trainerID,
-                        trainerOfflineRequest.session
+                        trainerOfflineRequest.sessionId
                 ));
             } else {
                 getContext()
@@ -147,17 +188,7 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
     }
 
     private SceneTrainerGroup onHeartBeat(AkkamonNexus.RequestHeartBeat heartBeatRequest) {
-        Map<AkkamonNexus.TrainerID, ActorRef<Trainer.Command>> trainerIDToActorCopy = new HashMap<>(this.trainerIDToActor);
-        getContext()
-                .spawnAnonymous(
-                        HeartBeatQuery.create(
-                                trainerIDToActorCopy,
-                                heartBeatRequest.requestId,
-                                sceneId,
-                                heartBeatRequest.replyTo,
-                                Duration.ofSeconds(3)
-                        )
-                );
+        movementAggregator.tell(heartBeatRequest);
         return this;
     }
 
@@ -185,6 +216,30 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
         return this;
     }
 
+    private SceneTrainerGroup onMovementBatch(AkkamonNexus.RequestMovementBatch movementBatch) {
+        if (this.sceneId.equals(movementBatch.trainerID.scene)) {
+            ActorRef<Trainer.Command> trainerActor = trainerIDToActor.get(movementBatch.trainerID);
+            if (trainerActor != null) {
+                trainerActor.tell(movementBatch);
+            } else {
+                getContext()
+                        .getLog()
+                        .warn(
+                                "Ignoring movement batch for trainerID {}. There is no actor mapped to it.",
+                                movementBatch.trainerID
+                        );
+            }
+        } else {
+            getContext()
+                    .getLog()
+                    .warn(
+                            "Ignoring movement batch for {}. This actor is responsible for {}.",
+                            movementBatch.trainerID.scene,
+                            this.sceneId);
+        }
+        return this;
+    }
+
     private SceneTrainerGroup onStopMoving(AkkamonNexus.RequestStopMoving stopMovingRequest) {
         if (this.sceneId.equals(stopMovingRequest.trainerID.scene)) {
             ActorRef<Trainer.Command> trainerActor = trainerIDToActor.get(stopMovingRequest.trainerID);
@@ -233,6 +288,40 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
         return this;
     }
 
+    private SceneTrainerGroup onTransferTrainer(AkkamonNexus.TransferTrainer transfer) {
+        AkkamonNexus.TrainerID trainerID = new AkkamonNexus.TrainerID(transfer.trainerID.id, sceneId);
+
+        TilePos arrival = transfer.arrival != null
+                ? transfer.arrival
+                : sceneMap.get().flatMap(SceneMap::spawn).orElse(transfer.state.tilePos);
+        Trainer.State state = new Trainer.State(
+                transfer.state.movementDirection,
+                arrival,
+                transfer.state.battleRef,
+                transfer.state.lastRequestId
+        );
+
+        getContext().getLog().info("Trainer {} arrives in scene {} at {}", transfer.trainerID, sceneId, arrival);
+        // the trainer may come back before the scene it left saw its old actor stop, so names aren't reused
+        ActorRef<Trainer.Command> trainerActor = getContext().spawn(
+                Trainer.handedOver(trainerID, movementAggregator, sceneMap, state),
+                "trainer-" + trainerID.id + "-" + (++handOffs),
+                ActorProps.of(getContext().getSystem(), "trainer")
+        );
+        getContext().watchWith(trainerActor, new TrainerOffline(trainerActor, sceneId, trainerID.id, transfer.replyTo));
+
+        trainerIDToActor.put(trainerID, trainerActor);
+        movementAggregator.tell(new SceneMovementAggregator.TrainerJoined(trainerID, transfer.replyTo));
+        transfer.replyTo.tell(new AkkamonNexus.TrainerTransferred(
+                transfer.trainerID,
+                trainerID,
+                arrival,
+                transfer.from,
+                trainerActor
+        ));
+        return this;
+    }
+
     private SceneTrainerGroup onTrainerRegistration(AkkamonNexus.RequestTrainerRegistration registrationRequest) {
 
         AkkamonNexus.TrainerID existingOrNewTrainerID = new AkkamonNexus.TrainerID(registrationRequest.trainerName, this.sceneId);
@@ -241,23 +330,28 @@ public class SceneTrainerGroup extends AbstractBehavior<SceneTrainerGroup.Comman
             ActorRef<Trainer.Command> trainerActor = trainerIDToActor.get(existingOrNewTrainerID);
             if (trainerActor != null) {
                 // TODO add optional already registered?
+                movementAggregator.tell(new SceneMovementAggregator.TrainerJoined(existingOrNewTrainerID, registrationRequest.replyTo));
                 registrationRequest.replyTo.tell(new AkkamonNexus.TrainerRegistered(
                         existingOrNewTrainerID,
-                        registrationRequest.session
+                        registrationRequest.sessionId,
+                        trainerActor
                 ));
             } else {
                 getContext().getLog().info("Creating trainer actor for {}", registrationRequest.trainerName);
                 trainerActor =
                         getContext()
-                                .spawn(Trainer.create(existingOrNewTrainerID), "trainer-" + existingOrNewTrainerID.id);
+                                .spawn(Trainer.create(existingOrNewTrainerID, movementAggregator, sceneMap), "trainer-" + existingOrNewTrainerID.id,
+                                        ActorProps.of(getContext().getSystem(), "trainer"));
                 getContext()
                         .watchWith(trainerActor, new TrainerOffline(trainerActor, sceneId, registrationRequest.trainerName, registrationRequest.replyTo));
 
                 trainerIDToActor.put(existingOrNewTrainerID, trainerActor);
+                movementAggregator.tell(new SceneMovementAggregator.TrainerJoined(existingOrNewTrainerID, registrationRequest.replyTo));
 
                 registrationRequest.replyTo.tell(new AkkamonNexus.TrainerRegistered(
                         existingOrNewTrainerID,
-                        registrationRequest.session
+                        registrationRequest.sessionId,
+                        trainerActor
                 ));
             }
         } else {
@@ -6,62 +6,152 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akkamon.domain.AkkamonSerializable;
+import akkamon.domain.RequestIds;
 import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
 import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.logging.LogMarkers;
+import akkamon.domain.model.world.SceneMap;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
+import java.util.function.Supplier;
 
 import static akkamon.domain.actors.AkkamonNexus.*;
 
+/**
+ * A trainer in one scene. Warping to another scene hands the trainer over to a new actor in the
+ * SceneTrainerGroup of that scene:
+ *
+ * 1. Stepping on a warp tile, the trainer leaves the scene's heartbeat, asks its nexus to transfer
+ *    it and holds on to every command that still reaches it.
+ * 2. The new scene spawns its trainer from the handed-over State. It only takes Forwarded commands
+ *    until the hand-off completes and holds on to the rest.
+ * 3. The session switches to the new trainer, after which the old one gets SessionSwitched. Every
+ *    command sent to the old trainer is in its mailbox before that, so it forwards all of them in
+ *    order, completes the hand-off and stops.
+ *
+ * That way no command of the session is lost or applied out of order while it changes scenes.
+ */
 public class Trainer extends AbstractBehavior<Trainer.Command> {
 
     public interface Command { }
 
-    public static class ReadMovementQueue implements Command {
-        final long requestId;
-        final ActorRef<RespondMovementQueue> replyTo;
+    // commands a trainer holds on to during a hand-off, a session sends a handful per tile
+    private static final int HAND_OFF_STASH_CAPACITY = 1000;
 
-        public ReadMovementQueue(long requestId, ActorRef<RespondMovementQueue> replyTo) {
-            this.requestId = requestId;
-            this.replyTo = replyTo;
+    /**
+     * What a trainer takes along to another scene.
+     */
+    public static class State {
+        public final Direction movementDirection;
+        public final TilePos tilePos;
+        public final ActorRef<AkkamonBattle.Command> battleRef;
+        public final long lastRequestId;
+
+        @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+        public State(Direction movementDirection, TilePos tilePos, ActorRef<AkkamonBattle.Command> battleRef, long lastRequestId) {
+            this.movementDirection = movementDirection;
+            this.tilePos = tilePos;
+            this.battleRef = battleRef;
+            this.lastRequestId = lastRequestId;
+        }
+    }
+
+    public static class SessionSwitched implements Command, AkkamonSerializable {
+        public final ActorRef<Command> trainer;
+
+        @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+        public SessionSwitched(ActorRef<Command> trainer) {
+            this.trainer = trainer;
         }
     }
 
-    public static final class RespondMovementQueue {
-        final public long requestId;
-        final public TrainerID trainerID;
-        final public Queue<Direction> value;
+    public static class Forwarded implements Command, AkkamonSerializable {
+        @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS)
+        public final Command command;
 
-        public RespondMovementQueue(
-                long requestId,
-                TrainerID trainerID,
-                Queue<Direction> value
-        ) {
-            this.requestId = requestId;
-            this.trainerID = trainerID;
-            this.value = value;
+        @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+        public Forwarded(Command command) {
+            this.command = command;
         }
     }
 
-    public static Behavior<Command> create(TrainerID trainerID) {
-        return Behaviors.setup(context -> new Trainer(context, trainerID));
+    public enum HandOffComplete implements Command, AkkamonSerializable {
+        INSTANCE
+    }
+
+    public static Behavior<Command> create(TrainerID trainerID,
+                                           ActorRef<SceneMovementAggregator.Command> movementAggregator) {
+        return create(trainerID, movementAggregator, Optional::empty);
+    }
+
+    public static Behavior<Command> create(TrainerID trainerID,
+                                           ActorRef<SceneMovementAggregator.Command> movementAggregator,
+                                           Supplier<Optional<SceneMap>> sceneMap) {
+        return Behaviors.setup(context -> {
+            Trainer trainer = new Trainer(context, trainerID, movementAggregator, sceneMap);
+            // a new trainer starts on the scene's spawn point, wherever its client says it is
+            trainer.lastValidTilePos = sceneMap.get().flatMap(SceneMap::spawn);
+            return trainer;
+        });
+    }
+
+    /**
+     * A trainer that arrives from another scene, it waits for the hand-off to complete before it takes
+     * commands from its session.
+     */
+    public static Behavior<Command> handedOver(TrainerID trainerID,
+                                               ActorRef<SceneMovementAggregator.Command> movementAggregator,
+                                               Supplier<Optional<SceneMap>> sceneMap,
+                                               State state) {
+        return Behaviors.setup(context -> {
+            Trainer trainer = new Trainer(context, trainerID, movementAggregator, sceneMap);
+            trainer.movementDirection = state.movementDirection;
+            trainer.lastValidTilePos = Optional.ofNullable(state.tilePos);
+            trainer.battleRef = state.battleRef;
+            trainer.lastRequestId = state.lastRequestId;
+            return trainer.awaitingHandOff();
+        });
     }
 
     private TrainerID trainerID;
 
-    private Queue<Direction> movementQueue = new LinkedList<>();
+    private ActorRef<SceneMovementAggregator.Command> movementAggregator;
 
     private Direction movementDirection = Direction.NONE;
 
+    // where the server has the trainer, the client's first tile only counts in scenes without a spawn point
     private Optional<TilePos> lastValidTilePos = Optional.empty();
 
+    // looked up on every step so a reloaded map takes effect right away, see SceneMaps
+    private final Supplier<Optional<SceneMap>> sceneMap;
+
     private ActorRef<AkkamonBattle.Command> battleRef;
 
-    public Trainer(ActorContext<Command> context, TrainerID trainerID) {
+    // the ids of one session only increase, see RequestIds
+    private long lastRequestId = 0;
+
+    // forwarded commands may start a battle, a handed over trainer continues in that behavior
+    private Behavior<Command> afterHandOff = this;
+
+    // commands for the scene a warp leads to, held until the hand-off to it starts stashing
+    private final List<Command> heldForNextScene = new ArrayList<>();
+    private boolean handingOver = false;
+
+    public Trainer(ActorContext<Command> context,
+                   TrainerID trainerID,
+                   ActorRef<SceneMovementAggregator.Command> movementAggregator,
+                   Supplier<Optional<SceneMap>> sceneMap) {
         super(context);
         this.trainerID = trainerID;
+        this.movementAggregator = movementAggregator;
+        this.sceneMap = sceneMap;
     }
 
     @Override
@@ -71,10 +161,6 @@ public class Trainer extends AbstractBehavior<Trainer.Command> {
 
     private Receive<Command> moving() {
         return newReceiveBuilder()
-                .onMessage(
-                        ReadMovementQueue.class,
-                        this::onReadMovementQueue
-                )
                 .onMessage(
                         RequestTrainerOffline.class,
                         this::onTrainerOffline
@@ -90,6 +176,10 @@ public class Trainer extends AbstractBehavior<Trainer.Command> {
                         RequestNewTilePos.class,
                         this::onNewTilePos
                 )
+                .onMessage(
+                        RequestMovementBatch.class,
+                        this::onMovementBatch
+                )
                 .onMessage(
                         AkkamonNexus.BattleStart.class, this::onBattleStart
                 )
@@ -101,7 +191,6 @@ public class Trainer extends AbstractBehavior<Trainer.Command> {
 
     private Behavior<Command> battling() {
         return Behaviors.receive(Command.class)
-                .onMessage(ReadMovementQueue.class, this::onReadMovementQueue)
                 .onMessage(
                         AkkamonBattle.RequestAction.class, this::onRequestBattleAction
                 )
@@ -133,36 +222,174 @@ public class Trainer extends AbstractBehavior<Trainer.Command> {
         return Behaviors.stopped();
     }
 
-    private Trainer onReadMovementQueue(ReadMovementQueue readTrainerPositionRequest) {
-        readTrainerPositionRequest.replyTo.tell(new RespondMovementQueue(
-                readTrainerPositionRequest.requestId,
-                trainerID,
-                new LinkedList<>(movementQueue)
-        ));
-        this.movementQueue.clear();
+    private Behavior<Command> onNewTilePos(RequestNewTilePos newTilePosRequest) {
+        // getContext().getLog().info("Trainer {} has new {}.", trainerID, newTilePosRequest.tilePos);
+        if (alreadyHandled(newTilePosRequest.requestId)) return this;
+        Optional<SceneMap.Warp> warp = step(newTilePosRequest.tilePos);
+        if (warp.isPresent()) {
+            return handingOver(warp.get(), newTilePosRequest.replyTo, null);
+        }
         return this;
     }
 
-    private Trainer onNewTilePos(RequestNewTilePos newTilePosRequest) {
-        // getContext().getLog().info("Trainer {} has new {}.", trainerID, newTilePosRequest.tilePos);
-        if (isMoving()) {
-            this.movementQueue.add(this.movementDirection);
+    private Behavior<Command> onMovementBatch(RequestMovementBatch movementBatch) {
+        if (!movementBatch.resumed && alreadyHandled(movementBatch.requestId)) return this;
+        TilePos reported = movementBatch.tilePos;
+        for (int leg = 0; leg < movementBatch.directions.length; leg++) {
+            if (movementBatch.directions[leg] != null) this.movementDirection = movementBatch.directions[leg];
+            for (int taken = 0; taken < movementBatch.steps[leg]; ) {
+                Optional<SceneMap.Warp> warp = step(reported);
+                taken++;
+                // the client's position only counts until the server has one
+                if (lastValidTilePos.isPresent()) reported = null;
+                if (warp.isPresent()) {
+                    return handingOver(warp.get(), movementBatch.replyTo, rest(movementBatch, leg, taken));
+                }
+            }
         }
+        if (movementBatch.finalDirection != null) this.movementDirection = movementBatch.finalDirection;
         return this;
     }
 
+    // what a trainer that warped in the middle of a batch leaves to the next one, null when nothing is left
+    private static RequestMovementBatch rest(RequestMovementBatch movementBatch, int leg, int taken) {
+        Direction[] directions = Arrays.copyOfRange(movementBatch.directions, leg, movementBatch.directions.length);
+        int[] steps = Arrays.copyOfRange(movementBatch.steps, leg, movementBatch.steps.length);
+        // the direction of the leg goes along in the hand-off State
+        directions[0] = null;
+        steps[0] -= taken;
+        if (Arrays.stream(steps).sum() == 0 && movementBatch.finalDirection == null) return null;
+        return new RequestMovementBatch(
+                movementBatch.requestId,
+                movementBatch.trainerID,
+                null,
+                directions,
+                steps,
+                movementBatch.finalDirection,
+                true,
+                movementBatch.replyTo
+        );
+    }
+
+    /**
+     * Takes one step in the direction the trainer moves in, from where the server has it or, for
+     * its first step in a scene without a spawn point, from the tile the client reported. Returns
+     * the warp to another scene the trainer stepped on.
+     */
+    private Optional<SceneMap.Warp> step(TilePos reported) {
+        if (!isMoving()) return Optional.empty();
+        TilePos from = lastValidTilePos.orElse(reported);
+        if (from == null) return Optional.empty();
+        TilePos to = from.step(movementDirection);
+        Optional<SceneMap> map = sceneMap.get();
+        if (map.isPresent() && (map.get().isBlocked(from) || map.get().isBlocked(to))) {
+            getContext().getLog().debug(LogMarkers.SAMPLED, "Trainer {} can't step {} from {}, dropping the step.",
+                    trainerID, movementDirection, from);
+            return Optional.empty();
+        }
+        if (reported != null && !from.equals(reported)) {
+            getContext().getLog().debug(LogMarkers.SAMPLED, "Trainer {} reports {} but the server has it at {}.",
+                    trainerID, reported, from);
+        }
+        this.lastValidTilePos = Optional.of(to);
+        movementAggregator.tell(new SceneMovementAggregator.MovementStep(
+                trainerID,
+                movementDirection,
+                from
+        ));
+        return map.flatMap(m -> m.warpAt(to)).filter(warp -> !warp.sceneId.equals(trainerID.scene));
+    }
+
+    private Behavior<Command> handingOver(SceneMap.Warp warp, ActorRef<AkkamonNexus.Command> nexus, Command rest) {
+        getContext().getLog().info("Trainer {} warps to scene {}.", trainerID, warp.sceneId);
+        handingOver = true;
+        if (rest != null) heldForNextScene.add(rest);
+        movementAggregator.tell(new SceneMovementAggregator.TrainerLeft(trainerID));
+        nexus.tell(new AkkamonNexus.TransferTrainer(
+                trainerID,
+                warp.sceneId,
+                warp.target.orElse(null),
+                new State(movementDirection, lastValidTilePos.orElse(null), battleRef, lastRequestId),
+                getContext().getSelf(),
+                nexus
+        ));
+
+        return Behaviors.withStash(HAND_OFF_STASH_CAPACITY, stash -> {
+            // the rest of a batch that led onto the warp goes first, then what a trainer still awaiting
+            // its own hand-off had forwarded to it after the warp, see awaitingHandOff
+            heldForNextScene.forEach(stash::stash);
+            heldForNextScene.clear();
+            return Behaviors.receive(Command.class)
+                    .onMessage(SessionSwitched.class, switched -> {
+                        stash.forEach(command -> switched.trainer.tell(new Forwarded(command)));
+                        switched.trainer.tell(HandOffComplete.INSTANCE);
+                        return Behaviors.stopped();
+                    })
+                    .onAnyMessage(command -> {
+                        if (stash.isFull()) {
+                            getContext().getLog().warn("Trainer {} drops {}, too many commands arrived during its hand-off.", trainerID, command);
+                        } else {
+                            stash.stash(command);
+                        }
+                        return Behaviors.same();
+                    })
+                    .build();
+        });
+    }
+
+    private Behavior<Command> awaitingHandOff() {
+        Receive<Command> moving = moving();
+        return Behaviors.withStash(HAND_OFF_STASH_CAPACITY, stash -> Behaviors.receive(Command.class)
+                .onMessage(Forwarded.class, forwarded -> {
+                    // a forwarded step warped on, the rest is the next scene's and starts its hand-off in order
+                    if (handingOver) {
+                        heldForNextScene.add(forwarded.command);
+                        return Behaviors.same();
+                    }
+                    Behavior<Command> next = moving.receiveMessage(forwarded.command);
+                    if (!Behavior.isAlive(next)) return next;
+                    if (next != this) afterHandOff = next;
+                    return Behaviors.same();
+                })
+                .onMessage(HandOffComplete.class, complete -> stash.unstashAll(afterHandOff))
+                .onAnyMessage(command -> {
+                    if (stash.isFull()) {
+                        getContext().getLog().warn("Trainer {} drops {}, too many commands arrived during its hand-off.", trainerID, command);
+                    } else {
+                        stash.stash(command);
+                    }
+                    return Behaviors.same();
+                })
+                .build());
+    }
+
     private Trainer onStopMoving(RequestStopMoving stopMovingRequest) {
         // getContext().getLog().info("Trainer {} stops to move {}.", trainerID, stopMovingRequest.direction);
+        if (alreadyHandled(stopMovingRequest.requestId)) return this;
         this.movementDirection = Direction.NONE;
         return this;
     }
 
     private Trainer onStartMoving(RequestStartMoving startMovingRequest) {
         // getContext().getLog().info("Trainer {} starts to move {}.", trainerID, startMovingRequest.direction);
+        if (alreadyHandled(startMovingRequest.requestId)) return this;
         this.movementDirection = startMovingRequest.direction;
         return this;
     }
 
+    private boolean alreadyHandled(long requestId) {
+        if (requestId <= lastRequestId) {
+            // formatting the ids isn't free, skip it when nobody reads the line
+            if (getContext().getLog().isDebugEnabled()) {
+                getContext().getLog().debug(LogMarkers.SAMPLED, "Trainer {} drops request {}, it already handled {}.",
+                        trainerID, RequestIds.format(requestId), RequestIds.format(lastRequestId));
+            }
+            return true;
+        }
+        lastRequestId = requestId;
+        return false;
+    }
+
     private boolean isMoving() {
         return this.movementDirection != Direction.NONE;
     }
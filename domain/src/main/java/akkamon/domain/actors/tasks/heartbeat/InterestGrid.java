@@ -0,0 +1,91 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import java.util.*;
+
+import static akkamon.domain.actors.AkkamonNexus.TrainerID;
+
+/**
+ * Uniform grid over the tiles of a scene. Trainers are bucketed into square cells, so finding the
+ * trainers within a radius only has to look at the handful of cells that overlap it.
+ */
+public class InterestGrid {
+
+    private final int cellSize;
+    private final Map<Long, Set<TrainerID>> cellToTrainerIDs = new HashMap<>();
+    private final Map<TrainerID, TilePos> trainerIDToTilePos = new HashMap<>();
+
+    public InterestGrid(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be positive, got " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public void place(TrainerID trainerID, TilePos tilePos) {
+        TilePos previous = trainerIDToTilePos.put(trainerID, tilePos);
+        long cell = cellOf(tilePos.x, tilePos.y);
+        if (previous != null) {
+            long previousCell = cellOf(previous.x, previous.y);
+            if (previousCell == cell) return;
+            removeFromCell(previousCell, trainerID);
+        }
+        cellToTrainerIDs.computeIfAbsent(cell, c -> new HashSet<>()).add(trainerID);
+    }
+
+    public void remove(TrainerID trainerID) {
+        TilePos previous = trainerIDToTilePos.remove(trainerID);
+        if (previous != null) {
+            removeFromCell(cellOf(previous.x, previous.y), trainerID);
+        }
+    }
+
+    public TilePos tilePosOf(TrainerID trainerID) {
+        return trainerIDToTilePos.get(trainerID);
+    }
+
+    public boolean isPlaced(TrainerID trainerID) {
+        return trainerIDToTilePos.containsKey(trainerID);
+    }
+
+    /**
+     * @return the other trainers at most radius tiles away horizontally and vertically.
+     */
+    public Set<TrainerID> near(TilePos center, int radius, TrainerID self) {
+        Set<TrainerID> near = new HashSet<>();
+        int minCellX = Math.floorDiv(center.x - radius, cellSize);
+        int maxCellX = Math.floorDiv(center.x + radius, cellSize);
+        int minCellY = Math.floorDiv(center.y - radius, cellSize);
+        int maxCellY = Math.floorDiv(center.y + radius, cellSize);
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                Set<TrainerID> inCell = cellToTrainerIDs.get(key(cellX, cellY));
+                if (inCell == null) continue;
+                for (TrainerID trainerID : inCell) {
+                    if (trainerID.equals(self)) continue;
+                    TilePos tilePos = trainerIDToTilePos.get(trainerID);
+                    if (Math.abs(tilePos.x - center.x) <= radius && Math.abs(tilePos.y - center.y) <= radius) {
+                        near.add(trainerID);
+                    }
+                }
+            }
+        }
+        return near;
+    }
+
+    private void removeFromCell(long cell, TrainerID trainerID) {
+        Set<TrainerID> inCell = cellToTrainerIDs.get(cell);
+        if (inCell != null) {
+            inCell.remove(trainerID);
+            if (inCell.isEmpty()) cellToTrainerIDs.remove(cell);
+        }
+    }
+
+    private long cellOf(int x, int y) {
+        return key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+}
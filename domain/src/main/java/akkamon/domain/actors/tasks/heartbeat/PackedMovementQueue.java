@@ -0,0 +1,43 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import static akkamon.domain.actors.AkkamonNexus.MovementQueue;
+
+/**
+ * The steps a trainer took since the last tick, two bits per direction in a single long. It is
+ * reused tick after tick: draining it hands out an immutable MovementQueue over the same bits and
+ * starts over, so a tick allocates nothing for idle trainers and one small object for moving ones.
+ */
+public class PackedMovementQueue {
+
+    private long packed;
+    private int size;
+
+    /**
+     * @return false when the queue is full, the step is not added
+     */
+    public boolean add(Direction direction) {
+        if (direction == Direction.NONE) {
+            return true;
+        }
+        if (size == MovementQueue.CAPACITY) {
+            return false;
+        }
+        packed |= (long) direction.ordinal() << (size * 2);
+        size++;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public MovementQueue drain() {
+        if (size == 0) {
+            return MovementQueue.IDLE;
+        }
+        MovementQueue movementQueue = new MovementQueue(packed, size);
+        packed = 0;
+        size = 0;
+        return movementQueue;
+    }
+}
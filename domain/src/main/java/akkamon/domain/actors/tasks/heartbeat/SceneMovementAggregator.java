@@ -0,0 +1,384 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import akka.actor.Cancellable;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.dispatch.ControlMessage;
+import akka.dispatch.ExecutionContexts;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.logging.LogMarkers;
+import akkamon.domain.metrics.AkkamonMetrics;
+import akkamon.domain.metrics.LatencyHistogram;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import scala.concurrent.ExecutionContextExecutor;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static akkamon.domain.actors.AkkamonNexus.*;
+
+/**
+ * Long-lived companion of a SceneTrainerGroup. Trainers push their steps into it as they happen,
+ * and every heartbeat it hands out the movement queues of the whole scene in one snapshot.
+ *
+ * The scene keeps its own time: a fixed-rate schedule ticks it and every tick goes out to the nexus of
+ * each node with trainers in the scene. See TickClock for how ticks are numbered and how a scene
+ * that falls behind catches up. The rate follows the activity in the scene, see TickRates.
+ */
+public class SceneMovementAggregator extends AbstractBehavior<SceneMovementAggregator.Command> {
+
+    public interface Command { }
+
+    public static class TrainerJoined implements Command {
+        public final TrainerID trainerID;
+        // the nexus holding the trainer's session, it gets every heartbeat of this scene
+        public final ActorRef<AkkamonNexus.Command> subscriber;
+
+        public TrainerJoined(TrainerID trainerID) {
+            this(trainerID, null);
+        }
+
+        public TrainerJoined(TrainerID trainerID, ActorRef<AkkamonNexus.Command> subscriber) {
+            this.trainerID = trainerID;
+            this.subscriber = subscriber;
+        }
+    }
+
+    public static class TrainerLeft implements Command {
+        public final TrainerID trainerID;
+
+        public TrainerLeft(TrainerID trainerID) {
+            this.trainerID = trainerID;
+        }
+    }
+
+    public static class MovementStep implements Command {
+        public final TrainerID trainerID;
+        public final Direction direction;
+        // the tile the trainer steps away from
+        public final TilePos tilePos;
+
+        public MovementStep(TrainerID trainerID, Direction direction, TilePos tilePos) {
+            this.trainerID = trainerID;
+            this.direction = direction;
+            this.tilePos = tilePos;
+        }
+    }
+
+    /**
+     * How fast a scene ticks. A scene where nobody moved for a while backs off to a keep-alive rate,
+     * a scene with many moving trainers speeds up. The first step in an idle scene brings it back to
+     * its normal rate right away.
+     */
+    public static class TickRates {
+        public final Duration interval;
+        public final Duration idleInterval;
+        public final int idleAfterTicks;
+        public final Duration busyInterval;
+        public final int busyTrainers;
+
+        public TickRates(Duration interval, Duration idleInterval, int idleAfterTicks, Duration busyInterval, int busyTrainers) {
+            this.interval = interval;
+            this.idleInterval = idleInterval;
+            this.idleAfterTicks = idleAfterTicks;
+            this.busyInterval = busyInterval;
+            this.busyTrainers = busyTrainers;
+        }
+
+        public static TickRates fixed(Duration interval) {
+            return new TickRates(interval, interval, Integer.MAX_VALUE, interval, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param heartBeatConfig the akkamon.domain.heartbeat section
+         */
+        public static TickRates fromConfig(Config heartBeatConfig, String sceneId) {
+            String sceneTickInterval = ConfigUtil.joinPath("scene-tick-intervals", sceneId);
+            Duration interval = heartBeatConfig.hasPath(sceneTickInterval)
+                    ? heartBeatConfig.getDuration(sceneTickInterval)
+                    : heartBeatConfig.getDuration("tick-interval");
+
+            Config adaptive = heartBeatConfig.getConfig("adaptive");
+            if (!adaptive.getBoolean("enabled")) {
+                return fixed(interval);
+            }
+            return new TickRates(
+                    interval,
+                    adaptive.getDuration("idle-interval"),
+                    adaptive.getInt("idle-after"),
+                    adaptive.getDuration("busy-interval"),
+                    adaptive.getInt("busy-trainers")
+            );
+        }
+
+        Duration intervalFor(int movingTrainers, int idleTicks) {
+            if (movingTrainers >= busyTrainers) return busyInterval;
+            if (idleTicks >= idleAfterTicks) return idleInterval;
+            return interval;
+        }
+    }
+
+    // scheduled straight to the scene instead of through a timer, which would wrap it, so a
+    // control-aware mailbox sees a ControlMessage and lets it jump the steps
+    private enum Tick implements Command, ControlMessage {
+        INSTANCE
+    }
+
+    private static final ExecutionContextExecutor SCHEDULER_THREAD = ExecutionContexts.fromExecutor(Runnable::run);
+    private static final String TRAINERS_METRIC = "akkamon_scene_trainers";
+    // how often a scene logs how its ticks are doing
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * An aggregator that only takes heartbeat requests, it doesn't tick by itself.
+     */
+    public static Behavior<Command> create(String sceneId, int interestRadius) {
+        return create(sceneId, interestRadius, (TickRates) null);
+    }
+
+    public static Behavior<Command> create(String sceneId, int interestRadius, Duration tickInterval) {
+        return create(sceneId, interestRadius, tickInterval == null ? null : TickRates.fixed(tickInterval));
+    }
+
+    public static Behavior<Command> create(String sceneId, int interestRadius, TickRates tickRates) {
+        return Behaviors.setup(context -> new SceneMovementAggregator(context, sceneId, interestRadius, tickRates));
+    }
+
+    private final String sceneId;
+    private final int interestRadius;
+    private final Map<TrainerID, PackedMovementQueue> trainerIDToMovementQueue = new HashMap<>();
+    private final Map<TrainerID, TilePos> trainerIDToTickOrigin = new HashMap<>();
+    private final InterestGrid interestGrid;
+    private final Set<ActorRef<AkkamonNexus.Command>> subscribers = new HashSet<>();
+    // null unless the scene ticks by itself
+    private Cancellable ticking;
+    private final TickRates tickRates;
+    private final TickClock clock;
+    private Duration tickInterval;
+    // ticks in a row in which no trainer moved
+    private int idleTicks = 0;
+    private long lastReportNanos;
+    // only a ticking scene reports metrics, the others live in tests and benchmarks
+    private final AkkamonMetrics metrics;
+    private final LatencyHistogram tickDuration;
+    private final LatencyHistogram tickLag;
+    // read by whoever scrapes the metrics
+    private final AtomicInteger trainers = new AtomicInteger();
+
+    public SceneMovementAggregator(ActorContext<Command> context,
+                                   String sceneId,
+                                   int interestRadius,
+                                   TickRates tickRates) {
+        super(context);
+        this.sceneId = sceneId;
+        this.interestRadius = interestRadius;
+        // with cells as wide as the radius, an interest query never looks at more than 3x3 cells
+        this.interestGrid = new InterestGrid(Math.max(interestRadius, 1));
+        this.tickRates = tickRates;
+
+        if (tickRates != null) {
+            this.tickInterval = tickRates.interval;
+            this.lastReportNanos = System.nanoTime();
+            this.clock = new TickClock(tickInterval.toNanos(), lastReportNanos);
+            this.ticking = scheduleTicks(tickInterval);
+
+            this.metrics = AkkamonMetrics.get(context.getSystem());
+            this.tickDuration = metrics.histogram("akkamon_tick_duration_seconds",
+                    "Time a scene takes to send out the heartbeat of a tick", "scene", sceneId);
+            this.tickLag = metrics.histogram("akkamon_tick_lag_seconds",
+                    "How late a scene starts a tick", "scene", sceneId);
+            metrics.gauge(TRAINERS_METRIC, "Trainers in a scene", trainers::get, "scene", sceneId);
+        } else {
+            this.clock = null;
+            this.metrics = null;
+            this.tickDuration = null;
+            this.tickLag = null;
+        }
+    }
+
+    @Override
+    public Receive<Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(TrainerJoined.class, this::onTrainerJoined)
+                .onMessage(TrainerLeft.class, this::onTrainerLeft)
+                .onMessage(MovementStep.class, this::onMovementStep)
+                .onMessage(RequestHeartBeat.class, this::onHeartBeat)
+                .onMessageEquals(Tick.INSTANCE, this::onTick)
+                .onSignal(PostStop.class, signal -> onPostStop())
+                .build();
+    }
+
+    private SceneMovementAggregator onTrainerJoined(TrainerJoined joined) {
+        trainerIDToMovementQueue.putIfAbsent(joined.trainerID, new PackedMovementQueue());
+        trainers.set(trainerIDToMovementQueue.size());
+        if (joined.subscriber != null) subscribers.add(joined.subscriber);
+        return this;
+    }
+
+    private SceneMovementAggregator onTrainerLeft(TrainerLeft left) {
+        trainerIDToMovementQueue.remove(left.trainerID);
+        trainers.set(trainerIDToMovementQueue.size());
+        trainerIDToTickOrigin.remove(left.trainerID);
+        interestGrid.remove(left.trainerID);
+        return this;
+    }
+
+    private SceneMovementAggregator onMovementStep(MovementStep step) {
+        PackedMovementQueue movementQueue = trainerIDToMovementQueue.get(step.trainerID);
+        if (movementQueue != null) {
+            if (clock != null && idleTicks >= tickRates.idleAfterTicks) {
+                // the scene was idling at its keep-alive rate, don't keep this step waiting for it
+                idleTicks = 0;
+                changeTickInterval(tickRates.interval);
+            }
+            if (!movementQueue.add(step.direction)) {
+                getContext().getLog().warn(LogMarkers.SAMPLED, "Dropping step of {} in scene {}, it already took {} steps this tick.",
+                        step.trainerID, sceneId, MovementQueue.CAPACITY);
+            }
+            trainerIDToTickOrigin.putIfAbsent(step.trainerID, step.tilePos);
+            interestGrid.place(step.trainerID, step.tilePos.step(step.direction));
+        } else {
+            getContext().getLog().warn(LogMarkers.SAMPLED, "Ignoring movement step of {}, it isn't part of scene {}.", step.trainerID, sceneId);
+        }
+        return this;
+    }
+
+    private SceneMovementAggregator onTick() {
+        long start = System.nanoTime();
+        long tick = clock.advance(start);
+        if (tick < 0) {
+            // a timer message that queued up while the scene was behind, its tick was merged into the last one
+            return this;
+        }
+
+        RespondHeartBeatQuery heartBeat = snapshot(0, tick);
+        for (ActorRef<AkkamonNexus.Command> subscriber : subscribers) {
+            subscriber.tell(heartBeat);
+        }
+
+        int movingTrainers = movingTrainers(heartBeat.trainerMovementQueues);
+        idleTicks = movingTrainers == 0 ? idleTicks + 1 : 0;
+        changeTickInterval(tickRates.intervalFor(movingTrainers, idleTicks));
+
+        long end = System.nanoTime();
+        clock.finished(start, end);
+        tickDuration.recordNanos(end - start);
+        tickLag.recordNanos(clock.lastLagNanos());
+        if (end - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+            report();
+            lastReportNanos = end;
+        }
+        return this;
+    }
+
+    private SceneMovementAggregator onPostStop() {
+        if (ticking != null) ticking.cancel();
+        if (metrics != null) metrics.removeGauge(TRAINERS_METRIC, "scene", sceneId);
+        return this;
+    }
+
+    private void changeTickInterval(Duration interval) {
+        if (interval.equals(tickInterval)) return;
+        getContext().getLog().debug("Scene {} ticks every {} ms now", sceneId, interval.toMillis());
+        tickInterval = interval;
+        clock.retime(interval.toNanos(), System.nanoTime());
+        // a tick of the old rate that is already queued finds its tick done, see TickClock
+        ticking.cancel();
+        ticking = scheduleTicks(interval);
+    }
+
+    private Cancellable scheduleTicks(Duration interval) {
+        ActorRef<Command> self = getContext().getSelf();
+        return getContext().getSystem().scheduler().scheduleAtFixedRate(
+                interval,
+                interval,
+                () -> self.tell(Tick.INSTANCE),
+                // sent from the scheduler's thread like a timer's, a busy dispatcher doesn't hold it back
+                SCHEDULER_THREAD
+        );
+    }
+
+    private static int movingTrainers(Map<TrainerID, MovementQueueReading> readings) {
+        int moving = 0;
+        for (MovementQueueReading reading : readings.values()) {
+            if (reading instanceof MovementQueue && ((MovementQueue) reading).size > 0) moving++;
+        }
+        return moving;
+    }
+
+    private void report() {
+        String report = "Scene {} ran {} ticks, merged {} late ones, ticks started at most {} ms late and took at most {} us";
+        Object[] arguments = {
+                sceneId,
+                clock.ticks(),
+                clock.mergedTicks(),
+                TimeUnit.NANOSECONDS.toMillis(clock.maxLagNanos()),
+                TimeUnit.NANOSECONDS.toMicros(clock.maxDurationNanos())
+        };
+        if (clock.mergedTicks() > 0) {
+            getContext().getLog().warn(report, arguments);
+        } else {
+            getContext().getLog().debug(report, arguments);
+        }
+        clock.resetStats();
+    }
+
+    private SceneMovementAggregator onHeartBeat(RequestHeartBeat heartBeatRequest) {
+        heartBeatRequest.replyTo.tell(snapshot(heartBeatRequest.requestId, clock != null ? clock.lastTick() : 0));
+        return this;
+    }
+
+    private RespondHeartBeatQuery snapshot(long requestId, long tick) {
+        Map<TrainerID, MovementQueueReading> snapshot = new HashMap<>(trainerIDToMovementQueue.size());
+        Map<TrainerID, TilePos> tilePositions = new HashMap<>(trainerIDToMovementQueue.size());
+        for (Map.Entry<TrainerID, PackedMovementQueue> entry : trainerIDToMovementQueue.entrySet()) {
+            TilePos origin = trainerIDToTickOrigin.get(entry.getKey());
+            if (origin == null) origin = interestGrid.tilePosOf(entry.getKey());
+            if (origin != null) tilePositions.put(entry.getKey(), origin);
+
+            snapshot.put(entry.getKey(), entry.getValue().drain());
+        }
+
+        trainerIDToTickOrigin.clear();
+
+        return new RespondHeartBeatQuery(
+                requestId,
+                sceneId,
+                tick,
+                tickInterval != null ? tickInterval.toMillis() : 0,
+                snapshot,
+                tilePositions,
+                interestRadius > 0 ? interests(snapshot.keySet()) : null
+        );
+    }
+
+    private Map<TrainerID, Set<TrainerID>> interests(Set<TrainerID> trainerIDs) {
+        // trainers that haven't moved yet have no known position, everyone can see them and they see everyone
+        Set<TrainerID> unplaced = new HashSet<>();
+        for (TrainerID trainerID : trainerIDs) {
+            if (!interestGrid.isPlaced(trainerID)) unplaced.add(trainerID);
+        }
+        Set<TrainerID> everyone = Collections.unmodifiableSet(trainerIDs);
+
+        Map<TrainerID, Set<TrainerID>> interests = new HashMap<>(trainerIDs.size());
+        for (TrainerID trainerID : trainerIDs) {
+            TilePos tilePos = interestGrid.tilePosOf(trainerID);
+            if (tilePos == null) {
+                interests.put(trainerID, everyone);
+            } else {
+                Set<TrainerID> near = interestGrid.near(tilePos, interestRadius, trainerID);
+                near.addAll(unplaced);
+                interests.put(trainerID, near);
+            }
+        }
+        return interests;
+    }
+}
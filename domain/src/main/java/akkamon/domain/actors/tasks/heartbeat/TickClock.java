@@ -0,0 +1,101 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+/**
+ * Numbers the ticks of a scene by the time they are due, counted from the moment the clock started.
+ * A scene that falls behind doesn't replay the ticks it missed: the next tick it runs takes the number
+ * that is due by then and covers everything that happened since the previous one. Timer messages that
+ * queued up while the scene was busy find their tick already done and are dropped.
+ *
+ * It also keeps the numbers a scene reports about its ticks: how late they started, how long they took
+ * and how many were merged into a later one.
+ */
+public class TickClock {
+
+    private long intervalNanos;
+    private long originNanos;
+    private long lastTick = 0;
+
+    private long ticks;
+    private long mergedTicks;
+    private long maxLagNanos;
+    private long maxDurationNanos;
+    private long lastLagNanos;
+
+    public TickClock(long intervalNanos, long originNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("intervalNanos must be positive, got " + intervalNanos);
+        }
+        this.intervalNanos = intervalNanos;
+        this.originNanos = originNanos;
+    }
+
+    /**
+     * @return the number of the tick to run now, or -1 when the tick due now has already been run.
+     */
+    public long advance(long nowNanos) {
+        long due = (nowNanos - originNanos) / intervalNanos;
+        if (due <= lastTick) {
+            return -1;
+        }
+        mergedTicks += due - lastTick - 1;
+        lastTick = due;
+        ticks++;
+
+        lastLagNanos = nowNanos - (originNanos + due * intervalNanos);
+        maxLagNanos = Math.max(maxLagNanos, lastLagNanos);
+        return due;
+    }
+
+    /**
+     * Switches to another interval. The numbering carries on, the next tick is due one new interval from now.
+     */
+    public void retime(long intervalNanos, long nowNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("intervalNanos must be positive, got " + intervalNanos);
+        }
+        this.intervalNanos = intervalNanos;
+        this.originNanos = nowNanos - lastTick * intervalNanos;
+    }
+
+    // marks the end of the tick advance returned last
+    public void finished(long startNanos, long nowNanos) {
+        maxDurationNanos = Math.max(maxDurationNanos, nowNanos - startNanos);
+    }
+
+    public long intervalNanos() {
+        return intervalNanos;
+    }
+
+    public long lastTick() {
+        return lastTick;
+    }
+
+    // how late the last tick started after it was due
+    public long lastLagNanos() {
+        return lastLagNanos;
+    }
+
+    public long ticks() {
+        return ticks;
+    }
+
+    public long mergedTicks() {
+        return mergedTicks;
+    }
+
+    public long maxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public long maxDurationNanos() {
+        return maxDurationNanos;
+    }
+
+    // starts a new reporting period, the tick numbering carries on
+    public void resetStats() {
+        ticks = 0;
+        mergedTicks = 0;
+        maxLagNanos = 0;
+        maxDurationNanos = 0;
+    }
+}
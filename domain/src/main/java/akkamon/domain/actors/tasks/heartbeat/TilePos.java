@@ -1,9 +1,36 @@
 package akkamon.domain.actors.tasks.heartbeat;
 
+import java.util.Objects;
+
 public class TilePos {
     public int x;
     public int y;
 
+    public TilePos() {
+    }
+
+    public TilePos(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public TilePos step(Direction direction) {
+        return new TilePos(x + direction.dx, y + direction.dy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TilePos tilePos = (TilePos) o;
+        return x == tilePos.x && y == tilePos.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y);
+    }
+
     public String toString() {
         return "tilePos={x: " + x + ", y: " + y + "}";
     }
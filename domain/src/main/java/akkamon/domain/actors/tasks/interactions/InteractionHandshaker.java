@@ -111,10 +111,8 @@ public class InteractionHandshaker extends AbstractBehavior<InteractionHandshake
 
 
     private Behavior<Command> onReply(InteractionReply r) {
-        getContext().getLog().info("received reply from {} with value {}!", r.trainerID, r.value);
-        getContext().getLog().info(String.valueOf(stillWaiting));
         stillWaiting.remove(r.trainerID);
-        getContext().getLog().info(String.valueOf(stillWaiting));
+        getContext().getLog().debug("Received reply from {} with value {}, still waiting for {}", r.trainerID, r.value, stillWaiting);
         this.waitingToStartInteraction.add(r.trainerID);
         if (r.value) {
             return respondIfAllRepliesReceived();
@@ -130,8 +128,6 @@ public class InteractionHandshaker extends AbstractBehavior<InteractionHandshake
     }
 
     private Behavior<Command> respondIfAllRepliesReceived() {
-        getContext().getLog().info(String.valueOf(stillWaiting));
-
         if (this.stillWaiting.isEmpty()) {
             getContext().getLog().info("Sending out interaction Start!");
             replyTo.tell(new RespondInteractionHandshaker(
@@ -0,0 +1,16 @@
+package akkamon.domain.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public final class LogMarkers {
+
+    /**
+     * Marks events that can fire for every step or frame. SamplingTurboFilter lets only some of them
+     * through, so a misbehaving client can't flood the log.
+     */
+    public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+    private LogMarkers() {
+    }
+}
@@ -0,0 +1,60 @@
+package akkamon.domain.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets the first and then every oneIn-th event with the SAMPLED marker through, counted per log
+ * statement. Turbo filters run before the event is created, so a dropped event costs a counter
+ * increment and a statement below the logger's level costs nothing extra. Configured in logback.xml:
+ *
+ * <pre>
+ * &lt;turboFilter class="akkamon.domain.logging.SamplingTurboFilter"&gt;
+ *     &lt;oneIn&gt;100&lt;/oneIn&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private int oneIn = 100;
+    // by message format, the statements in the code, so the map stays small
+    private final ConcurrentMap<String, AtomicLong> seen = new ConcurrentHashMap<>();
+
+    public void setOneIn(int oneIn) {
+        this.oneIn = oneIn;
+    }
+
+    public int getOneIn() {
+        return oneIn;
+    }
+
+    @Override
+    public void start() {
+        if (oneIn < 1) {
+            addError("oneIn must be at least 1, not " + oneIn);
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isDebugEnabled(marker) and the like pass no format, they shouldn't count as an event
+        if (format == null || marker == null || !marker.contains(LogMarkers.SAMPLED)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            // disabled anyway, don't spend the count on it
+            return FilterReply.NEUTRAL;
+        }
+        long count = seen.computeIfAbsent(format, f -> new AtomicLong()).getAndIncrement();
+        return count % oneIn == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
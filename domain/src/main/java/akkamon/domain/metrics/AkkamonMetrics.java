@@ -0,0 +1,136 @@
+package akkamon.domain.metrics;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of an actor system, shared by its actors and the api. Counters are LongAdders and
+ * latencies HdrHistogram recorders, so recording on a hot path costs about as much as an increment.
+ * Gauges are read when the metrics are scraped. Metrics are named and labelled the Prometheus way,
+ * labels are given as name, value pairs.
+ */
+public class AkkamonMetrics implements Extension {
+
+    public static class Id extends ExtensionId<AkkamonMetrics> {
+        private static final Id instance = new Id();
+
+        private Id() {
+        }
+
+        @Override
+        public AkkamonMetrics createExtension(ActorSystem<?> system) {
+            return new AkkamonMetrics();
+        }
+    }
+
+    public static AkkamonMetrics get(ActorSystem<?> system) {
+        return Id.instance.apply(system);
+    }
+
+    private enum Type {COUNTER, GAUGE, HISTOGRAM}
+
+    private static class Family {
+        final Type type;
+        final String help;
+        // by labels, sorted so a scrape lists them in a stable order
+        final Map<List<String>, Object> metrics = new ConcurrentSkipListMap<>((a, b) -> String.join("\u0000", a).compareTo(String.join("\u0000", b)));
+
+        Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private final Map<String, MailboxDepth> mailboxes = new ConcurrentSkipListMap<>();
+    private final List<Consumer<MetricsWriter>> collectors = new CopyOnWriteArrayList<>();
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, Type.COUNTER, help).metrics.computeIfAbsent(Arrays.asList(labels), l -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, Type.HISTOGRAM, help).metrics.computeIfAbsent(Arrays.asList(labels), l -> new LatencyHistogram());
+    }
+
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, Type.GAUGE, help).metrics.put(Arrays.asList(labels), value);
+    }
+
+    public void removeGauge(String name, String... labels) {
+        Family family = families.get(name);
+        if (family != null) family.metrics.remove(Arrays.asList(labels));
+    }
+
+    // the depth of the mailboxes of one kind of actor, see InstrumentedMailbox
+    public MailboxDepth mailbox(String actorKind) {
+        return mailboxes.computeIfAbsent(actorKind, kind -> new MailboxDepth());
+    }
+
+    /**
+     * Adds metrics that are only known when scraping, like those of every open session.
+     */
+    public void addCollector(Consumer<MetricsWriter> collector) {
+        collectors.add(collector);
+    }
+
+    public String scrape() {
+        MetricsWriter out = new MetricsWriter();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            for (Map.Entry<List<String>, Object> metric : family.metrics.entrySet()) {
+                String[] labels = metric.getKey().toArray(new String[0]);
+                switch (family.type) {
+                    case COUNTER:
+                        out.counter(name, family.help, ((LongAdder) metric.getValue()).sum(), labels);
+                        break;
+                    case GAUGE:
+                        out.gauge(name, family.help, ((LongSupplier) metric.getValue()).getAsLong(), labels);
+                        break;
+                    case HISTOGRAM:
+                        ((LatencyHistogram) metric.getValue()).write(out, name, family.help, labels);
+                        break;
+                }
+            }
+        }
+
+        List<Map.Entry<String, MailboxDepth>> kinds = new ArrayList<>(mailboxes.entrySet());
+        for (Map.Entry<String, MailboxDepth> kind : kinds) {
+            out.gauge("akkamon_mailbox_messages", "Messages waiting in the mailboxes of all actors of a kind",
+                    kind.getValue().queued(), "actor", kind.getKey());
+        }
+        for (Map.Entry<String, MailboxDepth> kind : kinds) {
+            out.gauge("akkamon_mailbox_max_depth", "Deepest mailbox of an actor of a kind since the previous scrape",
+                    kind.getValue().maxDepthThenReset(), "actor", kind.getKey());
+        }
+        for (Map.Entry<String, MailboxDepth> kind : kinds) {
+            out.counter("akkamon_mailbox_dropped_total", "Messages that didn't fit in the bounded mailbox of an actor of a kind",
+                    kind.getValue().dropped(), "actor", kind.getKey());
+        }
+
+        for (Consumer<MetricsWriter> collector : collectors) {
+            collector.accept(out);
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, Type type, String help) {
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+        }
+        return family;
+    }
+}
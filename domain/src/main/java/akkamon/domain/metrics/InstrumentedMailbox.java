@@ -0,0 +1,122 @@
+package akkamon.domain.metrics;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.typed.javadsl.Adapter;
+import akka.dispatch.ControlMessage;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A mailbox that counts its messages into the MailboxDepth of its actor-kind, configured under
+ * akkamon.domain.mailboxes and picked by ActorProps.
+ *
+ * With control-aware on, ControlMessages go ahead of everything else queued, like the ticks of a
+ * scene that is flooded with steps. Typed timers wrap the messages they send, so control messages
+ * have to be sent without one. With a capacity, messages that don't fit go to dead letters
+ * instead of blocking the sender; control messages always fit.
+ */
+public class InstrumentedMailbox implements MailboxType, ProducesMessageQueue<InstrumentedMailbox.InstrumentedQueue> {
+
+    public static class InstrumentedQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+        private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        // null unless control-aware
+        private final Queue<Envelope> controlQueue;
+        // ConcurrentLinkedQueue.size() walks the whole queue
+        private final AtomicInteger size = new AtomicInteger();
+        // 0 is unbounded
+        private final int capacity;
+        private final MailboxDepth depth;
+        private final ActorRef deadLetters;
+
+        InstrumentedQueue(MailboxDepth depth, int capacity, boolean controlAware, ActorRef deadLetters) {
+            this.depth = depth;
+            this.capacity = capacity;
+            this.controlQueue = controlAware ? new ConcurrentLinkedQueue<>() : null;
+            this.deadLetters = deadLetters;
+        }
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            if (controlQueue != null && handle.message() instanceof ControlMessage) {
+                controlQueue.offer(handle);
+                depth.enqueued(size.incrementAndGet());
+                return;
+            }
+
+            int queued = size.incrementAndGet();
+            if (capacity > 0 && queued > capacity) {
+                size.decrementAndGet();
+                depth.droppedOne();
+                if (deadLetters != null) {
+                    deadLetters.tell(new DeadLetter(handle.message(), handle.sender(), receiver), handle.sender());
+                }
+                return;
+            }
+            queue.offer(handle);
+            depth.enqueued(queued);
+        }
+
+        @Override
+        public Envelope dequeue() {
+            Envelope handle = controlQueue != null ? controlQueue.poll() : null;
+            if (handle == null) handle = queue.poll();
+            if (handle != null) {
+                size.decrementAndGet();
+                depth.dequeued();
+            }
+            return handle;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return size.get();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return !queue.isEmpty() || (controlQueue != null && !controlQueue.isEmpty());
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            Envelope handle;
+            while ((handle = dequeue()) != null) {
+                deadLetters.enqueue(owner, handle);
+            }
+        }
+    }
+
+    private final String actorKind;
+    private final int capacity;
+    private final boolean controlAware;
+
+    public InstrumentedMailbox(ActorSystem.Settings settings, Config config) {
+        this.actorKind = config.getString("actor-kind");
+        this.capacity = config.getInt("capacity");
+        this.controlAware = config.getBoolean("control-aware");
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        if (system.isEmpty()) {
+            return new InstrumentedQueue(new MailboxDepth(), capacity, controlAware, null);
+        }
+        return new InstrumentedQueue(
+                AkkamonMetrics.get(Adapter.toTyped(system.get())).mailbox(actorKind),
+                capacity,
+                controlAware,
+                system.get().deadLetters()
+        );
+    }
+}
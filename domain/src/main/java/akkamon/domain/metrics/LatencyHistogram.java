@@ -0,0 +1,47 @@
+package akkamon.domain.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies in nanoseconds, recorded without locks by any thread. A scrape reports the quantiles of
+ * what was recorded since the previous scrape, count and sum cover the whole lifetime.
+ */
+public class LatencyHistogram {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 1.0};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Recorder recorder = new Recorder(3);
+    // guarded by this, only touched while scraping
+    private Histogram interval;
+    private long count;
+    private long sumNanos;
+
+    public void recordNanos(long nanos) {
+        recorder.recordValue(Math.max(0, nanos));
+    }
+
+    synchronized void write(MetricsWriter out, String name, String help, String[] labels) {
+        interval = recorder.getIntervalHistogram(interval);
+        count += interval.getTotalCount();
+        sumNanos += (long) (interval.getMean() * interval.getTotalCount());
+
+        for (double quantile : QUANTILES) {
+            long nanos = interval.getTotalCount() == 0 ? 0 : interval.getValueAtPercentile(quantile * 100);
+            out.summary(name, help, name, nanos / NANOS_PER_SECOND, withQuantile(labels, quantile));
+        }
+        out.summary(name, help, name + "_count", count, labels);
+        out.summary(name, help, name + "_sum", sumNanos / NANOS_PER_SECOND, labels);
+    }
+
+    private static String[] withQuantile(String[] labels, double quantile) {
+        String[] withQuantile = new String[labels.length + 2];
+        System.arraycopy(labels, 0, withQuantile, 0, labels.length);
+        withQuantile[labels.length] = "quantile";
+        withQuantile[labels.length + 1] = Double.toString(quantile);
+        return withQuantile;
+    }
+}
@@ -0,0 +1,40 @@
+package akkamon.domain.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The mailboxes of all actors of one kind: how many messages wait in them together, how deep the
+ * deepest of them got since the previous scrape and how many messages didn't fit in a bounded one.
+ */
+public class MailboxDepth {
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder dropped = new LongAdder();
+
+    void enqueued(int depth) {
+        queued.increment();
+        maxDepth.accumulate(depth);
+    }
+
+    void dequeued() {
+        queued.decrement();
+    }
+
+    void droppedOne() {
+        dropped.increment();
+    }
+
+    public long queued() {
+        return queued.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long maxDepthThenReset() {
+        return maxDepth.getThenReset();
+    }
+}
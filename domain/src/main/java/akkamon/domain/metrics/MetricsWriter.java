@@ -0,0 +1,71 @@
+package akkamon.domain.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes metrics in the Prometheus text format. Samples of one metric have to follow each other,
+ * the HELP and TYPE lines are written before the first of them.
+ */
+public class MetricsWriter {
+
+    private final StringBuilder out = new StringBuilder(4096);
+    private final Set<String> described = new HashSet<>();
+
+    public MetricsWriter counter(String name, String help, long value, String... labels) {
+        return sample(name, "counter", help, name, labels, Long.toString(value));
+    }
+
+    public MetricsWriter gauge(String name, String help, long value, String... labels) {
+        return sample(name, "gauge", help, name, labels, Long.toString(value));
+    }
+
+    public MetricsWriter gauge(String name, String help, double value, String... labels) {
+        return sample(name, "gauge", help, name, labels, Double.toString(value));
+    }
+
+    /**
+     * One line of a summary, sample is the name of the line, e.g. name_count.
+     */
+    public MetricsWriter summary(String name, String help, String sample, double value, String... labels) {
+        return sample(name, "summary", help, sample, labels, Double.toString(value));
+    }
+
+    public MetricsWriter summary(String name, String help, String sample, long value, String... labels) {
+        return sample(name, "summary", help, sample, labels, Long.toString(value));
+    }
+
+    private MetricsWriter sample(String name, String type, String help, String sample, String[] labels, String value) {
+        if (described.add(name)) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+        out.append(sample);
+        appendLabels(labels);
+        out.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    private void appendLabels(String[] labels) {
+        if (labels.length == 0) return;
+        out.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) out.append(',');
+            out.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char character = value.charAt(c);
+                if (character == '\\' || character == '"') out.append('\\').append(character);
+                else if (character == '\n') out.append("\\n");
+                else out.append(character);
+            }
+            out.append('"');
+        }
+        out.append('}');
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
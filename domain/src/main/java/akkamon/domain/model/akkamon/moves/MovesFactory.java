@@ -5,11 +5,16 @@ import akkamon.domain.model.akkamon.Stat;
 import akkamon.domain.model.akkamon.moves.implementations.*;
 import akkamon.domain.model.akkamon.types.implementations.*;
 import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
 
 public class MovesFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(MovesFactory.class);
+
     public Map<MoveSlot, Mon.Move> fromNames(String[] names) {
         Map<MoveSlot, Mon.Move> moves = new HashMap<>();
         for (var i = 0 ; i < names.length; i++) {
@@ -154,7 +159,7 @@ public class MovesFactory {
                 );
                 break;
             default:
-                System.out.println("move not found: " + name);
+                log.warn("Move not found: {}", name);
                 return null;
         }
         return move;
@@ -178,12 +183,10 @@ public class MovesFactory {
     public Mon.Move fromJSON(JsonObject json) {
         String name = String.valueOf(json.get("name"));
         name = name.replaceAll("\"", "");
-        System.out.println("Setting this move from json!");
-        System.out.println(name);
         Mon.Move move = this.fromName(name);
         JsonObject pp = json.get("PP").getAsJsonObject();
         move.PP.effective = Integer.parseInt(String.valueOf(pp.get("effective")));
-        System.out.println(move);
+        log.debug("Move {} from json: {}", name, move);
         return move;
     }
 }
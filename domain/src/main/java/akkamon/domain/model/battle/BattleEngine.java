@@ -9,11 +9,15 @@ import akkamon.domain.model.akkamon.status.AkkamonStatus;
 import akkamon.domain.model.akkamon.types.AkkamonType;
 import akkamon.domain.model.battle.events.Introduction;
 import akkamon.domain.model.battle.state.BattleState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
 public class BattleEngine {
 
+    private static final Logger log = LoggerFactory.getLogger(BattleEngine.class);
+
     private final Map<AkkamonNexus.TrainerID, List<AkkamonNexus.TrainerID>> trainerIDToOpponents = new HashMap<>();
     private final BattleEvents events;
     private final BattleState state;
@@ -74,7 +78,7 @@ public class BattleEngine {
     }
 
     public void play(Set<AkkamonBattle.RequestAction> nextTurnActions) {
-        System.out.println("Playing actions:" + nextTurnActions);
+        log.debug("Playing actions: {}", nextTurnActions);
     }
 
     public static List<MonTeam> createDemoTeams() {
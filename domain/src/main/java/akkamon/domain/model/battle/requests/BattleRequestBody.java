@@ -1,10 +1,14 @@
 package akkamon.domain.model.battle.requests;
 
 import akkamon.domain.model.akkamon.Mon;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 public class BattleRequestBody {
     public RequestBattleAction requestAction;
 
+    @JsonSerialize(using = MoveCodec.Serializer.class)
+    @JsonDeserialize(using = MoveCodec.Deserializer.class)
     public Mon.Move move;
 
     @Override
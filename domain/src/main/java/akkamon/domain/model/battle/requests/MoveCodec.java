@@ -0,0 +1,46 @@
+package akkamon.domain.model.battle.requests;
+
+import akkamon.domain.model.akkamon.Mon;
+import akkamon.domain.model.akkamon.moves.MovesFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+
+/**
+ * Writes a move between cluster nodes the way clients send it: its name and remaining PP.
+ * The receiving node rebuilds it with the MovesFactory, just like JsonToMove does for clients.
+ */
+public class MoveCodec {
+
+    public static class Serializer extends JsonSerializer<Mon.Move> {
+        @Override
+        public void serialize(Mon.Move move, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("name", move.name);
+            gen.writeObjectFieldStart("PP");
+            gen.writeNumberField("effective", move.PP.effective);
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Mon.Move> {
+        @Override
+        public Mon.Move deserialize(JsonParser p, DeserializationContext context) throws IOException {
+            JsonNode node = p.getCodec().readTree(p);
+            JsonObject pp = new JsonObject();
+            pp.addProperty("effective", node.get("PP").get("effective").asInt());
+            JsonObject json = new JsonObject();
+            json.addProperty("name", node.get("name").asText());
+            json.add("PP", pp);
+            return new MovesFactory().fromJSON(json);
+        }
+    }
+}
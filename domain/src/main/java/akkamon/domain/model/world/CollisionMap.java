@@ -0,0 +1,42 @@
+package akkamon.domain.model.world;
+
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+
+import java.util.BitSet;
+
+/**
+ * The tiles of a scene a trainer can't stand on, one bit per tile. It follows the client's GridPhysics:
+ * a tile blocks when no tile layer has a tile there or when a tile on any layer has the Tiled property
+ * collides. Everything outside the map blocks. See SceneMap for how it is read.
+ */
+public class CollisionMap {
+
+    private final int width;
+    private final int height;
+    private final BitSet blocked;
+
+    public CollisionMap(int width, int height, BitSet blocked) {
+        this.width = width;
+        this.height = height;
+        this.blocked = blocked;
+    }
+
+    public boolean isBlocked(TilePos tilePos) {
+        return isBlocked(tilePos.x, tilePos.y);
+    }
+
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return true;
+        }
+        return blocked.get(y * width + x);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+}
@@ -0,0 +1,232 @@
+package akkamon.domain.model.world;
+
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * The server side of a Tiled map: the gids of every tile layer and what the tiles mean for the game,
+ * collision, wild encounters and warps to other scenes, one bit per tile. A SceneMap never changes
+ * once read, every actor of a scene shares the same instance and a reload replaces it as a whole.
+ *
+ * Tiles collide or start encounters through the bool properties collides and encounter of their
+ * tileset. Warps are objects of type warp (class in newer Tiled) with a string property scene and
+ * optionally int properties x and y, the tile to arrive on. The object named Spawn Point is where
+ * new trainers start.
+ */
+public class SceneMap {
+
+    // Tiled keeps the flip and rotation flags of a tile in the top bits of its gid
+    private static final long GID_MASK = 0x1FFFFFFFL;
+
+    public static class Warp {
+        public final String sceneId;
+        // empty arrives on the spawn point of the other scene
+        public final Optional<TilePos> target;
+
+        public Warp(String sceneId, Optional<TilePos> target) {
+            this.sceneId = sceneId;
+            this.target = target;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final Map<String, int[]> layers;
+    private final CollisionMap collisionMap;
+    private final BitSet encounters;
+    private final Map<Integer, Warp> warps;
+    private final Optional<TilePos> spawn;
+
+    private SceneMap(int width,
+                     int height,
+                     Map<String, int[]> layers,
+                     CollisionMap collisionMap,
+                     BitSet encounters,
+                     Map<Integer, Warp> warps,
+                     Optional<TilePos> spawn) {
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+        this.collisionMap = collisionMap;
+        this.encounters = encounters;
+        this.warps = warps;
+        this.spawn = spawn;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public Set<String> layerNames() {
+        return layers.keySet();
+    }
+
+    /**
+     * @return the gid of the tile, 0 where the layer is empty or the position is outside the map
+     */
+    public int gid(String layer, int x, int y) {
+        int[] gids = layers.get(layer);
+        if (gids == null || !inside(x, y)) return 0;
+        return gids[y * width + x];
+    }
+
+    public CollisionMap collisionMap() {
+        return collisionMap;
+    }
+
+    public boolean isBlocked(TilePos tilePos) {
+        return collisionMap.isBlocked(tilePos);
+    }
+
+    public boolean hasEncounters(TilePos tilePos) {
+        return inside(tilePos.x, tilePos.y) && encounters.get(tilePos.y * width + tilePos.x);
+    }
+
+    public Optional<Warp> warpAt(TilePos tilePos) {
+        if (!inside(tilePos.x, tilePos.y)) return Optional.empty();
+        return Optional.ofNullable(warps.get(tilePos.y * width + tilePos.x));
+    }
+
+    public Optional<TilePos> spawn() {
+        return spawn;
+    }
+
+    private boolean inside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public static SceneMap fromTiledJson(Reader tiledJson) {
+        JsonObject map = JsonParser.parseReader(tiledJson).getAsJsonObject();
+        int width = map.get("width").getAsInt();
+        int height = map.get("height").getAsInt();
+        int tileWidth = map.has("tilewidth") ? map.get("tilewidth").getAsInt() : 1;
+        int tileHeight = map.has("tileheight") ? map.get("tileheight").getAsInt() : 1;
+        int tiles = width * height;
+
+        BitSet collidingGids = new BitSet();
+        BitSet encounterGids = new BitSet();
+        readTileProperties(map.getAsJsonArray("tilesets"), collidingGids, encounterGids);
+
+        Map<String, int[]> layers = new LinkedHashMap<>();
+        BitSet hasTile = new BitSet(tiles);
+        BitSet blocked = new BitSet(tiles);
+        BitSet encounters = new BitSet(tiles);
+        Map<Integer, Warp> warps = new HashMap<>();
+        Optional<TilePos> spawn = Optional.empty();
+
+        for (JsonElement layerElement : map.getAsJsonArray("layers")) {
+            JsonObject layer = layerElement.getAsJsonObject();
+            String type = layer.get("type").getAsString();
+
+            if ("tilelayer".equals(type) && layer.has("data")) {
+                JsonArray data = layer.getAsJsonArray("data");
+                int[] gids = new int[tiles];
+                for (int i = 0; i < data.size() && i < tiles; i++) {
+                    int gid = (int) (data.get(i).getAsLong() & GID_MASK);
+                    gids[i] = gid;
+                    if (gid == 0) continue;
+                    hasTile.set(i);
+                    if (collidingGids.get(gid)) blocked.set(i);
+                    if (encounterGids.get(gid)) encounters.set(i);
+                }
+                layers.put(layer.get("name").getAsString(), gids);
+            } else if ("objectgroup".equals(type) && layer.has("objects")) {
+                for (JsonElement objectElement : layer.getAsJsonArray("objects")) {
+                    JsonObject object = objectElement.getAsJsonObject();
+                    if ("Spawn Point".equals(string(object, "name"))) {
+                        spawn = Optional.of(new TilePos(
+                                (int) (object.get("x").getAsDouble() / tileWidth),
+                                (int) (object.get("y").getAsDouble() / tileHeight)
+                        ));
+                    } else if ("warp".equals(string(object, "type")) || "warp".equals(string(object, "class"))) {
+                        addWarp(object, width, height, tileWidth, tileHeight, warps);
+                    }
+                }
+            }
+        }
+
+        hasTile.flip(0, tiles);
+        blocked.or(hasTile);
+
+        return new SceneMap(
+                width,
+                height,
+                Collections.unmodifiableMap(layers),
+                new CollisionMap(width, height, blocked),
+                encounters,
+                Collections.unmodifiableMap(warps),
+                spawn
+        );
+    }
+
+    private static void readTileProperties(JsonArray tilesets, BitSet collidingGids, BitSet encounterGids) {
+        for (JsonElement tilesetElement : tilesets) {
+            JsonObject tileset = tilesetElement.getAsJsonObject();
+            // external tilesets aren't loaded, their tiles have no properties
+            if (!tileset.has("tiles")) continue;
+
+            int firstGid = tileset.get("firstgid").getAsInt();
+            for (JsonElement tileElement : tileset.getAsJsonArray("tiles")) {
+                JsonObject tile = tileElement.getAsJsonObject();
+                int gid = firstGid + tile.get("id").getAsInt();
+                Map<String, JsonElement> properties = properties(tile);
+                if (isTrue(properties.get("collides"))) collidingGids.set(gid);
+                if (isTrue(properties.get("encounter"))) encounterGids.set(gid);
+            }
+        }
+    }
+
+    // a warp covers every tile under its rectangle, a point object just the tile it is on
+    private static void addWarp(JsonObject object, int width, int height, int tileWidth, int tileHeight, Map<Integer, Warp> warps) {
+        Map<String, JsonElement> properties = properties(object);
+        if (!properties.containsKey("scene")) return;
+
+        Optional<TilePos> target = properties.containsKey("x") && properties.containsKey("y")
+                ? Optional.of(new TilePos(properties.get("x").getAsInt(), properties.get("y").getAsInt()))
+                : Optional.empty();
+        Warp warp = new Warp(properties.get("scene").getAsString(), target);
+
+        double x = object.get("x").getAsDouble();
+        double y = object.get("y").getAsDouble();
+        double objectWidth = object.has("width") ? object.get("width").getAsDouble() : 0;
+        double objectHeight = object.has("height") ? object.get("height").getAsDouble() : 0;
+        int fromX = (int) (x / tileWidth);
+        int fromY = (int) (y / tileHeight);
+        int toX = Math.max(fromX, (int) Math.ceil((x + objectWidth) / tileWidth) - 1);
+        int toY = Math.max(fromY, (int) Math.ceil((y + objectHeight) / tileHeight) - 1);
+        for (int tileY = Math.max(0, fromY); tileY <= Math.min(height - 1, toY); tileY++) {
+            for (int tileX = Math.max(0, fromX); tileX <= Math.min(width - 1, toX); tileX++) {
+                warps.put(tileY * width + tileX, warp);
+            }
+        }
+    }
+
+    private static Map<String, JsonElement> properties(JsonObject owner) {
+        if (!owner.has("properties")) return Collections.emptyMap();
+        Map<String, JsonElement> properties = new HashMap<>();
+        for (JsonElement propertyElement : owner.getAsJsonArray("properties")) {
+            JsonObject property = propertyElement.getAsJsonObject();
+            properties.put(property.get("name").getAsString(), property.get("value"));
+        }
+        return properties;
+    }
+
+    private static boolean isTrue(JsonElement value) {
+        return value != null && value.getAsBoolean();
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        return value != null && !value.isJsonNull() ? value.getAsString() : null;
+    }
+}
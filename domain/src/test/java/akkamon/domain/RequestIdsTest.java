@@ -0,0 +1,43 @@
+package akkamon.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestIdsTest {
+
+    @Test
+    void given_two_sessions_when_drawing_ids_then_ids_are_unique_and_increase_per_session() {
+        RequestIds requestIds = new RequestIds(3);
+        RequestIds.Sequence first = requestIds.newSequence();
+        RequestIds.Sequence second = requestIds.newSequence();
+
+        Set<Long> seen = new HashSet<>();
+        long lastOfFirst = 0;
+        for (int i = 0; i < 1000; i++) {
+            long id = first.next();
+            assertTrue(id > lastOfFirst);
+            lastOfFirst = id;
+            assertTrue(seen.add(id));
+            assertTrue(seen.add(second.next()));
+        }
+    }
+
+    @Test
+    void given_node_id_when_drawing_ids_then_id_carries_node_and_stays_positive() {
+        long id = new RequestIds(1023).newSequence().next();
+
+        assertTrue(id > 0);
+        assertEquals(1023, RequestIds.nodeOf(id));
+        assertEquals("1023-1-1", RequestIds.format(id));
+    }
+
+    @Test
+    void given_node_id_out_of_range_when_creating_then_throw() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestIds(1024));
+        assertThrows(IllegalArgumentException.class, () -> new RequestIds(-1));
+    }
+}
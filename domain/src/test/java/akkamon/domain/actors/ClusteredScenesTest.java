@@ -0,0 +1,157 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.SpawnProtocol;
+import akka.cluster.MemberStatus;
+import akka.cluster.typed.Cluster;
+import akkamon.domain.AkkamonMessageEngine;
+import akkamon.domain.AkkamonSession;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.actors.tasks.interactions.InteractionHandshaker;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.*;
+
+public class ClusteredScenesTest {
+
+    private ActorSystem<SpawnProtocol.Command> nodeA;
+    private ActorSystem<SpawnProtocol.Command> nodeB;
+    private final RecordingEngine engineA = new RecordingEngine();
+    private final RecordingEngine engineB = new RecordingEngine();
+    private NexusShards nexusA;
+    private NexusShards nexusB;
+
+    private static Config config(String seedNode) {
+        return ConfigFactory.parseString(
+                "akkamon.domain.cluster.enabled = on\n" +
+                "akkamon.domain.nexus.shards = 1\n" +
+                "akka.remote.artery.canonical.hostname = \"127.0.0.1\"\n" +
+                "akka.remote.artery.canonical.port = 0\n" +
+                "akka.cluster.jmx.multi-mbeans-in-same-jvm = on\n" +
+                "akka.cluster.seed-nodes = [" + (seedNode == null ? "" : "\"" + seedNode + "\"") + "]\n"
+        ).withFallback(ConfigFactory.load());
+    }
+
+    @Before
+    public void startNodes() throws InterruptedException {
+        nodeA = NexusShards.createSystem("akkamon-system", config(null));
+        nexusA = NexusShards.spawn(nodeA, engineA);
+        nodeB = NexusShards.createSystem("akkamon-system", config(Cluster.get(nodeA).selfMember().address().toString()));
+        nexusB = NexusShards.spawn(nodeB, engineB);
+
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (upMembers(nodeA) < 2 || upMembers(nodeB) < 2) {
+            assertTrue("the nodes didn't form a cluster", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    @After
+    public void stopNodes() {
+        ActorTestKit.shutdown(nodeB);
+        ActorTestKit.shutdown(nodeA);
+    }
+
+    private static long upMembers(ActorSystem<?> system) {
+        return StreamSupport.stream(Cluster.get(system).state().getMembers().spliterator(), false)
+                .filter(member -> member.status() == MemberStatus.up())
+                .count();
+    }
+
+    @Test
+    public void given_trainers_on_two_nodes_when_they_register_in_one_scene_then_both_nodes_get_its_ticks() throws InterruptedException {
+        ActorRef<AkkamonNexus.Command> shardA = nexusA.shardFor("DemoScene");
+        ActorRef<AkkamonNexus.Command> shardB = nexusB.shardFor("DemoScene");
+
+        shardA.tell(new AkkamonNexus.RequestTrainerRegistration("0-1", "DemoScene", "0-1", shardA));
+        shardB.tell(new AkkamonNexus.RequestTrainerRegistration("1-1", "DemoScene", "1-1", shardB));
+
+        assertEquals("0-1", engineA.registered.poll(20, TimeUnit.SECONDS));
+        assertEquals("1-1", engineB.registered.poll(20, TimeUnit.SECONDS));
+
+        // the scene ticks by itself and pushes every tick to both nodes
+        Set<AkkamonNexus.TrainerID> both = new HashSet<>(Arrays.asList(
+                new AkkamonNexus.TrainerID("0-1", "DemoScene"),
+                new AkkamonNexus.TrainerID("1-1", "DemoScene")
+        ));
+        AkkamonNexus.RespondHeartBeatQuery onA = nextHeartBeatWith(engineA, both);
+        AkkamonNexus.RespondHeartBeatQuery onB = nextHeartBeatWith(engineB, both);
+        assertTrue(onA.tick > 0);
+        assertTrue(onB.tick > 0);
+
+        long lastTick = onA.tick;
+        for (int i = 0; i < 5; i++) {
+            long tick = engineA.heartBeats.poll(10, TimeUnit.SECONDS).tick;
+            assertTrue("tick " + tick + " arrived after " + lastTick, tick > lastTick);
+            lastTick = tick;
+        }
+    }
+
+    private static AkkamonNexus.RespondHeartBeatQuery nextHeartBeatWith(
+            RecordingEngine engine,
+            Set<AkkamonNexus.TrainerID> trainerIDs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            AkkamonNexus.RespondHeartBeatQuery heartBeat = engine.heartBeats.poll(1, TimeUnit.SECONDS);
+            if (heartBeat != null && heartBeat.trainerMovementQueues.keySet().equals(trainerIDs)) {
+                return heartBeat;
+            }
+        }
+        fail("no heartbeat with " + trainerIDs);
+        return null;
+    }
+
+    private static class RecordingEngine implements AkkamonMessageEngine {
+        final BlockingQueue<String> registered = new LinkedBlockingQueue<>();
+        final BlockingQueue<AkkamonNexus.RespondHeartBeatQuery> heartBeats = new LinkedBlockingQueue<>();
+
+        @Override
+        public void broadCastHeartBeatToScene(AkkamonNexus.RespondHeartBeatQuery heartBeat) {
+            heartBeats.add(heartBeat);
+        }
+
+        @Override
+        public void registerTrainerSessionToSceneAndtrainerIDMaps(AkkamonNexus.TrainerID trainerID, String sessionId, ActorRef<Trainer.Command> trainer) {
+            registered.add(sessionId);
+        }
+
+        @Override
+        public void broadCastInteractionRequestToSessionWithtrainerIDs(List<AkkamonNexus.TrainerID> trainerIDs, String type, AkkamonNexus.TrainerID trainerID, String requestName, ActorRef<InteractionHandshaker.Command> handshaker) { }
+
+        @Override
+        public void transferTrainerSession(AkkamonNexus.TrainerID from, AkkamonNexus.TrainerID to, TilePos tilePos, ActorRef<Trainer.Command> previous, ActorRef<Trainer.Command> trainer) { }
+
+        @Override
+        public void removeTrainerSessionFromScene(AkkamonNexus.TrainerID trainerID, String sessionId) { }
+
+        @Override
+        public void trainerDisconnected(AkkamonSession session) { }
+
+        @Override
+        public void removeInteractionHandshaker(String requestName) { }
+
+        @Override
+        public void broadCastInteractionStart(String requestName, String interactionType, Set<AkkamonNexus.TrainerID> waitingToStartInteraction) { }
+
+        @Override
+        public void broadCastHandshakeFail(String requestName, Set<AkkamonNexus.TrainerID> waitingToStartInteraction) { }
+
+        @Override
+        public void broadCastBattleStart(AkkamonBattle.BattleCreatedResponse response) { }
+
+        @Override
+        public void removeTrainerSessionFromHeartBeat(AkkamonNexus.TrainerID trainerID, String sessionId) { }
+    }
+}
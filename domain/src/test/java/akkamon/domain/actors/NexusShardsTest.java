@@ -0,0 +1,65 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.typed.ActorRef;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class NexusShardsTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    private static List<ActorRef<AkkamonNexus.Command>> shards(int count) {
+        List<ActorRef<AkkamonNexus.Command>> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(testKit.<AkkamonNexus.Command>createTestProbe().getRef());
+        }
+        return shards;
+    }
+
+    @Test
+    public void given_a_scene_when_looking_up_its_shard_then_always_get_the_same_shard() {
+        NexusShards nexusShards = new NexusShards(shards(4), 64);
+
+        ActorRef<AkkamonNexus.Command> owner = nexusShards.shardFor("DemoScene");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(owner, nexusShards.shardFor("DemoScene"));
+        }
+    }
+
+    @Test
+    public void given_many_scenes_when_looking_up_shards_then_every_shard_owns_some() {
+        NexusShards nexusShards = new NexusShards(shards(4), 64);
+
+        Map<ActorRef<AkkamonNexus.Command>, Integer> owned = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            owned.merge(nexusShards.shardFor("scene-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(4, owned.size());
+        for (int count : owned.values()) {
+            assertTrue("unbalanced ring: " + owned.values(), count > 100);
+        }
+    }
+
+    @Test
+    public void given_an_extra_shard_when_looking_up_shards_then_scenes_only_move_to_the_new_shard() {
+        List<ActorRef<AkkamonNexus.Command>> shards = shards(5);
+        NexusShards before = new NexusShards(shards.subList(0, 4), 64);
+        NexusShards after = new NexusShards(shards, 64);
+
+        for (int i = 0; i < 1000; i++) {
+            String sceneId = "scene-" + i;
+            ActorRef<AkkamonNexus.Command> owner = after.shardFor(sceneId);
+            if (!owner.equals(shards.get(4))) {
+                assertEquals(before.shardFor(sceneId), owner);
+            }
+        }
+    }
+}
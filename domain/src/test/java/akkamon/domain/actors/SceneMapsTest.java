@@ -0,0 +1,59 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.model.world.SceneMap;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class SceneMapsTest {
+
+    private static String corridor(int wallGid) {
+        return "{"
+                + "\"width\": 2, \"height\": 1,"
+                + "\"layers\": [{\"name\": \"World\", \"type\": \"tilelayer\", \"data\": [1, " + wallGid + "]}],"
+                + "\"tilesets\": [{\"firstgid\": 1, \"tiles\": ["
+                + "  {\"id\": 1, \"properties\": [{\"name\": \"collides\", \"type\": \"bool\", \"value\": true}]}"
+                + "]}]"
+                + "}";
+    }
+
+    @Test
+    public void given_a_map_file_that_changes_then_the_live_map_follows_it() throws Exception {
+        Path directory = Files.createTempDirectory("scene-maps");
+        Path tilemap = directory.resolve("corridor.json");
+        Files.write(tilemap, corridor(2).getBytes(StandardCharsets.UTF_8));
+
+        ActorTestKit testKit = ActorTestKit.create(ConfigFactory.parseString(
+                "akkamon.domain.maps.directory = \"" + directory.toString().replace("\\", "/") + "\"\n"
+                        + "akkamon.domain.maps.scenes { Corridor = corridor.json }\n"
+                        + "akkamon.domain.maps.reload-interval = 50ms"
+        ).withFallback(ConfigFactory.load()));
+        try {
+            SceneMaps sceneMaps = SceneMaps.get(testKit.system());
+            Supplier<Optional<SceneMap>> live = sceneMaps.live("Corridor");
+            assertTrue(live.get().orElseThrow().isBlocked(new TilePos(1, 0)));
+            assertFalse(sceneMaps.live("Elsewhere").get().isPresent());
+
+            Files.write(tilemap, corridor(1).getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(tilemap, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+
+            testKit.createTestProbe().awaitAssert(Duration.ofSeconds(3), () -> {
+                assertFalse(live.get().orElseThrow().isBlocked(new TilePos(1, 0)));
+                return null;
+            });
+        } finally {
+            testKit.shutdownTestKit();
+        }
+    }
+}
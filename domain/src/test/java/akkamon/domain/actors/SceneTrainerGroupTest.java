@@ -0,0 +1,60 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.FishingOutcomes;
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SceneTrainerGroupTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    // the scene's heartbeats go to the same nexus, skip them
+    private static <T> T receive(TestProbe<AkkamonNexus.Command> nexus, Class<T> type) {
+        List<AkkamonNexus.Command> received = nexus.fishForMessage(Duration.ofSeconds(3),
+                message -> type.isInstance(message) ? FishingOutcomes.complete() : FishingOutcomes.continueAndIgnore());
+        return type.cast(received.get(received.size() - 1));
+    }
+
+    @Test
+    public void given_a_trainer_back_before_its_old_actor_stopped_then_the_new_actor_takes_its_place() {
+        TestProbe<AkkamonNexus.Command> nexus = testKit.createTestProbe(AkkamonNexus.Command.class);
+        TestProbe<Trainer.Command> house = testKit.createTestProbe(Trainer.Command.class);
+        ActorRef<SceneTrainerGroup.Command> hallway = testKit.spawn(SceneTrainerGroup.create("hallway"));
+        AkkamonNexus.TrainerID ash = new AkkamonNexus.TrainerID("ash", "hallway");
+
+        hallway.tell(new AkkamonNexus.RequestTrainerRegistration("ash", "hallway", "session", nexus.getRef()));
+        ActorRef<Trainer.Command> left = receive(nexus, AkkamonNexus.TrainerRegistered.class).trainer;
+
+        // ash went to the house and walks straight back, the hallway hasn't seen its first actor stop yet
+        hallway.tell(new AkkamonNexus.TransferTrainer(
+                new AkkamonNexus.TrainerID("ash", "house"),
+                "hallway",
+                new TilePos(1, 0),
+                new Trainer.State(Direction.NONE, new TilePos(0, 0), null, 5L),
+                house.getRef(),
+                nexus.getRef()
+        ));
+        ActorRef<Trainer.Command> returned = receive(nexus, AkkamonNexus.TrainerTransferred.class).trainer;
+        assertNotEquals(left, returned);
+
+        left.tell(new AkkamonNexus.RequestTrainerOffline(6L, ash, "session", nexus.getRef()));
+        assertEquals(left, receive(nexus, SceneTrainerGroup.TrainerOffline.class).trainer);
+
+        returned.tell(Trainer.HandOffComplete.INSTANCE);
+        hallway.tell(new AkkamonNexus.RequestTrainerOffline(7L, ash, "session", nexus.getRef()));
+        assertEquals(7L, receive(nexus, AkkamonNexus.RespondTrainerOffline.class).requestId);
+        assertEquals(returned, receive(nexus, SceneTrainerGroup.TrainerOffline.class).trainer);
+    }
+}
@@ -0,0 +1,252 @@
+package akkamon.domain.actors;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.model.world.SceneMap;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrainerTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    private static final AkkamonNexus.TrainerID ash = new AkkamonNexus.TrainerID("ash", "start");
+
+    // a 4x1 corridor with a wall at x = 2
+    private static Supplier<Optional<SceneMap>> corridor() {
+        SceneMap corridor = SceneMap.fromTiledJson(new StringReader("{"
+                + "\"width\": 4, \"height\": 1,"
+                + "\"layers\": [{\"name\": \"World\", \"type\": \"tilelayer\", \"data\": [1, 1, 2, 1]}],"
+                + "\"tilesets\": [{\"firstgid\": 1, \"tiles\": ["
+                + "  {\"id\": 1, \"properties\": [{\"name\": \"collides\", \"type\": \"bool\", \"value\": true}]}"
+                + "]}]"
+                + "}"));
+        return () -> Optional.of(corridor);
+    }
+
+    // a 2x1 corridor with a door to the house at x = 1
+    private static Supplier<Optional<SceneMap>> hallway() {
+        SceneMap hallway = SceneMap.fromTiledJson(new StringReader("{"
+                + "\"width\": 2, \"height\": 1,"
+                + "\"layers\": ["
+                + "  {\"name\": \"World\", \"type\": \"tilelayer\", \"data\": [1, 1]},"
+                + "  {\"name\": \"Objects\", \"type\": \"objectgroup\", \"objects\": ["
+                + "    {\"name\": \"door\", \"type\": \"warp\", \"x\": 1, \"y\": 0,"
+                + "     \"properties\": [{\"name\": \"scene\", \"type\": \"string\", \"value\": \"house\"}]}"
+                + "  ]}"
+                + "],"
+                + "\"tilesets\": [{\"firstgid\": 1}]"
+                + "}"));
+        return () -> Optional.of(hallway);
+    }
+
+    // a 4x1 corridor that spawns trainers at x = 3
+    private static Supplier<Optional<SceneMap>> corridorWithSpawn() {
+        SceneMap corridor = SceneMap.fromTiledJson(new StringReader("{"
+                + "\"width\": 4, \"height\": 1,"
+                + "\"layers\": ["
+                + "  {\"name\": \"World\", \"type\": \"tilelayer\", \"data\": [1, 1, 1, 1]},"
+                + "  {\"name\": \"Objects\", \"type\": \"objectgroup\", \"objects\": ["
+                + "    {\"name\": \"Spawn Point\", \"x\": 3, \"y\": 0}"
+                + "  ]}"
+                + "],"
+                + "\"tilesets\": [{\"firstgid\": 1}]"
+                + "}"));
+        return () -> Optional.of(corridor);
+    }
+
+    @Test
+    public void given_a_scene_with_a_spawn_point_when_the_client_reports_another_first_tile_then_the_spawn_point_is_used() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), corridorWithSpawn()));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(1L, ash, Direction.LEFT, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(1, 0), null));
+
+        assertEquals(new TilePos(3, 0), aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class).tilePos);
+    }
+
+    @Test
+    public void given_a_wall_ahead_when_stepping_into_it_then_the_step_is_dropped() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), corridor()));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(1L, ash, Direction.RIGHT, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(0, 0), null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(3L, ash, new TilePos(1, 0), null));
+
+        SceneMovementAggregator.MovementStep step = aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        assertEquals(new TilePos(0, 0), step.tilePos);
+        aggregator.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void given_a_client_that_skips_tiles_when_it_steps_then_the_server_position_is_used() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), corridor()));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(1L, ash, Direction.RIGHT, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(0, 0), null));
+        trainer.tell(new AkkamonNexus.RequestStartMoving(3L, ash, Direction.LEFT, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(4L, ash, new TilePos(3, 0), null));
+
+        assertEquals(new TilePos(0, 0), aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class).tilePos);
+        SceneMovementAggregator.MovementStep back = aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        assertEquals(new TilePos(1, 0), back.tilePos);
+        assertEquals(Direction.LEFT, back.direction);
+    }
+
+    @Test
+    public void given_a_first_position_inside_a_wall_then_the_trainer_does_not_move() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), corridor()));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(1L, ash, Direction.RIGHT, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(2, 0), null));
+
+        aggregator.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void given_a_warp_when_stepping_on_it_then_commands_are_held_and_forwarded_once_the_session_switched() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        TestProbe<AkkamonNexus.Command> nexus = testKit.createTestProbe(AkkamonNexus.Command.class);
+        TestProbe<Trainer.Command> next = testKit.createTestProbe(Trainer.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), hallway()));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(1L, ash, Direction.RIGHT, nexus.getRef()));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(0, 0), nexus.getRef()));
+
+        aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        aggregator.expectMessageClass(SceneMovementAggregator.TrainerLeft.class);
+        AkkamonNexus.TransferTrainer transfer = nexus.expectMessageClass(AkkamonNexus.TransferTrainer.class);
+        assertEquals("house", transfer.sceneId);
+        assertEquals(new TilePos(1, 0), transfer.state.tilePos);
+        assertEquals(2L, transfer.state.lastRequestId);
+
+        trainer.tell(new AkkamonNexus.RequestStopMoving(3L, ash, Direction.RIGHT, nexus.getRef()));
+        next.expectNoMessage(Duration.ofMillis(100));
+
+        trainer.tell(new Trainer.SessionSwitched(next.getRef()));
+        Trainer.Forwarded forwarded = next.expectMessageClass(Trainer.Forwarded.class);
+        assertEquals(3L, ((AkkamonNexus.RequestStopMoving) forwarded.command).requestId);
+        next.expectMessage(Trainer.HandOffComplete.INSTANCE);
+        next.expectTerminated(trainer);
+    }
+
+    @Test
+    public void given_a_handed_over_trainer_then_it_applies_forwarded_commands_before_those_sent_to_it() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        AkkamonNexus.TrainerID ashInside = new AkkamonNexus.TrainerID("ash", "house");
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.handedOver(
+                ashInside,
+                aggregator.getRef(),
+                Optional::empty,
+                new Trainer.State(Direction.RIGHT, new TilePos(4, 4), null, 2L)
+        ));
+
+        trainer.tell(new AkkamonNexus.RequestStartMoving(4L, ashInside, Direction.UP, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(5L, ashInside, new TilePos(4, 4), null));
+        trainer.tell(new Trainer.Forwarded(new AkkamonNexus.RequestNewTilePos(3L, ash, new TilePos(1, 0), null)));
+
+        SceneMovementAggregator.MovementStep forwardedStep = aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        assertEquals(Direction.RIGHT, forwardedStep.direction);
+        assertEquals(new TilePos(4, 4), forwardedStep.tilePos);
+        aggregator.expectNoMessage(Duration.ofMillis(100));
+
+        trainer.tell(Trainer.HandOffComplete.INSTANCE);
+        SceneMovementAggregator.MovementStep step = aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        assertEquals(Direction.UP, step.direction);
+        assertEquals(new TilePos(5, 4), step.tilePos);
+    }
+
+    @Test
+    public void given_a_movement_batch_then_the_trainer_takes_its_steps_and_ends_in_its_direction() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), Optional::empty));
+
+        trainer.tell(new AkkamonNexus.RequestMovementBatch(
+                1L, ash, new TilePos(0, 0),
+                new Direction[]{Direction.RIGHT, Direction.DOWN}, new int[]{2, 1},
+                Direction.NONE, false, null));
+        trainer.tell(new AkkamonNexus.RequestNewTilePos(2L, ash, new TilePos(2, 1), null));
+
+        assertEquals(new TilePos(0, 0), aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class).tilePos);
+        assertEquals(new TilePos(1, 0), aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class).tilePos);
+        SceneMovementAggregator.MovementStep down = aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        assertEquals(new TilePos(2, 0), down.tilePos);
+        assertEquals(Direction.DOWN, down.direction);
+        // stopped at the end of the batch, the tile after it is no step
+        aggregator.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void given_a_batch_that_leads_onto_a_warp_then_its_remaining_steps_are_handed_over() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        TestProbe<AkkamonNexus.Command> nexus = testKit.createTestProbe(AkkamonNexus.Command.class);
+        TestProbe<Trainer.Command> next = testKit.createTestProbe(Trainer.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.create(ash, aggregator.getRef(), hallway()));
+
+        trainer.tell(new AkkamonNexus.RequestMovementBatch(
+                1L, ash, new TilePos(0, 0),
+                new Direction[]{Direction.RIGHT, Direction.UP}, new int[]{2, 1},
+                Direction.NONE, false, nexus.getRef()));
+
+        aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        aggregator.expectMessageClass(SceneMovementAggregator.TrainerLeft.class);
+        AkkamonNexus.TransferTrainer transfer = nexus.expectMessageClass(AkkamonNexus.TransferTrainer.class);
+        assertEquals(1L, transfer.state.lastRequestId);
+
+        trainer.tell(new Trainer.SessionSwitched(next.getRef()));
+        AkkamonNexus.RequestMovementBatch rest =
+                (AkkamonNexus.RequestMovementBatch) next.expectMessageClass(Trainer.Forwarded.class).command;
+        assertTrue(rest.resumed);
+        assertArrayEquals(new Direction[]{null, Direction.UP}, rest.directions);
+        assertArrayEquals(new int[]{1, 1}, rest.steps);
+        assertEquals(Direction.NONE, rest.finalDirection);
+        next.expectMessage(Trainer.HandOffComplete.INSTANCE);
+    }
+
+    @Test
+    public void given_a_forwarded_step_onto_a_warp_then_the_commands_after_it_go_on_to_the_next_scene() {
+        TestProbe<SceneMovementAggregator.Command> aggregator = testKit.createTestProbe(SceneMovementAggregator.Command.class);
+        TestProbe<AkkamonNexus.Command> nexus = testKit.createTestProbe(AkkamonNexus.Command.class);
+        TestProbe<Trainer.Command> next = testKit.createTestProbe(Trainer.Command.class);
+        ActorRef<Trainer.Command> trainer = testKit.spawn(Trainer.handedOver(
+                ash,
+                aggregator.getRef(),
+                hallway(),
+                new Trainer.State(Direction.RIGHT, new TilePos(0, 0), null, 2L)
+        ));
+
+        trainer.tell(new Trainer.Forwarded(new AkkamonNexus.RequestNewTilePos(3L, ash, new TilePos(0, 0), nexus.getRef())));
+        trainer.tell(new Trainer.Forwarded(new AkkamonNexus.RequestNewTilePos(4L, ash, new TilePos(1, 0), nexus.getRef())));
+        trainer.tell(new AkkamonNexus.RequestStopMoving(5L, ash, Direction.RIGHT, nexus.getRef()));
+
+        aggregator.expectMessageClass(SceneMovementAggregator.MovementStep.class);
+        aggregator.expectMessageClass(SceneMovementAggregator.TrainerLeft.class);
+        assertEquals(3L, nexus.expectMessageClass(AkkamonNexus.TransferTrainer.class).state.lastRequestId);
+
+        trainer.tell(Trainer.HandOffComplete.INSTANCE);
+        trainer.tell(new Trainer.SessionSwitched(next.getRef()));
+        assertEquals(4L, ((AkkamonNexus.RequestNewTilePos) next.expectMessageClass(Trainer.Forwarded.class).command).requestId);
+        assertEquals(5L, ((AkkamonNexus.RequestStopMoving) next.expectMessageClass(Trainer.Forwarded.class).command).requestId);
+        next.expectMessage(Trainer.HandOffComplete.INSTANCE);
+        // the step after the warp is taken in the next scene, not in this one
+        aggregator.expectNoMessage(Duration.ofMillis(100));
+    }
+}
@@ -0,0 +1,53 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import akkamon.domain.actors.AkkamonNexus.MovementQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedMovementQueueTest {
+
+    @Test
+    void given_steps_when_draining_then_they_come_out_in_order_and_the_queue_starts_over() {
+        PackedMovementQueue queue = new PackedMovementQueue();
+        queue.add(Direction.UP);
+        queue.add(Direction.RIGHT);
+        queue.add(Direction.DOWN);
+        queue.add(Direction.LEFT);
+
+        MovementQueue drained = queue.drain();
+
+        assertEquals(4, drained.size);
+        assertEquals(Arrays.asList(Direction.UP, Direction.RIGHT, Direction.DOWN, Direction.LEFT), drained.directions());
+        assertTrue(queue.isEmpty());
+        assertSame(MovementQueue.IDLE, queue.drain());
+    }
+
+    @Test
+    void given_no_steps_when_draining_then_the_trainer_reads_as_idle() {
+        PackedMovementQueue queue = new PackedMovementQueue();
+        queue.add(Direction.NONE);
+
+        MovementQueue drained = queue.drain();
+
+        assertEquals(0, drained.size);
+        assertEquals(Collections.singletonList(Direction.NONE), drained.directions());
+    }
+
+    @Test
+    void given_a_full_queue_when_adding_then_the_step_is_refused() {
+        PackedMovementQueue queue = new PackedMovementQueue();
+        for (int i = 0; i < MovementQueue.CAPACITY; i++) {
+            assertTrue(queue.add(Direction.values()[i % 4]));
+        }
+
+        assertFalse(queue.add(Direction.UP));
+
+        MovementQueue drained = queue.drain();
+        assertEquals(MovementQueue.CAPACITY, drained.size);
+        assertEquals(Direction.RIGHT, drained.get(MovementQueue.CAPACITY - 1));
+    }
+}
@@ -0,0 +1,139 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akkamon.domain.actors.AkkamonNexus;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SceneMovementAggregatorTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    private static final AkkamonNexus.TrainerID ash = new AkkamonNexus.TrainerID("ash", "start");
+    private static final AkkamonNexus.TrainerID misty = new AkkamonNexus.TrainerID("misty", "start");
+
+    @Test
+    public void given_trainers_that_stepped_when_a_heartbeat_is_requested_then_reply_with_their_steps() {
+        TestProbe<AkkamonNexus.Command> probe = testKit.createTestProbe(AkkamonNexus.Command.class);
+        ActorRef<SceneMovementAggregator.Command> aggregator = testKit.spawn(SceneMovementAggregator.create("start", 0));
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash));
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(misty));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.UP, new TilePos(5, 5)));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.LEFT, new TilePos(5, 5)));
+        aggregator.tell(new AkkamonNexus.RequestHeartBeat(1L, probe.getRef()));
+
+        AkkamonNexus.RespondHeartBeatQuery response = probe.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertEquals("start", response.sceneId);
+        assertEquals(Arrays.asList(Direction.UP, Direction.LEFT),
+                Arrays.asList(((AkkamonNexus.MovementQueue) response.trainerMovementQueues.get(ash)).directions().toArray()));
+        assertEquals(Collections.singletonList(Direction.NONE),
+                Arrays.asList(((AkkamonNexus.MovementQueue) response.trainerMovementQueues.get(misty)).directions().toArray()));
+    }
+
+    @Test
+    public void given_a_heartbeat_was_sent_when_the_next_heartbeat_is_requested_then_steps_are_not_repeated() {
+        TestProbe<AkkamonNexus.Command> probe = testKit.createTestProbe(AkkamonNexus.Command.class);
+        ActorRef<SceneMovementAggregator.Command> aggregator = testKit.spawn(SceneMovementAggregator.create("start", 0));
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.DOWN, new TilePos(5, 5)));
+        aggregator.tell(new AkkamonNexus.RequestHeartBeat(1L, probe.getRef()));
+        probe.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+
+        aggregator.tell(new AkkamonNexus.RequestHeartBeat(2L, probe.getRef()));
+        AkkamonNexus.RespondHeartBeatQuery response = probe.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertEquals(Collections.singletonList(Direction.NONE),
+                Arrays.asList(((AkkamonNexus.MovementQueue) response.trainerMovementQueues.get(ash)).directions().toArray()));
+    }
+
+    @Test
+    public void given_a_trainer_left_when_a_heartbeat_is_requested_then_it_is_not_in_the_snapshot() {
+        TestProbe<AkkamonNexus.Command> probe = testKit.createTestProbe(AkkamonNexus.Command.class);
+        ActorRef<SceneMovementAggregator.Command> aggregator = testKit.spawn(SceneMovementAggregator.create("start", 0));
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash));
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(misty));
+        aggregator.tell(new SceneMovementAggregator.TrainerLeft(misty));
+        aggregator.tell(new AkkamonNexus.RequestHeartBeat(1L, probe.getRef()));
+
+        AkkamonNexus.RespondHeartBeatQuery response = probe.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertEquals(Collections.singleton(ash), response.trainerMovementQueues.keySet());
+    }
+
+    @Test
+    public void given_an_interest_radius_when_a_heartbeat_is_requested_then_trainers_only_see_trainers_nearby() {
+        TestProbe<AkkamonNexus.Command> probe = testKit.createTestProbe(AkkamonNexus.Command.class);
+        ActorRef<SceneMovementAggregator.Command> aggregator = testKit.spawn(SceneMovementAggregator.create("start", 4));
+        AkkamonNexus.TrainerID brock = new AkkamonNexus.TrainerID("brock", "start");
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash));
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(misty));
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(brock));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.RIGHT, new TilePos(0, 0)));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(misty, Direction.LEFT, new TilePos(5, 0)));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(brock, Direction.DOWN, new TilePos(20, 20)));
+        aggregator.tell(new AkkamonNexus.RequestHeartBeat(1L, probe.getRef()));
+
+        AkkamonNexus.RespondHeartBeatQuery response = probe.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertEquals(Collections.singleton(misty), response.trainerInterests.get(ash));
+        assertEquals(Collections.singleton(ash), response.trainerInterests.get(misty));
+        assertEquals(Collections.emptySet(), response.trainerInterests.get(brock));
+        assertEquals(new TilePos(20, 20), response.trainerTilePositions.get(brock));
+    }
+
+    @Test
+    public void given_a_ticking_scene_when_ticks_pass_then_every_subscriber_gets_each_tick_once() {
+        TestProbe<AkkamonNexus.Command> nodeA = testKit.createTestProbe(AkkamonNexus.Command.class);
+        TestProbe<AkkamonNexus.Command> nodeB = testKit.createTestProbe(AkkamonNexus.Command.class);
+        ActorRef<SceneMovementAggregator.Command> aggregator =
+                testKit.spawn(SceneMovementAggregator.create("start", 0, Duration.ofMillis(50)));
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash, nodeA.getRef()));
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(misty, nodeB.getRef()));
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.UP, new TilePos(5, 5)));
+
+        AkkamonNexus.RespondHeartBeatQuery first = nodeA.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertEquals(first.tick, nodeB.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class).tick);
+        assertEquals(50, first.tickIntervalMillis);
+        assertEquals(2, first.trainerMovementQueues.size());
+
+        AkkamonNexus.RespondHeartBeatQuery second = nodeA.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class);
+        assertTrue(second.tick > first.tick);
+        assertEquals(Collections.singletonList(Direction.NONE),
+                Arrays.asList(((AkkamonNexus.MovementQueue) second.trainerMovementQueues.get(ash)).directions().toArray()));
+    }
+
+    @Test
+    public void given_an_idle_scene_when_a_trainer_steps_then_it_backs_off_and_wakes_up_again() {
+        TestProbe<AkkamonNexus.Command> node = testKit.createTestProbe(AkkamonNexus.Command.class);
+        SceneMovementAggregator.TickRates tickRates = new SceneMovementAggregator.TickRates(
+                Duration.ofMillis(50), Duration.ofMillis(400), 2, Duration.ofMillis(20), 8);
+        ActorRef<SceneMovementAggregator.Command> aggregator =
+                testKit.spawn(SceneMovementAggregator.create("start", 0, tickRates));
+
+        aggregator.tell(new SceneMovementAggregator.TrainerJoined(ash, node.getRef()));
+
+        assertEquals(50, node.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class).tickIntervalMillis);
+        assertEquals(50, node.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class).tickIntervalMillis);
+        assertEquals(400, node.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class, Duration.ofSeconds(1)).tickIntervalMillis);
+
+        aggregator.tell(new SceneMovementAggregator.MovementStep(ash, Direction.UP, new TilePos(5, 5)));
+
+        AkkamonNexus.RespondHeartBeatQuery awake =
+                node.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class, Duration.ofMillis(300));
+        assertEquals(50, awake.tickIntervalMillis);
+        assertEquals(Collections.singletonList(Direction.UP),
+                Arrays.asList(((AkkamonNexus.MovementQueue) awake.trainerMovementQueues.get(ash)).directions().toArray()));
+    }
+}
@@ -0,0 +1,52 @@
+package akkamon.domain.actors.tasks.heartbeat;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickClockTest {
+
+    @Test
+    void given_ticks_on_time_when_advancing_then_ticks_are_numbered_in_order() {
+        TickClock clock = new TickClock(100, 0);
+
+        assertEquals(1, clock.advance(100));
+        assertEquals(2, clock.advance(205));
+        assertEquals(5, clock.lastLagNanos());
+        assertEquals(0, clock.mergedTicks());
+    }
+
+    @Test
+    void given_a_scene_fell_behind_when_advancing_then_missed_ticks_are_merged_into_one() {
+        TickClock clock = new TickClock(100, 0);
+        clock.advance(100);
+
+        assertEquals(4, clock.advance(430));
+        assertEquals(2, clock.mergedTicks());
+        assertEquals(30, clock.maxLagNanos());
+    }
+
+    @Test
+    void given_a_tick_already_ran_when_a_queued_timer_message_arrives_then_it_is_dropped() {
+        TickClock clock = new TickClock(100, 0);
+        clock.advance(430);
+
+        assertEquals(-1, clock.advance(440));
+        assertEquals(1, clock.ticks());
+        assertEquals(5, clock.advance(500));
+    }
+
+    @Test
+    void given_a_new_interval_when_retiming_then_numbering_carries_on_from_now() {
+        TickClock clock = new TickClock(100, 0);
+        clock.advance(100);
+        clock.advance(200);
+        clock.advance(300);
+
+        clock.retime(1000, 350);
+
+        assertEquals(-1, clock.advance(900));
+        assertEquals(4, clock.advance(1350));
+        assertEquals(0, clock.mergedTicks());
+    }
+}
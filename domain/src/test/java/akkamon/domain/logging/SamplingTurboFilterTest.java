@@ -0,0 +1,63 @@
+package akkamon.domain.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplingTurboFilterTest {
+
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void createLogger() {
+        LoggerContext context = new LoggerContext();
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setOneIn(100);
+        filter.start();
+        context.addTurboFilter(filter);
+
+        appender = new ListAppender<>();
+        appender.setContext(context);
+        appender.start();
+        logger = context.getLogger("akkamon");
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+    }
+
+    @Test
+    void given_sampled_events_when_logging_then_write_the_first_and_every_hundredth() {
+        for (int i = 0; i < 250; i++) {
+            logger.warn(LogMarkers.SAMPLED, "Dropping step {}", i);
+        }
+
+        assertEquals(3, appender.list.size());
+        assertEquals("Dropping step 0", appender.list.get(0).getFormattedMessage());
+        assertEquals("Dropping step 100", appender.list.get(1).getFormattedMessage());
+    }
+
+    @Test
+    void given_events_without_the_marker_when_logging_then_write_all_of_them() {
+        for (int i = 0; i < 5; i++) {
+            logger.warn("Trainer {} went offline", i);
+        }
+
+        assertEquals(5, appender.list.size());
+    }
+
+    @Test
+    void given_a_disabled_level_when_logging_sampled_events_then_they_dont_use_up_the_sample() {
+        for (int i = 0; i < 50; i++) {
+            logger.debug(LogMarkers.SAMPLED, "Dropping step {}", i);
+        }
+        logger.info(LogMarkers.SAMPLED, "Dropping step {}", 50);
+
+        assertEquals(1, appender.list.size());
+    }
+}
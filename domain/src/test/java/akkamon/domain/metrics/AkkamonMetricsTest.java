@@ -0,0 +1,84 @@
+package akkamon.domain.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AkkamonMetricsTest {
+
+    @Test
+    void given_counters_and_gauges_when_scraping_then_write_them_in_the_prometheus_text_format() {
+        AkkamonMetrics metrics = new AkkamonMetrics();
+        metrics.counter("akkamon_inbound_events_total", "Events received", "type", "START_MOVING").add(3);
+        metrics.counter("akkamon_inbound_events_total", "Events received", "type", "HEART_BEAT").increment();
+        metrics.gauge("akkamon_scene_trainers", "Trainers in a scene", () -> 7, "scene", "Demo\"Scene");
+
+        assertEquals(
+                "# HELP akkamon_inbound_events_total Events received\n" +
+                "# TYPE akkamon_inbound_events_total counter\n" +
+                "akkamon_inbound_events_total{type=\"HEART_BEAT\"} 1\n" +
+                "akkamon_inbound_events_total{type=\"START_MOVING\"} 3\n" +
+                "# HELP akkamon_scene_trainers Trainers in a scene\n" +
+                "# TYPE akkamon_scene_trainers gauge\n" +
+                "akkamon_scene_trainers{scene=\"Demo\\\"Scene\"} 7\n",
+                metrics.scrape()
+        );
+    }
+
+    @Test
+    void given_a_removed_gauge_when_scraping_then_leave_it_out() {
+        AkkamonMetrics metrics = new AkkamonMetrics();
+        metrics.gauge("akkamon_scene_trainers", "Trainers in a scene", () -> 7, "scene", "DemoScene");
+        metrics.removeGauge("akkamon_scene_trainers", "scene", "DemoScene");
+
+        assertFalse(metrics.scrape().contains("scene=\"DemoScene\""));
+    }
+
+    @Test
+    void given_a_name_in_use_when_registering_another_type_under_it_then_refuse() {
+        AkkamonMetrics metrics = new AkkamonMetrics();
+        metrics.counter("akkamon_ticks", "Ticks");
+
+        assertThrows(IllegalArgumentException.class, () -> metrics.histogram("akkamon_ticks", "Ticks"));
+    }
+
+    @Test
+    void given_recorded_latencies_when_scraping_then_quantiles_cover_the_interval_and_count_the_lifetime() {
+        AkkamonMetrics metrics = new AkkamonMetrics();
+        LatencyHistogram histogram = metrics.histogram("akkamon_tick_duration_seconds", "Tick duration");
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        String first = metrics.scrape();
+        assertTrue(first.contains("# TYPE akkamon_tick_duration_seconds summary\n"), first);
+        assertTrue(first.contains("akkamon_tick_duration_seconds{quantile=\"0.5\"} 0.05"), first);
+        assertTrue(first.contains("akkamon_tick_duration_seconds{quantile=\"1.0\"} 0.1"), first);
+        assertTrue(first.contains("akkamon_tick_duration_seconds_count 100\n"), first);
+
+        histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        String second = metrics.scrape();
+        assertTrue(second.contains("akkamon_tick_duration_seconds{quantile=\"1.0\"} 0.001"), second);
+        assertTrue(second.contains("akkamon_tick_duration_seconds_count 101\n"), second);
+    }
+
+    @Test
+    void given_messages_in_mailboxes_of_a_kind_when_scraping_then_report_their_sum_and_the_deepest() {
+        AkkamonMetrics metrics = new AkkamonMetrics();
+        MailboxDepth trainers = metrics.mailbox("trainer");
+        // one trainer gets three messages and handles one, another gets a single message
+        trainers.enqueued(1);
+        trainers.enqueued(2);
+        trainers.enqueued(3);
+        trainers.dequeued();
+        trainers.enqueued(1);
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("akkamon_mailbox_messages{actor=\"trainer\"} 3\n"), scrape);
+        assertTrue(scrape.contains("akkamon_mailbox_max_depth{actor=\"trainer\"} 3\n"), scrape);
+
+        assertTrue(metrics.scrape().contains("akkamon_mailbox_max_depth{actor=\"trainer\"} 0\n"));
+    }
+}
@@ -0,0 +1,133 @@
+package akkamon.domain.metrics;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.javadsl.Adapter;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.dispatch.ControlMessage;
+import akka.dispatch.Envelope;
+import akkamon.domain.actors.ActorProps;
+import akkamon.domain.actors.AkkamonNexus;
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.SceneMovementAggregator;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedMailboxTest {
+
+    private enum Tick implements ControlMessage {
+        INSTANCE
+    }
+
+    private static ActorTestKit testKit;
+    private static ActorSystem system;
+
+    @BeforeAll
+    static void startSystem() {
+        testKit = ActorTestKit.create();
+        system = Adapter.toClassic(testKit.system());
+    }
+
+    @AfterAll
+    static void stopSystem() {
+        testKit.shutdownTestKit();
+    }
+
+    private static Envelope envelope(Object message) {
+        return Envelope.apply(message, ActorRef.noSender(), system);
+    }
+
+    @Test
+    void given_a_control_aware_mailbox_when_a_control_message_arrives_then_it_goes_ahead_of_the_steps() {
+        MailboxDepth depth = new MailboxDepth();
+        InstrumentedMailbox.InstrumentedQueue queue = new InstrumentedMailbox.InstrumentedQueue(depth, 0, true, null);
+
+        queue.enqueue(null, envelope("step-1"));
+        queue.enqueue(null, envelope("step-2"));
+        queue.enqueue(null, envelope(Tick.INSTANCE));
+
+        assertEquals(3, queue.numberOfMessages());
+        assertEquals(Tick.INSTANCE, queue.dequeue().message());
+        assertEquals("step-1", queue.dequeue().message());
+        assertEquals("step-2", queue.dequeue().message());
+        assertNull(queue.dequeue());
+        assertEquals(0, depth.queued());
+    }
+
+    @Test
+    void given_a_full_bounded_mailbox_when_enqueueing_then_drop_all_but_control_messages() {
+        MailboxDepth depth = new MailboxDepth();
+        InstrumentedMailbox.InstrumentedQueue queue = new InstrumentedMailbox.InstrumentedQueue(depth, 2, true, null);
+
+        queue.enqueue(null, envelope("step-1"));
+        queue.enqueue(null, envelope("step-2"));
+        queue.enqueue(null, envelope("step-3"));
+        queue.enqueue(null, envelope(Tick.INSTANCE));
+
+        assertEquals(3, queue.numberOfMessages());
+        assertEquals(1, depth.dropped());
+        assertEquals(Tick.INSTANCE, queue.dequeue().message());
+        assertEquals("step-1", queue.dequeue().message());
+        assertEquals("step-2", queue.dequeue().message());
+        assertFalse(queue.hasMessages());
+    }
+
+    @Test
+    void given_a_busy_scene_with_a_full_bounded_mailbox_when_it_ticks_then_its_ticks_are_queued_not_dropped() throws InterruptedException {
+        // the scene shares a single thread with an actor that can hold it
+        ActorTestKit bounded = ActorTestKit.create(ConfigFactory.parseString(""
+                + "akkamon.domain.mailboxes.aggregator.capacity = 1\n"
+                + "akkamon.domain.actors.aggregator.dispatcher = single-thread\n"
+                + "single-thread { type = Dispatcher, executor = thread-pool-executor, "
+                + "thread-pool-executor.fixed-pool-size = 1, throughput = 1 }")
+                .withFallback(ConfigFactory.load()));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            TestProbe<AkkamonNexus.Command> nexus = bounded.createTestProbe(AkkamonNexus.Command.class);
+            akka.actor.typed.ActorRef<SceneMovementAggregator.Command> scene = bounded.spawn(
+                    SceneMovementAggregator.create("busy", 0, Duration.ofMillis(20)),
+                    "busy",
+                    ActorProps.of(bounded.system(), "aggregator"));
+            akka.actor.typed.ActorRef<CountDownLatch> holder = bounded.spawn(
+                    Behaviors.receiveMessage(latch -> {
+                        holding.countDown();
+                        latch.await();
+                        return Behaviors.same();
+                    }),
+                    "holder",
+                    DispatcherSelector.fromConfig("single-thread"));
+            AkkamonNexus.TrainerID ash = new AkkamonNexus.TrainerID("ash", "busy");
+            scene.tell(new SceneMovementAggregator.TrainerJoined(ash, nexus.getRef()));
+            nexus.expectMessageClass(AkkamonNexus.RespondHeartBeatQuery.class, Duration.ofSeconds(3));
+
+            holder.tell(release);
+            assertTrue(holding.await(3, TimeUnit.SECONDS));
+            for (int step = 0; step < 3; step++) {
+                scene.tell(new SceneMovementAggregator.MovementStep(ash, Direction.UP, new TilePos(0, 0)));
+            }
+            MailboxDepth depth = AkkamonMetrics.get(bounded.system()).mailbox("aggregator");
+            long dropped = depth.dropped();
+            assertTrue(dropped > 0);
+
+            Thread.sleep(200);
+            assertEquals(dropped, depth.dropped());
+            assertTrue(depth.queued() > 1);
+        } finally {
+            release.countDown();
+            bounded.shutdownTestKit();
+        }
+    }
+}
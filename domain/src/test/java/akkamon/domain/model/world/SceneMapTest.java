@@ -0,0 +1,93 @@
+package akkamon.domain.model.world;
+
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneMapTest {
+
+    // 3x2 map of 32px tiles, tile 2 of the tileset collides, tile 4 has encounters,
+    // the ground layer has a hole at (2, 1)
+    private static final String TILEMAP = "{"
+            + "\"width\": 3, \"height\": 2, \"tilewidth\": 32, \"tileheight\": 32,"
+            + "\"layers\": ["
+            + "  {\"name\": \"Below Player\", \"type\": \"tilelayer\", \"data\": [1, 1, 4, 1, 1, 0]},"
+            + "  {\"name\": \"World\", \"type\": \"tilelayer\", \"data\": [0, 3, 0, 0, 0, 0]},"
+            + "  {\"name\": \"Objects\", \"type\": \"objectgroup\", \"objects\": ["
+            + "    {\"name\": \"Spawn Point\", \"type\": \"\", \"x\": 16.5, \"y\": 40},"
+            + "    {\"name\": \"door\", \"type\": \"warp\", \"x\": 32, \"y\": 32, \"width\": 32, \"height\": 32,"
+            + "     \"properties\": [{\"name\": \"scene\", \"type\": \"string\", \"value\": \"House\"},"
+            + "                      {\"name\": \"x\", \"type\": \"int\", \"value\": 4},"
+            + "                      {\"name\": \"y\", \"type\": \"int\", \"value\": 7}]}"
+            + "  ]}"
+            + "],"
+            + "\"tilesets\": [{\"firstgid\": 1, \"tiles\": ["
+            + "  {\"id\": 0, \"properties\": [{\"name\": \"collides\", \"type\": \"bool\", \"value\": false}]},"
+            + "  {\"id\": 2, \"properties\": [{\"name\": \"collides\", \"type\": \"bool\", \"value\": true}]},"
+            + "  {\"id\": 3, \"properties\": [{\"name\": \"encounter\", \"type\": \"bool\", \"value\": true}]}"
+            + "]}]"
+            + "}";
+
+    private static SceneMap read(String tilemap) {
+        return SceneMap.fromTiledJson(new StringReader(tilemap));
+    }
+
+    @Test
+    void given_a_tiled_map_when_loading_then_colliding_tiles_and_holes_block() {
+        SceneMap sceneMap = read(TILEMAP);
+
+        assertEquals(3, sceneMap.width());
+        assertEquals(2, sceneMap.height());
+        assertFalse(sceneMap.isBlocked(new TilePos(0, 0)));
+        assertTrue(sceneMap.isBlocked(new TilePos(1, 0)));
+        assertFalse(sceneMap.isBlocked(new TilePos(1, 1)));
+        assertTrue(sceneMap.isBlocked(new TilePos(2, 1)));
+    }
+
+    @Test
+    void given_a_tile_outside_the_map_then_it_blocks() {
+        CollisionMap collisionMap = read(TILEMAP).collisionMap();
+
+        assertTrue(collisionMap.isBlocked(-1, 0));
+        assertTrue(collisionMap.isBlocked(0, 2));
+        assertTrue(collisionMap.isBlocked(3, 0));
+    }
+
+    @Test
+    void given_flipped_tiles_when_loading_then_the_flags_are_ignored() {
+        SceneMap sceneMap = read(TILEMAP.replace("[0, 3, 0, 0, 0, 0]", "[0, 0, 0, 0, " + (0x80000000L | 3) + ", 0]"));
+
+        assertFalse(sceneMap.isBlocked(new TilePos(1, 0)));
+        assertTrue(sceneMap.isBlocked(new TilePos(1, 1)));
+        assertEquals(3, sceneMap.gid("World", 1, 1));
+    }
+
+    @Test
+    void given_a_tiled_map_when_loading_then_layers_keep_their_gids() {
+        SceneMap sceneMap = read(TILEMAP);
+
+        assertEquals(4, sceneMap.gid("Below Player", 2, 0));
+        assertEquals(0, sceneMap.gid("Below Player", 2, 1));
+        assertEquals(0, sceneMap.gid("Above Player", 0, 0));
+        assertFalse(sceneMap.layerNames().contains("Objects"));
+    }
+
+    @Test
+    void given_encounter_tiles_and_objects_when_loading_then_encounters_warps_and_spawn_are_found() {
+        SceneMap sceneMap = read(TILEMAP);
+
+        assertTrue(sceneMap.hasEncounters(new TilePos(2, 0)));
+        assertFalse(sceneMap.hasEncounters(new TilePos(0, 0)));
+
+        SceneMap.Warp warp = sceneMap.warpAt(new TilePos(1, 1)).orElseThrow();
+        assertEquals("House", warp.sceneId);
+        assertEquals(Optional.of(new TilePos(4, 7)), warp.target);
+        assertTrue(sceneMap.warpAt(new TilePos(0, 1)).isEmpty());
+
+        assertEquals(Optional.of(new TilePos(0, 1)), sceneMap.spawn());
+    }
+}
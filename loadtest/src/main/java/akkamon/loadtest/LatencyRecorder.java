@@ -0,0 +1,53 @@
+package akkamon.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts latencies in one millisecond buckets up to a minute, anything slower lands in the last bucket.
+ * That is precise enough for heartbeats, which are tens of milliseconds apart, and takes constant memory
+ * however long a soak runs.
+ */
+public class LatencyRecorder {
+
+    private static final int BUCKETS = 60_001;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long maxMillis;
+
+    public synchronized void record(long nanos) {
+        long millis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(nanos));
+        counts[(int) Math.min(BUCKETS - 1, millis)]++;
+        count++;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    /**
+     * @return the latency in milliseconds that the given fraction of the recorded ones stay under, 0 when empty
+     */
+    public synchronized long percentile(double fraction) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int millis = 0; millis < BUCKETS; millis++) {
+            seen += counts[millis];
+            if (seen >= rank) return millis;
+        }
+        return BUCKETS - 1;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long maxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        maxMillis = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package akkamon.loadtest;
+
+/**
+ * What the load test saw in one reporting interval, or over the whole run for the final report.
+ * Written out as json with --json.
+ */
+public class LoadReport {
+
+    public long elapsedSeconds;
+    public long intervalSeconds;
+
+    public int trainersConnected;
+    public long registrations;
+    public long transfers;
+    public long connectFailures;
+    public long unexpectedCloses;
+    public long sendFailures;
+
+    public long messagesSent;
+    public long messagesReceived;
+
+    public long stepsSent;
+    public long stepsEchoed;
+    public long stepsDropped;
+    public long echoP50Millis;
+    public long echoP99Millis;
+    public long echoMaxMillis;
+
+    public long heartBeats;
+    public long heartBeatGaps;
+
+    public long handshakesRequested;
+    public long handshakesStarted;
+    public long handshakesTimedOut;
+    public long handshakeP50Millis;
+    public long handshakeP99Millis;
+    public long battles;
+
+    // -1 when the server's JVM can't be read
+    public double serverCpuPercent = -1;
+    public long serverHeapUsedMegabytes = -1;
+    public long serverHeapMaxMegabytes = -1;
+    public int serverThreads = -1;
+
+    // the whole run of a --max-p99 search only: the most trainers an interval kept within it, -1 otherwise
+    public int trainersHeld = -1;
+
+    public String line() {
+        return String.format(
+                "[%5ds] trainers %d | steps %d sent, %d echoed, %d dropped | heartbeat p50 %dms p99 %dms max %dms, %d missed"
+                        + " | handshakes %d/%d, %d timed out, p99 %dms | closes %d, send failures %d | server cpu %s heap %s threads %s",
+                elapsedSeconds,
+                trainersConnected,
+                stepsSent,
+                stepsEchoed,
+                stepsDropped,
+                echoP50Millis,
+                echoP99Millis,
+                echoMaxMillis,
+                heartBeatGaps,
+                handshakesStarted,
+                handshakesRequested,
+                handshakesTimedOut,
+                handshakeP99Millis,
+                unexpectedCloses,
+                sendFailures,
+                serverCpuPercent < 0 ? "?" : String.format("%.0f%%", serverCpuPercent),
+                serverHeapUsedMegabytes < 0 ? "?" : serverHeapUsedMegabytes + "/" + serverHeapMaxMegabytes + "MB",
+                serverThreads < 0 ? "?" : String.valueOf(serverThreads)
+        );
+    }
+}
@@ -0,0 +1,55 @@
+package akkamon.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters every virtual trainer adds to. Counters only grow, reports take the difference between two
+ * of their readings; the latency recorders are cleared after every report and keep a copy for the whole run.
+ */
+public class LoadStats {
+
+    public final AtomicInteger connected = new AtomicInteger();
+    public final LongAdder connectFailures = new LongAdder();
+    public final LongAdder unexpectedCloses = new LongAdder();
+    public final LongAdder sendFailures = new LongAdder();
+
+    public final LongAdder registrations = new LongAdder();
+    public final LongAdder transfers = new LongAdder();
+
+    public final LongAdder messagesSent = new LongAdder();
+    public final LongAdder messagesReceived = new LongAdder();
+
+    public final LongAdder stepsSent = new LongAdder();
+    public final LongAdder stepsEchoed = new LongAdder();
+    // steps no heartbeat showed before the echo timeout
+    public final LongAdder stepsDropped = new LongAdder();
+
+    public final LongAdder heartBeats = new LongAdder();
+    // heartbeats a session never received, from the gaps in their sequence numbers
+    public final LongAdder heartBeatGaps = new LongAdder();
+
+    public final LongAdder handshakesRequested = new LongAdder();
+    public final LongAdder handshakesStarted = new LongAdder();
+    public final LongAdder handshakesTimedOut = new LongAdder();
+    public final LongAdder battles = new LongAdder();
+
+    // from sending a step until the first heartbeat that carries it
+    public final LatencyRecorder echoLatency = new LatencyRecorder();
+    public final LatencyRecorder totalEchoLatency = new LatencyRecorder();
+    // from sending an interaction request until the server starts the interaction
+    public final LatencyRecorder handshakeLatency = new LatencyRecorder();
+    public final LatencyRecorder totalHandshakeLatency = new LatencyRecorder();
+
+    public void echoed(long latencyNanos) {
+        stepsEchoed.increment();
+        echoLatency.record(latencyNanos);
+        totalEchoLatency.record(latencyNanos);
+    }
+
+    public void handshakeStarted(long latencyNanos) {
+        handshakesStarted.increment();
+        handshakeLatency.record(latencyNanos);
+        totalHandshakeLatency.record(latencyNanos);
+    }
+}
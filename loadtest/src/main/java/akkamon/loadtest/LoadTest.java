@@ -0,0 +1,365 @@
+package akkamon.loadtest;
+
+import akkamon.api.App;
+import akkamon.domain.model.world.SceneMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.typesafe.config.ConfigFactory;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a server under the load of many players and reports how it holds up: how long steps take to
+ * show up in heartbeats, what got lost on the way and what the server's JVM spends on it.
+ *
+ * Without --url it starts the server in this JVM, so gradle :loadtest:loadTest --args="--trainers 2000 --duration 10m"
+ * is a complete soak test. See LoadTestSettings for the options.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromArgs(args);
+        List<LoadReport> reports = new LoadTest(settings).run();
+        if (settings.json != null) {
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            try (Writer writer = Files.newBufferedWriter(Paths.get(settings.json), StandardCharsets.UTF_8)) {
+                gson.toJson(reports, writer);
+            }
+            System.out.println("Wrote the report to " + settings.json);
+        }
+        // the actor system of an embedded server doesn't stop with Jetty
+        System.exit(0);
+    }
+
+    private final LoadTestSettings settings;
+    private final LoadStats stats = new LoadStats();
+    private final StepEchoes echoes = new StepEchoes(stats);
+    private final Map<String, SceneMap> maps = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Random random = new Random();
+    // the trainer ids of every registered virtual trainer, the observer excluded
+    private final Map<VirtualTrainer, JsonObject> trainers = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+    private volatile VirtualTrainer observer;
+    private volatile String observedScene;
+
+    private WebSocketClient client;
+    private ServerStats serverStats;
+    private long startNanos;
+
+    public LoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        this.scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "virtual-trainers");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    public List<LoadReport> run() throws Exception {
+        readMaps();
+
+        Server server = null;
+        if (settings.embedded()) {
+            if (settings.virtualThreads != null) {
+                System.setProperty("akkamon.api.server.virtual-threads", settings.virtualThreads.toString());
+                ConfigFactory.invalidateCaches();
+            }
+            server = App.start(settings.port);
+            serverStats = ServerStats.local();
+        } else if (settings.jmx != null) {
+            serverStats = ServerStats.remote(settings.jmx);
+        }
+
+        HttpClient http = new HttpClient();
+        http.setMaxConnectionsPerDestination(settings.trainers + 1);
+        http.setMaxRequestsQueuedPerDestination(settings.trainers + 1);
+        client = new WebSocketClient(http);
+        // a heartbeat carries the whole scene, it grows with the number of trainers
+        client.setMaxTextMessageSize(64 * 1024 * 1024);
+        client.setIdleTimeout(Duration.ofMinutes(5));
+        client.start();
+
+        List<LoadReport> reports = new ArrayList<>();
+        // the most trainers an interval kept within --max-p99
+        int held = 0;
+        try {
+            startNanos = System.nanoTime();
+            startObserver();
+
+            Totals previous = new Totals();
+            long reportNanos = settings.reportInterval.toNanos();
+            long nextReport = startNanos + reportNanos;
+            long end = startNanos + settings.duration.toNanos();
+            long pauseNanos = TimeUnit.SECONDS.toNanos(1) / settings.rampUp;
+            int started = 0;
+
+            scheduler.scheduleAtFixedRate(
+                    () -> echoes.expire(System.nanoTime(), settings.echoTimeout.toNanos()),
+                    1, 1, TimeUnit.SECONDS
+            );
+
+            System.out.println("Connecting " + settings.trainers + " trainers to " + settings.target()
+                    + " at " + settings.rampUp + " a second.");
+            while (System.nanoTime() < end) {
+                long now = System.nanoTime();
+                if (started < settings.trainers) {
+                    connect(new VirtualTrainer(this, false));
+                    started++;
+                }
+                if (now >= nextReport) {
+                    Totals current = new Totals();
+                    LoadReport report = report(current, previous, reportNanos, stats.echoLatency, stats.handshakeLatency);
+                    System.out.println(report.line());
+                    reports.add(report);
+                    previous = current;
+                    nextReport += reportNanos;
+                    if (settings.maxP99 != null) {
+                        if (report.echoP99Millis > settings.maxP99.toMillis() || report.unexpectedCloses > 0) {
+                            System.out.println("Heartbeat p99 " + report.echoP99Millis + "ms with " + report.unexpectedCloses
+                                    + " lost sessions, stopping.");
+                            break;
+                        }
+                        held = Math.max(held, report.trainersConnected);
+                    }
+                }
+                long sleepNanos = started < settings.trainers ? pauseNanos : Math.min(nextReport, end) - System.nanoTime();
+                if (sleepNanos > 0) TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        } finally {
+            running = false;
+        }
+
+        // steps still in flight get the full timeout to show up
+        TimeUnit.NANOSECONDS.sleep(settings.echoTimeout.toNanos());
+        echoes.expire(System.nanoTime(), settings.echoTimeout.toNanos());
+        LoadReport total = report(new Totals(), new Totals(true), System.nanoTime() - startNanos,
+                stats.totalEchoLatency, stats.totalHandshakeLatency);
+        if (settings.maxP99 != null) {
+            total.trainersHeld = held;
+            System.out.println("The server held " + held + " trainers within a heartbeat p99 of " + settings.maxP99.toMillis() + "ms.");
+        }
+        System.out.println("Whole run:");
+        System.out.println(total.line());
+        reports.add(total);
+
+        for (VirtualTrainer trainer : trainers.keySet()) {
+            trainer.leave();
+        }
+        if (observer != null) observer.leave();
+        client.stop();
+        if (serverStats != null) serverStats.close();
+        if (server != null) server.stop();
+        scheduler.shutdownNow();
+        return reports;
+    }
+
+    LoadTestSettings settings() {
+        return settings;
+    }
+
+    LoadStats stats() {
+        return stats;
+    }
+
+    StepEchoes echoes() {
+        return echoes;
+    }
+
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    boolean running() {
+        return running;
+    }
+
+    Optional<SceneMap> map(String sceneId) {
+        return Optional.ofNullable(maps.get(sceneId));
+    }
+
+    // only steps in the observer's scene can be echoed
+    String observedScene() {
+        return observedScene;
+    }
+
+    void registered(VirtualTrainer trainer, JsonObject trainerID) {
+        if (trainer == observer) {
+            observedScene = trainerID.get("scene").getAsString();
+            return;
+        }
+        trainers.put(trainer, trainerID);
+    }
+
+    // a trainer that left is replaced to keep the load up
+    void left(VirtualTrainer trainer) {
+        trainers.remove(trainer);
+        if (!running) return;
+        if (trainer == observer) {
+            System.out.println("The observer left, connecting a new one.");
+            startObserver();
+        } else {
+            connect(new VirtualTrainer(this, false));
+        }
+    }
+
+    Optional<JsonObject> opponentFor(VirtualTrainer trainer, String sceneId) {
+        List<JsonObject> candidates = new ArrayList<>();
+        for (Map.Entry<VirtualTrainer, JsonObject> entry : trainers.entrySet()) {
+            if (entry.getKey() != trainer && sceneId.equals(entry.getValue().get("scene").getAsString())) {
+                candidates.add(entry.getValue());
+            }
+        }
+        if (candidates.isEmpty()) return Optional.empty();
+        return Optional.of(candidates.get(random.nextInt(candidates.size())));
+    }
+
+    private void startObserver() {
+        observer = new VirtualTrainer(this, true);
+        connect(observer);
+    }
+
+    private void connect(VirtualTrainer trainer) {
+        try {
+            client.connect(trainer, settings.target()).whenComplete((session, failure) -> {
+                if (failure == null) return;
+                stats.connectFailures.increment();
+                if (running) {
+                    scheduler.schedule(() -> connect(trainer), 1, TimeUnit.SECONDS);
+                }
+            });
+        } catch (IOException e) {
+            stats.connectFailures.increment();
+        }
+    }
+
+    private void readMaps() {
+        for (Map.Entry<String, String> scene : settings.maps.entrySet()) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(scene.getValue()), StandardCharsets.UTF_8)) {
+                maps.put(scene.getKey(), SceneMap.fromTiledJson(reader));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Could not read the map of " + scene.getKey() + " from " + scene.getValue()
+                        + ", its trainers walk blind: " + e);
+            }
+        }
+    }
+
+    private LoadReport report(Totals current,
+                              Totals previous,
+                              long intervalNanos,
+                              LatencyRecorder echoLatency,
+                              LatencyRecorder handshakeLatency) {
+        LoadReport report = new LoadReport();
+        report.elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        report.intervalSeconds = TimeUnit.NANOSECONDS.toSeconds(intervalNanos);
+        report.trainersConnected = stats.connected.get();
+        report.registrations = current.registrations - previous.registrations;
+        report.transfers = current.transfers - previous.transfers;
+        report.connectFailures = current.connectFailures - previous.connectFailures;
+        report.unexpectedCloses = current.unexpectedCloses - previous.unexpectedCloses;
+        report.sendFailures = current.sendFailures - previous.sendFailures;
+        report.messagesSent = current.messagesSent - previous.messagesSent;
+        report.messagesReceived = current.messagesReceived - previous.messagesReceived;
+        report.stepsSent = current.stepsSent - previous.stepsSent;
+        report.stepsEchoed = current.stepsEchoed - previous.stepsEchoed;
+        report.stepsDropped = current.stepsDropped - previous.stepsDropped;
+        report.heartBeats = current.heartBeats - previous.heartBeats;
+        report.heartBeatGaps = current.heartBeatGaps - previous.heartBeatGaps;
+        report.handshakesRequested = current.handshakesRequested - previous.handshakesRequested;
+        report.handshakesStarted = current.handshakesStarted - previous.handshakesStarted;
+        report.handshakesTimedOut = current.handshakesTimedOut - previous.handshakesTimedOut;
+        report.battles = current.battles - previous.battles;
+
+        report.echoP50Millis = echoLatency.percentile(0.50);
+        report.echoP99Millis = echoLatency.percentile(0.99);
+        report.echoMaxMillis = echoLatency.maxMillis();
+        report.handshakeP50Millis = handshakeLatency.percentile(0.50);
+        report.handshakeP99Millis = handshakeLatency.percentile(0.99);
+        // the whole run's recorders keep going, the interval's start over
+        if (echoLatency == stats.echoLatency) {
+            echoLatency.reset();
+            handshakeLatency.reset();
+        }
+
+        if (serverStats != null) {
+            try {
+                ServerStats.Sample sample = serverStats.sample();
+                report.serverCpuPercent = sample.cpuLoad < 0 ? -1 : sample.cpuLoad * 100;
+                report.serverHeapUsedMegabytes = sample.heapUsedBytes / (1024 * 1024);
+                report.serverHeapMaxMegabytes = sample.heapMaxBytes / (1024 * 1024);
+                report.serverThreads = sample.threads;
+            } catch (IOException e) {
+                System.out.println("Could not read the server's JVM: " + e);
+            }
+        }
+        return report;
+    }
+
+    // the counters at one moment, reports are the difference of two
+    private class Totals {
+        final long registrations;
+        final long transfers;
+        final long connectFailures;
+        final long unexpectedCloses;
+        final long sendFailures;
+        final long messagesSent;
+        final long messagesReceived;
+        final long stepsSent;
+        final long stepsEchoed;
+        final long stepsDropped;
+        final long heartBeats;
+        final long heartBeatGaps;
+        final long handshakesRequested;
+        final long handshakesStarted;
+        final long handshakesTimedOut;
+        final long battles;
+
+        Totals() {
+            this(false);
+        }
+
+        // zero is the start of the run
+        Totals(boolean zero) {
+            registrations = zero ? 0 : stats.registrations.sum();
+            transfers = zero ? 0 : stats.transfers.sum();
+            connectFailures = zero ? 0 : stats.connectFailures.sum();
+            unexpectedCloses = zero ? 0 : stats.unexpectedCloses.sum();
+            sendFailures = zero ? 0 : stats.sendFailures.sum();
+            messagesSent = zero ? 0 : stats.messagesSent.sum();
+            messagesReceived = zero ? 0 : stats.messagesReceived.sum();
+            stepsSent = zero ? 0 : stats.stepsSent.sum();
+            stepsEchoed = zero ? 0 : stats.stepsEchoed.sum();
+            stepsDropped = zero ? 0 : stats.stepsDropped.sum();
+            heartBeats = zero ? 0 : stats.heartBeats.sum();
+            heartBeatGaps = zero ? 0 : stats.heartBeatGaps.sum();
+            handshakesRequested = zero ? 0 : stats.handshakesRequested.sum();
+            handshakesStarted = zero ? 0 : stats.handshakesStarted.sum();
+            handshakesTimedOut = zero ? 0 : stats.handshakesTimedOut.sum();
+            battles = zero ? 0 : stats.battles.sum();
+        }
+    }
+}
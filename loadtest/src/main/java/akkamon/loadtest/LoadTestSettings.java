@@ -0,0 +1,157 @@
+package akkamon.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The options of a load test run, read from --name value pairs on the command line.
+ */
+public class LoadTestSettings {
+
+    // where the server is, null starts one inside this JVM on port
+    public URI url = null;
+    public int port = 8080;
+    // whether the embedded server runs its websocket I/O on virtual threads, null keeps its config
+    public Boolean virtualThreads = null;
+
+    public int trainers = 500;
+    // new connections per second while ramping up
+    public int rampUp = 100;
+    public Duration duration = Duration.ofMinutes(5);
+
+    // the client walks 4 tiles a second
+    public Duration stepInterval = Duration.ofMillis(250);
+    // the chance that a trainer asks someone for a battle instead of walking its next leg
+    public double battleChance = 0.02;
+
+    // a step no heartbeat showed within this time counts as dropped
+    public Duration echoTimeout = Duration.ofSeconds(5);
+    public Duration handshakeTimeout = Duration.ofSeconds(10);
+    public Duration reportInterval = Duration.ofSeconds(10);
+    // search how many trainers the server holds: the run ends at the first interval whose heartbeat p99
+    // is above this or that lost sessions, null runs the full duration
+    public Duration maxP99 = null;
+
+    // host:port of a JMX agent on a server started elsewhere
+    public String jmx = null;
+    // the Tiled map of every scene trainers walk in
+    public Map<String, String> maps = new LinkedHashMap<>();
+    // where to write the report as json
+    public String json = null;
+
+    public LoadTestSettings() {
+        maps.put("DemoScene", "../client/dist/assets/tilemaps/akkamon-demo-tilemap.json");
+    }
+
+    public static LoadTestSettings fromArgs(String[] args) {
+        LoadTestSettings settings = new LoadTestSettings();
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Option " + name + " needs a value");
+            }
+            String value = args[i + 1];
+            switch (name) {
+                case "--url":
+                    settings.url = URI.create(value);
+                    break;
+                case "--port":
+                    settings.port = Integer.parseInt(value);
+                    break;
+                case "--virtual-threads":
+                    settings.virtualThreads = toggle(name, value);
+                    break;
+                case "--trainers":
+                    settings.trainers = Integer.parseInt(value);
+                    break;
+                case "--ramp-up":
+                    settings.rampUp = Integer.parseInt(value);
+                    break;
+                case "--duration":
+                    settings.duration = duration(value);
+                    break;
+                case "--step-interval":
+                    settings.stepInterval = duration(value);
+                    break;
+                case "--battle-chance":
+                    settings.battleChance = Double.parseDouble(value);
+                    break;
+                case "--echo-timeout":
+                    settings.echoTimeout = duration(value);
+                    break;
+                case "--handshake-timeout":
+                    settings.handshakeTimeout = duration(value);
+                    break;
+                case "--report-interval":
+                    settings.reportInterval = duration(value);
+                    break;
+                case "--max-p99":
+                    settings.maxP99 = duration(value);
+                    break;
+                case "--jmx":
+                    settings.jmx = value;
+                    break;
+                case "--map":
+                    int separator = value.indexOf('=');
+                    if (separator < 1) {
+                        throw new IllegalArgumentException("--map takes scene=path, got " + value);
+                    }
+                    settings.maps.put(value.substring(0, separator), value.substring(separator + 1));
+                    break;
+                case "--json":
+                    settings.json = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (settings.trainers < 1 || settings.rampUp < 1) {
+            throw new IllegalArgumentException("--trainers and --ramp-up must be positive");
+        }
+        if (settings.virtualThreads != null && !settings.embedded()) {
+            throw new IllegalArgumentException("--virtual-threads only applies to the server started without --url");
+        }
+        return settings;
+    }
+
+    public URI target() {
+        return url != null ? url : URI.create("ws://localhost:" + port + "/");
+    }
+
+    public boolean embedded() {
+        return url == null;
+    }
+
+    static boolean toggle(String name, String value) {
+        switch (value.toLowerCase()) {
+            case "on":
+            case "true":
+                return true;
+            case "off":
+            case "false":
+                return false;
+            default:
+                throw new IllegalArgumentException(name + " takes on or off, got " + value);
+        }
+    }
+
+    // 250ms, 30s, 10m, 1h or ISO-8601 like PT30S
+    static Duration duration(String value) {
+        String lower = value.trim().toLowerCase();
+        if (lower.startsWith("pt")) return Duration.parse(value);
+        if (lower.endsWith("ms")) return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+        long amount = Long.parseLong(lower.substring(0, lower.length() - 1));
+        switch (lower.charAt(lower.length() - 1)) {
+            case 's':
+                return Duration.ofSeconds(amount);
+            case 'm':
+                return Duration.ofMinutes(amount);
+            case 'h':
+                return Duration.ofHours(amount);
+            default:
+                throw new IllegalArgumentException("Can't read duration " + value);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package akkamon.loadtest;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the CPU load, heap and thread count of the server's JVM through its platform MBeans. A server
+ * started by the load test is the load test's own JVM, its numbers include the virtual trainers.
+ * A server elsewhere needs a JMX agent, for example started with
+ * -Dcom.sun.management.jmxremote.port=9010 -Dcom.sun.management.jmxremote.authenticate=false -Dcom.sun.management.jmxremote.ssl=false
+ */
+public class ServerStats implements AutoCloseable {
+
+    public static class Sample {
+        // the share of all cores the server's process used, -1 when the JVM can't tell
+        public double cpuLoad;
+        public long heapUsedBytes;
+        public long heapMaxBytes;
+        public int threads;
+    }
+
+    private final MBeanServerConnection connection;
+    private final JMXConnector connector;
+    private final ObjectName operatingSystem;
+    private final ObjectName memory;
+    private final ObjectName threading;
+
+    private ServerStats(MBeanServerConnection connection, JMXConnector connector) throws IOException {
+        this.connection = connection;
+        this.connector = connector;
+        try {
+            this.operatingSystem = new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
+            this.memory = new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+            this.threading = new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    public static ServerStats local() throws IOException {
+        return new ServerStats(ManagementFactory.getPlatformMBeanServer(), null);
+    }
+
+    public static ServerStats remote(String hostAndPort) throws IOException {
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://" + hostAndPort + "/jmxrmi");
+        JMXConnector connector = JMXConnectorFactory.connect(url);
+        return new ServerStats(connector.getMBeanServerConnection(), connector);
+    }
+
+    public Sample sample() throws IOException {
+        try {
+            Sample sample = new Sample();
+            Object cpuLoad = connection.getAttribute(operatingSystem, "ProcessCpuLoad");
+            sample.cpuLoad = cpuLoad instanceof Double ? (Double) cpuLoad : -1;
+            CompositeData heap = (CompositeData) connection.getAttribute(memory, "HeapMemoryUsage");
+            sample.heapUsedBytes = (Long) heap.get("used");
+            sample.heapMaxBytes = (Long) heap.get("max");
+            sample.threads = (Integer) connection.getAttribute(threading, "ThreadCount");
+            return sample;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connector != null) connector.close();
+    }
+}
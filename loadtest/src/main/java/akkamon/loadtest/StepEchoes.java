@@ -0,0 +1,58 @@
+package akkamon.loadtest;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The steps of every virtual trainer that no heartbeat has shown yet, oldest first. The observer, a trainer
+ * that never moves and so sees the whole scene, takes them off as its heartbeats carry the trainers' moves.
+ * Steps arrive in a heartbeat in the order they were taken, so n moves of a trainer echo its n oldest steps.
+ */
+public class StepEchoes {
+
+    private final LoadStats stats;
+    private final Map<String, ArrayDeque<Long>> pending = new ConcurrentHashMap<>();
+
+    public StepEchoes(LoadStats stats) {
+        this.stats = stats;
+    }
+
+    public void sent(String trainer, long nowNanos) {
+        ArrayDeque<Long> steps = pending.computeIfAbsent(trainer, t -> new ArrayDeque<>());
+        synchronized (steps) {
+            steps.addLast(nowNanos);
+        }
+        stats.stepsSent.increment();
+    }
+
+    public void echoed(String trainer, int moves, long nowNanos) {
+        ArrayDeque<Long> steps = pending.get(trainer);
+        if (steps == null) return;
+        synchronized (steps) {
+            for (int i = 0; i < moves && !steps.isEmpty(); i++) {
+                stats.echoed(nowNanos - steps.removeFirst());
+            }
+        }
+    }
+
+    /**
+     * Counts the steps older than the timeout as dropped. Should a heartbeat still show them later it takes
+     * newer steps off instead, latencies are only exact while nothing is dropped.
+     */
+    public void expire(long nowNanos, long timeoutNanos) {
+        for (ArrayDeque<Long> steps : pending.values()) {
+            synchronized (steps) {
+                while (!steps.isEmpty() && nowNanos - steps.peekFirst() > timeoutNanos) {
+                    steps.removeFirst();
+                    stats.stepsDropped.increment();
+                }
+            }
+        }
+    }
+
+    // steps still on their way when a trainer leaves the scene or disconnects aren't dropped by the server
+    public void forget(String trainer) {
+        pending.remove(trainer);
+    }
+}
@@ -0,0 +1,356 @@
+package akkamon.loadtest;
+
+import akkamon.domain.actors.tasks.heartbeat.Direction;
+import akkamon.domain.actors.tasks.heartbeat.TilePos;
+import akkamon.domain.model.world.SceneMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One player on a websocket, speaking the json events of the browser client. It registers, then walks
+ * legs of a few tiles in a random direction the way GridPhysics does, StartMoving, a NewTilePos for every
+ * tile it leaves and StopMoving, and rests a moment between legs. Instead of a leg it sometimes asks a
+ * trainer of its scene for a battle and stands still until the handshake finishes; it accepts every
+ * request it gets. A battle ends the trainer, the load test connects a fresh one in its place.
+ *
+ * The observer is a trainer that never moves: the server lets trainers without a position see the
+ * whole scene, so its heartbeats tell when the steps of everyone else got out.
+ */
+public class VirtualTrainer extends WebSocketAdapter {
+
+    private static final Direction[] WALKING = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    private static final int MAX_LEG = 8;
+
+    private final LoadTest test;
+    private final boolean observer;
+    private final Random random = new Random();
+    private final WriteCallback sendFailures;
+
+    // guarded by this, touched by the Jetty thread of the session and the walking schedule
+    private JsonObject trainerID;
+    private String id;
+    private String scene;
+    private TilePos tilePos;
+    private Direction direction = Direction.NONE;
+    private int legSteps;
+    private long restingUntilNanos;
+    private long lastSequence;
+    private long handshakeSentNanos;
+    private String handshakeRequestName;
+    private ScheduledFuture<?> walking;
+    private boolean leaving;
+
+    public VirtualTrainer(LoadTest test, boolean observer) {
+        this.test = test;
+        this.observer = observer;
+        this.sendFailures = new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable x) {
+                test.stats().sendFailures.increment();
+            }
+        };
+    }
+
+    public synchronized boolean isRegistered() {
+        return trainerID != null;
+    }
+
+    synchronized String name() {
+        return id;
+    }
+
+    synchronized JsonObject trainerID() {
+        return trainerID;
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        super.onWebSocketConnect(session);
+        test.stats().connected.incrementAndGet();
+        JsonObject registration = new JsonObject();
+        registration.addProperty("type", "TrainerRegistrationRequestEvent");
+        send(registration);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        super.onWebSocketText(message);
+        test.stats().messagesReceived.increment();
+        JsonObject event = JsonParser.parseString(message).getAsJsonObject();
+        if (!event.has("type")) return;
+
+        switch (event.get("type").getAsString()) {
+            case "TrainerRegistrationReplyEvent":
+                onRegistered(event.getAsJsonObject("trainerID"));
+                break;
+            case "HeartBeat":
+                onHeartBeat(event);
+                break;
+            case "InteractionRequestEvent":
+                onInteractionRequest(event);
+                break;
+            case "InteractionStarting":
+                onInteractionStarting(event);
+                break;
+            case "BattleInitEvent":
+                onBattleInit();
+                break;
+            case "SceneTransferEvent":
+                onSceneTransfer(event);
+                break;
+        }
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        super.onWebSocketClose(statusCode, reason);
+        boolean expected;
+        String leftId;
+        synchronized (this) {
+            if (walking != null) walking.cancel(false);
+            expected = leaving;
+            leftId = id;
+        }
+        test.stats().connected.decrementAndGet();
+        if (leftId != null) test.echoes().forget(leftId);
+        if (!expected && test.running()) {
+            test.stats().unexpectedCloses.increment();
+            System.out.println("Trainer " + leftId + " lost its session: [" + statusCode + "] " + reason);
+        }
+        test.left(this);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        super.onWebSocketError(cause);
+        if (test.running()) {
+            System.out.println("Trainer " + name() + " had an error: " + cause);
+        }
+    }
+
+    public void leave() {
+        synchronized (this) {
+            leaving = true;
+        }
+        Session session = getSession();
+        if (session != null) session.close(StatusCode.NORMAL, "load test done");
+    }
+
+    private synchronized void onRegistered(JsonObject registeredID) {
+        trainerID = registeredID;
+        id = registeredID.get("id").getAsString();
+        scene = registeredID.get("scene").getAsString();
+        tilePos = test.map(scene).flatMap(SceneMap::spawn).orElse(new TilePos(0, 0));
+        test.stats().registrations.increment();
+        test.registered(this, trainerID);
+
+        if (!observer) {
+            long interval = test.settings().stepInterval.toNanos();
+            walking = test.scheduler().scheduleAtFixedRate(
+                    this::walk,
+                    random.nextInt((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(interval))),
+                    TimeUnit.NANOSECONDS.toMillis(interval),
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    private void onHeartBeat(JsonObject heartBeat) {
+        long now = System.nanoTime();
+        test.stats().heartBeats.increment();
+
+        long sequence = heartBeat.has("sequence") ? heartBeat.get("sequence").getAsLong() : 0;
+        synchronized (this) {
+            // full heartbeats aren't numbered
+            if (sequence > 0) {
+                if (lastSequence > 0 && sequence > lastSequence + 1) {
+                    test.stats().heartBeatGaps.add(sequence - lastSequence - 1);
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        }
+
+        JsonObject acknowledgement = new JsonObject();
+        acknowledgement.addProperty("type", "HeartBeat");
+        acknowledgement.addProperty("sequence", sequence);
+        acknowledgement.addProperty("requestKeyFrame", false);
+        send(acknowledgement);
+
+        if (!observer || !heartBeat.has("remoteMovementQueues")) return;
+        for (Map.Entry<String, JsonElement> entry : heartBeat.getAsJsonObject("remoteMovementQueues").entrySet()) {
+            int moves = 0;
+            for (JsonElement step : entry.getValue().getAsJsonObject().getAsJsonArray("value")) {
+                if (!"NONE".equals(step.getAsString())) moves++;
+            }
+            if (moves > 0) {
+                // the keys are TrainerID.toString(), which happens to be json
+                String movedId = JsonParser.parseString(entry.getKey()).getAsJsonObject().get("id").getAsString();
+                test.echoes().echoed(movedId, moves, now);
+            }
+        }
+    }
+
+    private void onInteractionRequest(JsonObject request) {
+        String requestName = request.get("requestName").getAsString();
+        synchronized (this) {
+            // the requester gets its own request too, that is where it learns the name
+            JsonObject requester = request.getAsJsonObject("trainerID");
+            if (requester != null && id != null && id.equals(requester.get("id").getAsString())
+                    && handshakeSentNanos != 0 && handshakeRequestName == null) {
+                handshakeRequestName = requestName;
+            }
+        }
+        JsonObject reply = new JsonObject();
+        reply.addProperty("type", "InteractionReplyEvent");
+        reply.add("trainerID", trainerID());
+        reply.addProperty("requestName", requestName);
+        reply.addProperty("value", true);
+        send(reply);
+    }
+
+    private synchronized void onInteractionStarting(JsonObject starting) {
+        if (handshakeRequestName != null && handshakeRequestName.equals(starting.get("requestName").getAsString())) {
+            test.stats().handshakeStarted(System.nanoTime() - handshakeSentNanos);
+            handshakeSentNanos = 0;
+            handshakeRequestName = null;
+        }
+    }
+
+    // a battling trainer no longer walks, make room for a new one
+    private void onBattleInit() {
+        test.stats().battles.increment();
+        leave();
+    }
+
+    private synchronized void onSceneTransfer(JsonObject transfer) {
+        test.echoes().forget(id);
+        trainerID = transfer.getAsJsonObject("trainerID");
+        scene = trainerID.get("scene").getAsString();
+        if (transfer.has("tilePos")) {
+            JsonObject arrival = transfer.getAsJsonObject("tilePos");
+            tilePos = new TilePos(arrival.get("x").getAsInt(), arrival.get("y").getAsInt());
+        }
+        direction = Direction.NONE;
+        legSteps = 0;
+        test.registered(this, trainerID);
+        test.stats().transfers.increment();
+    }
+
+    private synchronized void walk() {
+        if (leaving || trainerID == null || !test.running()) return;
+        long now = System.nanoTime();
+
+        if (handshakeSentNanos != 0) {
+            if (now - handshakeSentNanos < test.settings().handshakeTimeout.toNanos()) return;
+            test.stats().handshakesTimedOut.increment();
+            handshakeSentNanos = 0;
+            handshakeRequestName = null;
+        }
+        if (now < restingUntilNanos) return;
+
+        if (legSteps == 0) {
+            if (direction != Direction.NONE) {
+                sendMovement("StopMoving", direction);
+                direction = Direction.NONE;
+                restingUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(500 + random.nextInt(2500));
+                return;
+            }
+            if (random.nextDouble() < test.settings().battleChance && requestBattle(now)) {
+                return;
+            }
+            Optional<Direction> next = pickDirection();
+            if (!next.isPresent()) {
+                restingUntilNanos = now + TimeUnit.SECONDS.toNanos(1);
+                return;
+            }
+            direction = next.get();
+            legSteps = 1 + random.nextInt(MAX_LEG);
+            sendMovement("StartMoving", direction);
+        }
+
+        TilePos next = tilePos.step(direction);
+        if (!walkable(next)) {
+            legSteps = 0;
+            return;
+        }
+        JsonObject newTilePos = event("NewTilePos");
+        JsonObject from = new JsonObject();
+        from.addProperty("x", tilePos.x);
+        from.addProperty("y", tilePos.y);
+        newTilePos.add("tilePos", from);
+        send(newTilePos);
+        if (scene.equals(test.observedScene())) {
+            test.echoes().sent(id, now);
+        }
+        tilePos = next;
+        legSteps--;
+    }
+
+    private boolean requestBattle(long now) {
+        Optional<JsonObject> opponent = test.opponentFor(this, scene);
+        if (!opponent.isPresent()) return false;
+
+        JsonObject interaction = new JsonObject();
+        interaction.addProperty("type", "battle");
+        JsonArray receivers = new JsonArray();
+        receivers.add(opponent.get());
+        interaction.add("receivingtrainerIDs", receivers);
+        JsonObject request = event("InteractionRequestEvent");
+        request.add("interaction", interaction);
+
+        handshakeSentNanos = now;
+        handshakeRequestName = null;
+        test.stats().handshakesRequested.increment();
+        send(request);
+        return true;
+    }
+
+    private Optional<Direction> pickDirection() {
+        List<Direction> open = new ArrayList<>(WALKING.length);
+        for (Direction candidate : WALKING) {
+            if (walkable(tilePos.step(candidate))) open.add(candidate);
+        }
+        if (open.isEmpty()) return Optional.empty();
+        return Optional.of(open.get(random.nextInt(open.size())));
+    }
+
+    // without a map the trainer walks blind and the server drops what it can't take
+    private boolean walkable(TilePos target) {
+        Optional<SceneMap> map = test.map(scene);
+        return !map.isPresent() || !map.get().isBlocked(target);
+    }
+
+    private void sendMovement(String type, Direction movementDirection) {
+        JsonObject movement = event(type);
+        movement.addProperty("direction", movementDirection.name());
+        send(movement);
+    }
+
+    private JsonObject event(String type) {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", type);
+        event.add("trainerID", trainerID);
+        return event;
+    }
+
+    private void send(JsonObject event) {
+        Session session = getSession();
+        if (session == null || !session.isOpen()) return;
+        test.stats().messagesSent.increment();
+        session.getRemote().sendString(event.toString(), sendFailures);
+    }
+}
@@ -0,0 +1,42 @@
+package akkamon.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyRecorderTest {
+
+    @Test
+    void given_a_hundred_latencies_when_asked_for_percentiles_then_they_are_read_from_the_buckets() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int millis = 1; millis <= 100; millis++) {
+            recorder.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(100, recorder.count());
+        assertEquals(50, recorder.percentile(0.50));
+        assertEquals(99, recorder.percentile(0.99));
+        assertEquals(100, recorder.maxMillis());
+    }
+
+    @Test
+    void given_a_latency_beyond_a_minute_when_recorded_then_it_lands_in_the_last_bucket() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(TimeUnit.MINUTES.toNanos(5));
+
+        assertEquals(60_000, recorder.percentile(0.99));
+        assertEquals(TimeUnit.MINUTES.toMillis(5), recorder.maxMillis());
+    }
+
+    @Test
+    void given_nothing_recorded_when_asked_for_a_percentile_then_it_is_zero() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(10));
+        recorder.reset();
+
+        assertEquals(0, recorder.count());
+        assertEquals(0, recorder.percentile(0.5));
+    }
+}
@@ -0,0 +1,54 @@
+package akkamon.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StepEchoesTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoadStats stats = new LoadStats();
+    private final StepEchoes echoes = new StepEchoes(stats);
+
+    @Test
+    void given_steps_of_a_trainer_when_a_heartbeat_shows_some_then_the_oldest_are_echoed() {
+        echoes.sent("1", 0);
+        echoes.sent("1", 100 * MS);
+        echoes.sent("1", 200 * MS);
+
+        echoes.echoed("1", 2, 250 * MS);
+
+        assertEquals(3, stats.stepsSent.sum());
+        assertEquals(2, stats.stepsEchoed.sum());
+        assertEquals(150, stats.echoLatency.percentile(0.5));
+        assertEquals(250, stats.echoLatency.maxMillis());
+    }
+
+    @Test
+    void given_a_step_nobody_saw_when_it_times_out_then_it_is_dropped_once() {
+        echoes.sent("1", 0);
+        echoes.sent("1", 900 * MS);
+
+        echoes.expire(1000 * MS, 500 * MS);
+        echoes.expire(1100 * MS, 500 * MS);
+
+        assertEquals(1, stats.stepsDropped.sum());
+        echoes.echoed("1", 1, 1000 * MS);
+        assertEquals(100, stats.echoLatency.maxMillis());
+    }
+
+    @Test
+    void given_a_trainer_that_left_when_its_steps_show_up_then_nothing_is_counted() {
+        echoes.sent("1", 0);
+        echoes.forget("1");
+
+        echoes.echoed("1", 1, 100 * MS);
+        echoes.expire(10_000 * MS, 500 * MS);
+
+        assertEquals(0, stats.stepsEchoed.sum());
+        assertEquals(0, stats.stepsDropped.sum());
+    }
+}